@@ -0,0 +1,49 @@
+package com.db.awmd.challenge;
+
+import com.db.awmd.challenge.domain.Account;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Jackson round trip of the {@link Account} payload used by the create and get endpoints.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+public class AccountJsonBenchmark {
+
+  private final ObjectMapper objectMapper = new ObjectMapper();
+
+  private final ObjectWriter writer = objectMapper.writerFor(Account.class);
+
+  private final ObjectReader reader = objectMapper.readerFor(Account.class);
+
+  private final Account account = new Account("Id-123", new BigDecimal("1234.56"));
+
+  private final byte[] json = "{\"accountId\":\"Id-123\",\"balance\":1234.56}".getBytes();
+
+  @Benchmark
+  public byte[] serialize() throws IOException {
+    return writer.writeValueAsBytes(account);
+  }
+
+  @Benchmark
+  public Account deserialize() throws IOException {
+    return reader.readValue(json);
+  }
+
+  @Benchmark
+  public Account roundTrip() throws IOException {
+    return reader.readValue(writer.writeValueAsBytes(account));
+  }
+}
@@ -0,0 +1,54 @@
+package com.db.awmd.challenge;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Precomputed sequence of account ids, so benchmarks measure neither the random number
+ * generator nor building and hashing id strings. Zipfian sequences concentrate traffic on a few
+ * hot accounts.
+ */
+final class AccountKeys {
+
+  private static final int SEQUENCE_LENGTH = 1 << 20;
+  private static final double ZIPF_EXPONENT = 0.99;
+
+  private final int[] sequence = new int[SEQUENCE_LENGTH];
+
+  private final String[] ids;
+
+  AccountKeys(String skew, int accounts, long seed) {
+    ids = new String[accounts];
+    for (int i = 0; i < accounts; i++) {
+      ids[i] = id(i);
+      ids[i].hashCode(); // cached by the String
+    }
+    Random random = new Random(seed);
+    if ("uniform".equals(skew)) {
+      for (int i = 0; i < SEQUENCE_LENGTH; i++) {
+        sequence[i] = random.nextInt(accounts);
+      }
+    } else if ("zipfian".equals(skew)) {
+      double[] cumulative = new double[accounts];
+      double sum = 0;
+      for (int rank = 0; rank < accounts; rank++) {
+        sum += 1 / Math.pow(rank + 1, ZIPF_EXPONENT);
+        cumulative[rank] = sum;
+      }
+      for (int i = 0; i < SEQUENCE_LENGTH; i++) {
+        int rank = Arrays.binarySearch(cumulative, random.nextDouble() * sum);
+        sequence[i] = Math.min(rank < 0 ? -rank - 1 : rank, accounts - 1);
+      }
+    } else {
+      throw new IllegalArgumentException("Unknown skew " + skew);
+    }
+  }
+
+  String get(int index) {
+    return ids[sequence[index & (SEQUENCE_LENGTH - 1)]];
+  }
+
+  static String id(int index) {
+    return "account-" + index;
+  }
+}
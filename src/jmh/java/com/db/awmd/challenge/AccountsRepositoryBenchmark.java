@@ -0,0 +1,90 @@
+package com.db.awmd.challenge;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.MinorUnits;
+import com.db.awmd.challenge.repository.AccountsRepository;
+import com.db.awmd.challenge.repository.AccountsRepositoryFixedPoint;
+import com.db.awmd.challenge.repository.AccountsRepositoryInMemory;
+import com.db.awmd.challenge.repository.AccountsRepositoryOffHeap;
+import java.math.BigDecimal;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import javax.security.auth.login.AccountNotFoundException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Single operations of each repository implementation. {@code totalBalance} reads the running
+ * total, {@code sumBalances} is the full reduction used by audits.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+public class AccountsRepositoryBenchmark {
+
+  private static final BigDecimal AMOUNT = new BigDecimal("0.01");
+
+  @Param({"in-memory", "fixed-point", "off-heap"})
+  public String type;
+
+  @Param({"10000", "1000000"})
+  public int accounts;
+
+  private AccountsRepository repository;
+
+  private AccountKeys keys;
+
+  @State(Scope.Thread)
+  public static class Cursor {
+
+    int next = ThreadLocalRandom.current().nextInt();
+  }
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    MinorUnits minorUnits = MinorUnits.forCurrency("EUR");
+    if ("fixed-point".equals(type)) {
+      repository = new AccountsRepositoryFixedPoint(minorUnits);
+    } else if ("off-heap".equals(type)) {
+      repository = new AccountsRepositoryOffHeap(minorUnits, accounts * 2, 64, 16);
+    } else {
+      repository = new AccountsRepositoryInMemory();
+    }
+    for (int i = 0; i < accounts; i++) {
+      repository.createAccount(new Account(AccountKeys.id(i), new BigDecimal("1000000000")));
+    }
+    keys = new AccountKeys("uniform", accounts, 42);
+  }
+
+  @Benchmark
+  public Account getAccount(Cursor cursor) throws AccountNotFoundException {
+    return repository.getAccount(keys.get(cursor.next++));
+  }
+
+  @Benchmark
+  public void addAmount(Cursor cursor) throws AccountNotFoundException {
+    repository.addAmount(keys.get(cursor.next++), AMOUNT);
+  }
+
+  @Benchmark
+  public void withdrawAmount(Cursor cursor) throws AccountNotFoundException {
+    repository.withdrawAmount(keys.get(cursor.next++), AMOUNT);
+  }
+
+  @Benchmark
+  public BigDecimal totalBalance() {
+    return repository.totalBalance();
+  }
+
+  @Benchmark
+  public BigDecimal sumBalances() {
+    return repository.sumBalances();
+  }
+}
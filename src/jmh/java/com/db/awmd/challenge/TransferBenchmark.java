@@ -0,0 +1,125 @@
+package com.db.awmd.challenge;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.exception.InsufficientBalanceException;
+import com.db.awmd.challenge.journal.NoOpTransactionJournal;
+import com.db.awmd.challenge.metrics.TransferMetrics;
+import com.db.awmd.challenge.repository.AccountsRepository;
+import com.db.awmd.challenge.repository.AccountsRepositoryInMemory;
+import com.db.awmd.challenge.repository.TransactionHistoryRepository;
+import com.db.awmd.challenge.service.AccountLockRegistry;
+import com.db.awmd.challenge.service.AccountsService;
+import com.db.awmd.challenge.service.LockingTransferEngine;
+import com.db.awmd.challenge.service.NotificationDispatcher;
+import com.db.awmd.challenge.service.ShardedTransferEngine;
+import com.db.awmd.challenge.service.TransferEngine;
+import java.math.BigDecimal;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import javax.security.auth.login.AccountNotFoundException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+/**
+ * {@link AccountsService#transferAmount} end to end, without the web layer, for both transfer
+ * engines, several account counts and uniform or Zipfian account selection.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class TransferBenchmark {
+
+  private static final BigDecimal AMOUNT = new BigDecimal("0.01");
+
+  @State(Scope.Benchmark)
+  public static class Bank {
+
+    @Param({"locking", "sharded"})
+    public String engine;
+
+    @Param({"16", "10000", "1000000"})
+    public int accounts;
+
+    @Param({"uniform", "zipfian"})
+    public String skew;
+
+    AccountsService accountsService;
+
+    AccountKeys keys;
+
+    private NotificationDispatcher notificationDispatcher;
+
+    private TransferEngine transferEngine;
+
+    private TransactionHistoryRepository transactionHistory;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+      AccountsRepository repository = new AccountsRepositoryInMemory();
+      for (int i = 0; i < accounts; i++) {
+        repository.createAccount(new Account(AccountKeys.id(i), new BigDecimal("1000000000")));
+      }
+      transferEngine = "sharded".equals(engine)
+          ? new ShardedTransferEngine(repository, 0, 1024, 5000)
+          : new LockingTransferEngine(repository, new AccountLockRegistry(1024, 5000));
+      notificationDispatcher = new NotificationDispatcher((account, description) -> {
+      }, repository, 10000, 1, 100, 0);
+      transactionHistory = new TransactionHistoryRepository(
+          System.getProperty("java.io.tmpdir"), 256, 4);
+      accountsService = new AccountsService(repository, notificationDispatcher, transferEngine,
+          new NoOpTransactionJournal(), transactionHistory, new TransferMetrics());
+      keys = new AccountKeys(skew, accounts, 42);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+      notificationDispatcher.shutdown();
+      transactionHistory.close();
+      if (transferEngine instanceof ShardedTransferEngine) {
+        ((ShardedTransferEngine) transferEngine).shutdown();
+      }
+    }
+  }
+
+  @State(Scope.Thread)
+  public static class Cursor {
+
+    int next = ThreadLocalRandom.current().nextInt();
+  }
+
+  @Benchmark
+  @Threads(1)
+  public void transfer1Thread(Bank bank, Cursor cursor) throws AccountNotFoundException {
+    transfer(bank, cursor);
+  }
+
+  @Benchmark
+  @Threads(4)
+  public void transfer4Threads(Bank bank, Cursor cursor) throws AccountNotFoundException {
+    transfer(bank, cursor);
+  }
+
+  @Benchmark
+  @Threads(16)
+  public void transfer16Threads(Bank bank, Cursor cursor) throws AccountNotFoundException {
+    transfer(bank, cursor);
+  }
+
+  private static void transfer(Bank bank, Cursor cursor) throws AccountNotFoundException {
+    String fromId = bank.keys.get(cursor.next++);
+    String toId = bank.keys.get(cursor.next++);
+    try {
+      bank.accountsService.transferAmount(fromId, toId, AMOUNT);
+    } catch (InsufficientBalanceException ex) {
+      // not expected with the seeded balances, but must not end the run
+    }
+  }
+}
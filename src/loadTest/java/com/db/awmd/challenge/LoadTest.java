@@ -0,0 +1,266 @@
+package com.db.awmd.challenge;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.service.AccountsService;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.math.BigDecimal;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.context.embedded.EmbeddedWebApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * Open-model HTTP load test. Starts the application on a random port, seeds accounts and then
+ * issues requests at a constant arrival rate, whether or not earlier ones have completed.
+ * Latency is measured from each request's intended start time, so a stalled server is charged
+ * for every request it held back (no coordinated omission).
+ *
+ * <p>Configured with system properties, see {@code ./gradlew loadTest}:
+ * <ul>
+ *   <li>{@code loadtest.accounts} - accounts seeded before the run (10000)</li>
+ *   <li>{@code loadtest.rate} - requests per second (2000)</li>
+ *   <li>{@code loadtest.warmup-seconds} / {@code loadtest.duration-seconds} - (5 / 30)</li>
+ *   <li>{@code loadtest.mix} - percentages of create, get and transfer ("5,45,50")</li>
+ *   <li>{@code loadtest.skew} - uniform or zipfian account selection (uniform)</li>
+ *   <li>{@code loadtest.threads} - client threads (64)</li>
+ *   <li>{@code loadtest.report-dir} - where the report is written (build/reports/loadtest)</li>
+ * </ul>
+ */
+public class LoadTest {
+
+  private static final long HIGHEST_TRACKABLE_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+  private enum Operation {
+    CREATE, GET, TRANSFER
+  }
+
+  private final int accounts = Integer.getInteger("loadtest.accounts", 10000);
+
+  private final int rate = Integer.getInteger("loadtest.rate", 2000);
+
+  private final int warmupSeconds = Integer.getInteger("loadtest.warmup-seconds", 5);
+
+  private final int durationSeconds = Integer.getInteger("loadtest.duration-seconds", 30);
+
+  private final int threads = Integer.getInteger("loadtest.threads", 64);
+
+  private final int[] mix = Arrays.stream(System.getProperty("loadtest.mix", "5,45,50")
+      .split(",")).mapToInt(part -> Integer.parseInt(part.trim())).toArray();
+
+  private final Path reportDirectory = Paths.get(
+      System.getProperty("loadtest.report-dir", "build/reports/loadtest"));
+
+  private final Map<Operation, Recorder> recorders = new EnumMap<>(Operation.class);
+
+  private final Map<Operation, LongAdder> rejected = new EnumMap<>(Operation.class);
+
+  private final Map<Operation, LongAdder> failed = new EnumMap<>(Operation.class);
+
+  private final AtomicLong createdAccounts = new AtomicLong();
+
+  private final double[] zipfCumulative;
+
+  private String baseUrl;
+
+  /**
+   * Intended start from which requests are counted; earlier ones are warm-up.
+   */
+  private volatile long measureFrom = Long.MAX_VALUE;
+
+  private LoadTest() {
+    for (Operation operation : Operation.values()) {
+      recorders.put(operation, new Recorder(HIGHEST_TRACKABLE_NANOS, 3));
+      rejected.put(operation, new LongAdder());
+      failed.put(operation, new LongAdder());
+    }
+    if ("zipfian".equals(System.getProperty("loadtest.skew", "uniform"))) {
+      zipfCumulative = new double[accounts];
+      double sum = 0;
+      for (int rank = 0; rank < accounts; rank++) {
+        sum += 1 / Math.pow(rank + 1, 0.99);
+        zipfCumulative[rank] = sum;
+      }
+    } else {
+      zipfCumulative = null;
+    }
+  }
+
+  public static void main(String[] args) throws Exception {
+    new LoadTest().run();
+  }
+
+  private void run() throws Exception {
+    ConfigurableApplicationContext context = SpringApplication.run(
+        DevChallengeApplication.class, "--server.port=0");
+    try {
+      int port = ((EmbeddedWebApplicationContext) context).getEmbeddedServletContainer()
+          .getPort();
+      baseUrl = "http://localhost:" + port + "/v1/accounts";
+      AccountsService accountsService = context.getBean(AccountsService.class);
+      for (int i = 0; i < accounts; i++) {
+        accountsService.createAccount(new Account(accountId(i), new BigDecimal("1000000")));
+      }
+      System.out.printf("Seeded %d accounts, driving %d requests/s at %s%n", accounts, rate,
+          baseUrl);
+
+      ExecutorService clients = Executors.newFixedThreadPool(threads);
+      drive(clients, warmupSeconds);
+      long started = System.nanoTime();
+      measureFrom = started;
+      drive(clients, durationSeconds);
+      clients.shutdown();
+      clients.awaitTermination(1, TimeUnit.MINUTES);
+      report(System.nanoTime() - started);
+    } finally {
+      context.close();
+    }
+  }
+
+  /**
+   * Issues requests at fixed intended start times for the given number of seconds. A request
+   * that can not start on time waits in the executor queue, and that wait counts as latency.
+   */
+  private void drive(ExecutorService clients, int seconds) {
+    long interval = TimeUnit.SECONDS.toNanos(1) / rate;
+    long start = System.nanoTime();
+    long requests = (long) rate * seconds;
+    for (long i = 0; i < requests; i++) {
+      long intendedStart = start + i * interval;
+      long delay = intendedStart - System.nanoTime();
+      if (delay > 0) {
+        LockSupport.parkNanos(delay);
+      }
+      clients.execute(() -> request(intendedStart));
+    }
+  }
+
+  private void request(long intendedStart) {
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    int roll = random.nextInt(100);
+    Operation operation = roll < mix[0] ? Operation.CREATE
+        : roll < mix[0] + mix[1] ? Operation.GET : Operation.TRANSFER;
+    int status;
+    try {
+      switch (operation) {
+        case CREATE:
+          status = send("POST", baseUrl, "{\"accountId\":\"load-"
+              + createdAccounts.incrementAndGet() + "\",\"balance\":100}");
+          break;
+        case GET:
+          status = send("GET", baseUrl + "/" + accountId(pick(random)), null);
+          break;
+        default:
+          status = send("POST", baseUrl + "/" + accountId(pick(random)) + "/transfer",
+              "{\"toAccountId\":\"" + accountId(pick(random)) + "\",\"amount\":1}");
+      }
+    } catch (IOException ex) {
+      status = -1;
+    }
+    if (intendedStart < measureFrom) {
+      return;
+    }
+    recorders.get(operation).recordValue(
+        Math.min(System.nanoTime() - intendedStart, HIGHEST_TRACKABLE_NANOS));
+    if (status < 0 || status >= 500) {
+      failed.get(operation).increment();
+    } else if (status >= 400) {
+      rejected.get(operation).increment();
+    }
+  }
+
+  private int pick(Random random) {
+    if (zipfCumulative == null) {
+      return random.nextInt(accounts);
+    }
+    int rank = Arrays.binarySearch(zipfCumulative,
+        random.nextDouble() * zipfCumulative[accounts - 1]);
+    return Math.min(rank < 0 ? -rank - 1 : rank, accounts - 1);
+  }
+
+  private static String accountId(int index) {
+    return "account-" + index;
+  }
+
+  private static int send(String method, String url, String body) throws IOException {
+    HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+    connection.setRequestMethod(method);
+    if (body != null) {
+      connection.setDoOutput(true);
+      connection.setRequestProperty("Content-Type", "application/json");
+      try (OutputStream out = connection.getOutputStream()) {
+        out.write(body.getBytes(StandardCharsets.UTF_8));
+      }
+    }
+    int status = connection.getResponseCode();
+    // Drain the body so the connection goes back to the keep-alive pool.
+    try (InputStream in = status >= 400 ? connection.getErrorStream()
+        : connection.getInputStream()) {
+      if (in != null) {
+        byte[] buffer = new byte[1024];
+        while (in.read(buffer) >= 0) {
+          // discard
+        }
+      }
+    }
+    return status;
+  }
+
+  private void report(long elapsedNanos) throws IOException {
+    Files.createDirectories(reportDirectory);
+    double seconds = elapsedNanos / 1e9;
+    try (PrintStream summary = new PrintStream(
+        Files.newOutputStream(reportDirectory.resolve("summary.txt")), true, "UTF-8")) {
+      String header = String.format("%-9s %9s %9s %9s %10s %10s %10s %10s %10s %10s%n",
+          "operation", "count", "rejected", "failed", "ops/s", "p50 ms", "p90 ms", "p99 ms",
+          "p99.9 ms", "max ms");
+      summary.printf("accounts=%d rate=%d/s duration=%ds mix=%s skew=%s threads=%d%n%n",
+          accounts, rate, durationSeconds, Arrays.toString(mix),
+          zipfCumulative == null ? "uniform" : "zipfian", threads);
+      summary.print(header);
+      System.out.print(header);
+      for (Operation operation : Operation.values()) {
+        Histogram histogram = recorders.get(operation).getIntervalHistogram();
+        String line = String.format(
+            "%-9s %9d %9d %9d %10.1f %10.3f %10.3f %10.3f %10.3f %10.3f%n",
+            operation, histogram.getTotalCount(), rejected.get(operation).sum(),
+            failed.get(operation).sum(), histogram.getTotalCount() / seconds,
+            millis(histogram.getValueAtPercentile(50)),
+            millis(histogram.getValueAtPercentile(90)),
+            millis(histogram.getValueAtPercentile(99)),
+            millis(histogram.getValueAtPercentile(99.9)), millis(histogram.getMaxValue()));
+        summary.print(line);
+        System.out.print(line);
+        try (PrintStream distribution = new PrintStream(Files.newOutputStream(
+            reportDirectory.resolve(operation.name().toLowerCase() + ".hgrm")), true, "UTF-8")) {
+          histogram.outputPercentileDistribution(distribution, 1e6);
+        }
+      }
+    }
+    System.out.println("Report written to " + reportDirectory.toAbsolutePath());
+  }
+
+  private static double millis(long nanos) {
+    return nanos / 1e6;
+  }
+}
@@ -0,0 +1,127 @@
+package com.db.awmd.challenge.cluster;
+
+import com.db.awmd.challenge.exception.PartitionUnavailableException;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import javax.servlet.http.HttpServletRequest;
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.DefaultResponseErrorHandler;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestTemplate;
+
+/**
+ * Knows which node of a partitioned deployment owns an account, and talks to the other nodes.
+ * Every node is configured with the same node list, so all nodes agree on the owners without
+ * any coordination service.
+ *
+ * <p>Requests are forwarded with a marker header. A node always handles a forwarded request
+ * itself, so a request is forwarded at most once even if two nodes disagree about the ring.
+ */
+@Component
+@ConditionalOnProperty(name = "accounts.cluster.enabled", havingValue = "true")
+public class ClusterRouter {
+
+  public static final String FORWARDED_HEADER = "X-Cluster-Forwarded";
+
+  private static final List<String> FORWARDED_REQUEST_HEADERS = Arrays.asList(
+      HttpHeaders.CONTENT_TYPE, HttpHeaders.ACCEPT, HttpHeaders.IF_NONE_MATCH, "Idempotency-Key");
+
+  private static final List<String> RELAYED_RESPONSE_HEADERS = Arrays.asList(
+      HttpHeaders.CONTENT_TYPE, HttpHeaders.ETAG, HttpHeaders.LOCATION);
+
+  @Getter
+  private final String self;
+
+  private final ConsistentHashRing ring;
+
+  private final RestTemplate restTemplate;
+
+  @Autowired
+  public ClusterRouter(@Value("${accounts.cluster.self}") String self,
+      @Value("${accounts.cluster.nodes}") String[] nodes,
+      @Value("${accounts.cluster.virtual-nodes:128}") int virtualNodes,
+      @Value("${accounts.cluster.request-timeout-ms:5000}") int requestTimeoutMillis) {
+    List<String> nodeList = Arrays.asList(nodes);
+    if (!nodeList.contains(self)) {
+      throw new IllegalArgumentException(
+          "Node " + self + " is not one of the cluster nodes " + nodeList + ".");
+    }
+    this.self = self;
+    this.ring = new ConsistentHashRing(nodeList, virtualNodes);
+    SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+    requestFactory.setConnectTimeout(requestTimeoutMillis);
+    requestFactory.setReadTimeout(requestTimeoutMillis);
+    this.restTemplate = new RestTemplate(requestFactory);
+    // Error statuses of other nodes are relayed to the client, not thrown.
+    this.restTemplate.setErrorHandler(new DefaultResponseErrorHandler() {
+      @Override
+      public boolean hasError(ClientHttpResponse response) throws IOException {
+        return false;
+      }
+    });
+  }
+
+  public String ownerOf(String accountId) {
+    return ring.nodeFor(accountId);
+  }
+
+  public boolean owns(String accountId) {
+    return self.equals(ownerOf(accountId));
+  }
+
+  public boolean isForwarded(HttpServletRequest request) {
+    return request.getHeader(FORWARDED_HEADER) != null;
+  }
+
+  /**
+   * Replays the request on the given node and returns that node's response.
+   */
+  public ResponseEntity<Object> forward(String node, HttpServletRequest request, Object body) {
+    HttpHeaders headers = new HttpHeaders();
+    for (String name : FORWARDED_REQUEST_HEADERS) {
+      List<String> values = Collections.list(request.getHeaders(name));
+      if (!values.isEmpty()) {
+        headers.put(name, values);
+      }
+    }
+    headers.set(FORWARDED_HEADER, self);
+    String path = request.getRequestURI()
+        + (request.getQueryString() == null ? "" : "?" + request.getQueryString());
+    ResponseEntity<String> response = exchange(node, HttpMethod.resolve(request.getMethod()),
+        path, headers, body);
+    HttpHeaders relayed = new HttpHeaders();
+    for (String name : RELAYED_RESPONSE_HEADERS) {
+      List<String> values = response.getHeaders().get(name);
+      if (values != null) {
+        relayed.put(name, values);
+      }
+    }
+    return new ResponseEntity<>(response.getBody(), relayed, response.getStatusCode());
+  }
+
+  /**
+   * Sends a request to another node; fails with {@link PartitionUnavailableException} when the
+   * node can not be reached in time.
+   */
+  public ResponseEntity<String> exchange(String node, HttpMethod method, String path,
+      HttpHeaders headers, Object body) {
+    try {
+      return restTemplate.exchange(node + path, method, new HttpEntity<>(body, headers),
+          String.class);
+    } catch (ResourceAccessException ex) {
+      throw new PartitionUnavailableException("Node " + node + " is unavailable.");
+    }
+  }
+}
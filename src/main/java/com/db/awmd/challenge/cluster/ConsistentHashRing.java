@@ -0,0 +1,48 @@
+package com.db.awmd.challenge.cluster;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Assigns keys to nodes. Every node is placed on the ring at many pseudo-random points, and a
+ * key belongs to the first node point at or after the key's own hash. Adding or removing a node
+ * therefore only moves the keys next to its points, about 1/n of them.
+ */
+public class ConsistentHashRing {
+
+  private static final ThreadLocal<MessageDigest> MD5 = ThreadLocal.withInitial(() -> {
+    try {
+      return MessageDigest.getInstance("MD5");
+    } catch (NoSuchAlgorithmException ex) {
+      throw new IllegalStateException(ex);
+    }
+  });
+
+  private final TreeMap<Integer, String> ring = new TreeMap<>();
+
+  public ConsistentHashRing(Collection<String> nodes, int virtualNodes) {
+    if (nodes.isEmpty()) {
+      throw new IllegalArgumentException("A hash ring needs at least one node.");
+    }
+    for (String node : nodes) {
+      for (int i = 0; i < virtualNodes; i++) {
+        ring.put(hash(node + '#' + i), node);
+      }
+    }
+  }
+
+  public String nodeFor(String key) {
+    Map.Entry<Integer, String> entry = ring.ceilingEntry(hash(key));
+    return entry != null ? entry.getValue() : ring.firstEntry().getValue();
+  }
+
+  private static int hash(String key) {
+    byte[] digest = MD5.get().digest(key.getBytes(StandardCharsets.UTF_8));
+    return (digest[0] & 0xff) << 24 | (digest[1] & 0xff) << 16 | (digest[2] & 0xff) << 8
+        | digest[3] & 0xff;
+  }
+}
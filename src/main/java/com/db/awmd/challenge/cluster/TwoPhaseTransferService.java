@@ -0,0 +1,309 @@
+package com.db.awmd.challenge.cluster;
+
+import com.db.awmd.challenge.domain.TransferInstruction;
+import com.db.awmd.challenge.exception.InvalidAmountException;
+import com.db.awmd.challenge.exception.PartitionUnavailableException;
+import com.db.awmd.challenge.repository.AccountsRepository;
+import com.db.awmd.challenge.service.AccountLockRegistry;
+import java.io.UnsupportedEncodingException;
+import java.math.BigDecimal;
+import java.net.URLEncoder;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import javax.annotation.PreDestroy;
+import javax.security.auth.login.AccountNotFoundException;
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+/**
+ * Moves money between accounts owned by different nodes with a two-phase protocol. The node
+ * owning the sender coordinates: it reserves the amount by debiting the sender, asks the node
+ * owning the receiver to prepare, and once prepared decides to commit. Without a prepare the
+ * reservation is refunded and the transfer fails.
+ *
+ * <p>The decision is kept until the participant acknowledges the commit; unacknowledged
+ * commits are resent by the recovery task. A participant holding a prepared transfer for longer
+ * than {@code in-doubt-timeout-ms} asks the coordinator for its decision, and a transfer the
+ * coordinator does not know is presumed aborted. Protocol state is kept in memory only.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "accounts.cluster.enabled", havingValue = "true")
+public class TwoPhaseTransferService {
+
+  public enum Decision { PREPARING, COMMITTED, ABORTED }
+
+  private static final String PATH = "/internal/transfers/";
+
+  private final AccountsRepository accountsRepository;
+
+  private final AccountLockRegistry accountLockRegistry;
+
+  private final ClusterRouter clusterRouter;
+
+  private final long inDoubtTimeoutNanos;
+
+  private final Map<String, Outgoing> outgoing = new ConcurrentHashMap<>();
+
+  private final Map<String, Prepared> prepared = new ConcurrentHashMap<>();
+
+  private final LongAdder committed = new LongAdder();
+
+  private final LongAdder aborted = new LongAdder();
+
+  private final LongAdder recovered = new LongAdder();
+
+  private final ScheduledExecutorService recovery;
+
+  @Autowired
+  public TwoPhaseTransferService(AccountsRepository accountsRepository,
+      AccountLockRegistry accountLockRegistry, ClusterRouter clusterRouter,
+      @Value("${accounts.cluster.in-doubt-timeout-ms:10000}") long inDoubtTimeoutMillis,
+      @Value("${accounts.cluster.recovery-interval-ms:1000}") long recoveryIntervalMillis) {
+    this.accountsRepository = accountsRepository;
+    this.accountLockRegistry = accountLockRegistry;
+    this.clusterRouter = clusterRouter;
+    this.inDoubtTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(inDoubtTimeoutMillis);
+    this.recovery = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "two-phase-recovery");
+      thread.setDaemon(true);
+      return thread;
+    });
+    this.recovery.scheduleWithFixedDelay(this::recover, recoveryIntervalMillis,
+        recoveryIntervalMillis, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Transfers from a local account to an account owned by another node.
+   */
+  public void transfer(String fromId, String toId, BigDecimal amount)
+      throws AccountNotFoundException {
+    if (amount.signum() <= 0) {
+      throw new InvalidAmountException("Transfer amount must be greater than 0.");
+    }
+    String transferId = UUID.randomUUID().toString();
+    String participant = clusterRouter.ownerOf(toId);
+    accountLockRegistry.lock(fromId, fromId);
+    try {
+      accountsRepository.withdrawAmount(fromId, amount);
+    } finally {
+      accountLockRegistry.unlock(fromId, fromId);
+    }
+    Outgoing transfer = new Outgoing(participant, fromId, amount, Decision.PREPARING);
+    outgoing.put(transferId, transfer);
+
+    ResponseEntity<String> response;
+    try {
+      response = clusterRouter.exchange(participant, HttpMethod.POST,
+          PATH + transferId + "/prepare?coordinator=" + encode(clusterRouter.getSelf()),
+          new HttpHeaders(), new TransferInstruction(fromId, toId, amount));
+    } catch (PartitionUnavailableException ex) {
+      abortOutgoing(transferId, transfer);
+      throw ex;
+    }
+    if (!response.getStatusCode().is2xxSuccessful()) {
+      abortOutgoing(transferId, transfer);
+      if (response.getStatusCode() == HttpStatus.BAD_REQUEST) {
+        throw new AccountNotFoundException(response.getBody());
+      }
+      throw new PartitionUnavailableException(
+          "Node " + participant + " could not prepare the transfer.");
+    }
+    transfer.decision = Decision.COMMITTED;
+    committed.increment();
+    sendCommit(transferId, transfer);
+  }
+
+  /**
+   * Participant side: checks the receiver and holds the credit until the decision arrives.
+   */
+  public void prepare(String transferId, String toId, BigDecimal amount, String coordinator)
+      throws AccountNotFoundException {
+    accountsRepository.getAccount(toId);
+    prepared.putIfAbsent(transferId, new Prepared(toId, amount, coordinator, System.nanoTime()));
+  }
+
+  /**
+   * Participant side: applies the held credit. Repeated commits are ignored.
+   */
+  public void commit(String transferId) throws AccountNotFoundException {
+    Prepared transfer = prepared.remove(transferId);
+    if (transfer == null) {
+      return;
+    }
+    accountLockRegistry.lock(transfer.toId, transfer.toId);
+    try {
+      accountsRepository.addAmount(transfer.toId, transfer.amount);
+    } finally {
+      accountLockRegistry.unlock(transfer.toId, transfer.toId);
+    }
+  }
+
+  /**
+   * Participant side: drops the held credit.
+   */
+  public void abort(String transferId) {
+    prepared.remove(transferId);
+  }
+
+  /**
+   * Coordinator side: the decision for a transfer. Transfers no longer known were either
+   * aborted or committed and acknowledged, and only the former can still be asked about.
+   */
+  public Decision decisionOf(String transferId) {
+    Outgoing transfer = outgoing.get(transferId);
+    return transfer == null ? Decision.ABORTED : transfer.decision;
+  }
+
+  /**
+   * Resends unacknowledged commits and resolves prepared transfers that have been in doubt for
+   * too long. Runs periodically.
+   */
+  public void recover() {
+    try {
+      outgoing.forEach((transferId, transfer) -> {
+        if (transfer.decision == Decision.COMMITTED) {
+          sendCommit(transferId, transfer);
+        }
+      });
+      long now = System.nanoTime();
+      prepared.forEach((transferId, transfer) -> {
+        if (now - transfer.preparedAt >= inDoubtTimeoutNanos) {
+          resolveInDoubt(transferId, transfer);
+        }
+      });
+    } catch (RuntimeException ex) {
+      log.error("Two-phase transfer recovery failed", ex);
+    }
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    recovery.shutdownNow();
+  }
+
+  public long getCommitted() {
+    return committed.sum();
+  }
+
+  public long getAborted() {
+    return aborted.sum();
+  }
+
+  public long getRecovered() {
+    return recovered.sum();
+  }
+
+  public long getUnacknowledged() {
+    return outgoing.values().stream()
+        .filter(transfer -> transfer.decision == Decision.COMMITTED).count();
+  }
+
+  public int getInDoubt() {
+    return prepared.size();
+  }
+
+  private void sendCommit(String transferId, Outgoing transfer) {
+    try {
+      ResponseEntity<String> response = clusterRouter.exchange(transfer.participant,
+          HttpMethod.POST, PATH + transferId + "/commit", new HttpHeaders(), null);
+      if (response.getStatusCode().is2xxSuccessful()) {
+        outgoing.remove(transferId);
+      }
+    } catch (PartitionUnavailableException ex) {
+      log.warn("Commit of transfer {} not acknowledged yet: {}", transferId, ex.getMessage());
+    }
+  }
+
+  private void abortOutgoing(String transferId, Outgoing transfer)
+      throws AccountNotFoundException {
+    outgoing.remove(transferId);
+    aborted.increment();
+    accountLockRegistry.lock(transfer.fromId, transfer.fromId);
+    try {
+      accountsRepository.addAmount(transfer.fromId, transfer.amount);
+    } finally {
+      accountLockRegistry.unlock(transfer.fromId, transfer.fromId);
+    }
+    try {
+      clusterRouter.exchange(transfer.participant, HttpMethod.POST, PATH + transferId + "/abort",
+          new HttpHeaders(), null);
+    } catch (PartitionUnavailableException ex) {
+      // The participant presumes the abort once it finds the transfer unknown here.
+      log.warn("Abort of transfer {} not delivered: {}", transferId, ex.getMessage());
+    }
+  }
+
+  private void resolveInDoubt(String transferId, Prepared transfer) {
+    ResponseEntity<String> response;
+    try {
+      response = clusterRouter.exchange(transfer.coordinator, HttpMethod.GET, PATH + transferId,
+          new HttpHeaders(), null);
+    } catch (PartitionUnavailableException ex) {
+      log.warn("Transfer {} stays in doubt: {}", transferId, ex.getMessage());
+      return;
+    }
+    if (!response.getStatusCode().is2xxSuccessful()) {
+      return;
+    }
+    Decision decision = Decision.valueOf(response.getBody().trim());
+    try {
+      if (decision == Decision.COMMITTED) {
+        commit(transferId);
+      } else if (decision == Decision.ABORTED) {
+        abort(transferId);
+      } else {
+        return;
+      }
+      recovered.increment();
+      log.info("Resolved in-doubt transfer {} as {}", transferId, decision);
+    } catch (AccountNotFoundException ex) {
+      log.error("Could not credit in-doubt transfer {}", transferId, ex);
+    }
+  }
+
+  private static String encode(String value) {
+    try {
+      return URLEncoder.encode(value, "UTF-8");
+    } catch (UnsupportedEncodingException ex) {
+      throw new IllegalStateException(ex);
+    }
+  }
+
+  @AllArgsConstructor
+  private static final class Outgoing {
+
+    private final String participant;
+
+    private final String fromId;
+
+    private final BigDecimal amount;
+
+    private volatile Decision decision;
+  }
+
+  @AllArgsConstructor
+  private static final class Prepared {
+
+    private final String toId;
+
+    private final BigDecimal amount;
+
+    private final String coordinator;
+
+    private final long preparedAt;
+  }
+}
@@ -0,0 +1,9 @@
+package com.db.awmd.challenge.domain;
+
+/**
+ * Line formats for bulk import and export: one JSON object per line, or
+ * {@code accountId,balance} lines.
+ */
+public enum AccountFormat {
+  NDJSON, CSV
+}
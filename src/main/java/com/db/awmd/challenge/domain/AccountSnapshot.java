@@ -0,0 +1,50 @@
+package com.db.awmd.challenge.domain;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import java.math.BigDecimal;
+import lombok.Value;
+
+/**
+ * Immutable balance of an account as of one version. A store that keeps these as its cells can
+ * hand them to readers as they are, without copying or locking. Versions restart when an account
+ * is created again, so versioned stores also give every account they create a fresh incarnation;
+ * together the two identify a balance.
+ */
+@Value
+public class AccountSnapshot {
+
+  /**
+   * Version of stores that do not track versions.
+   */
+  public static final long UNVERSIONED = -1;
+
+  private final String accountId;
+
+  private final BigDecimal balance;
+
+  @JsonIgnore
+  private final long version;
+
+  @JsonIgnore
+  private final long incarnation;
+
+  public AccountSnapshot(String accountId, BigDecimal balance, long version) {
+    this(accountId, balance, version, 0);
+  }
+
+  public AccountSnapshot(String accountId, BigDecimal balance, long version, long incarnation) {
+    this.accountId = accountId;
+    this.balance = balance;
+    this.version = version;
+    this.incarnation = incarnation;
+  }
+
+  public AccountSnapshot next(BigDecimal newBalance) {
+    return new AccountSnapshot(accountId, newBalance, version + 1, incarnation);
+  }
+
+  @JsonIgnore
+  public boolean isVersioned() {
+    return version != UNVERSIONED;
+  }
+}
@@ -0,0 +1,23 @@
+package com.db.awmd.challenge.domain;
+
+import java.math.BigDecimal;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * The balance an account had after a change was applied. A change without an account id stands
+ * for clearing all accounts.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class BalanceChange {
+
+  private long sequence;
+
+  private String accountId;
+
+  private BigDecimal balance;
+
+}
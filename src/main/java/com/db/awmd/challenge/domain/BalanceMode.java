@@ -0,0 +1,14 @@
+package com.db.awmd.challenge.domain;
+
+public enum BalanceMode {
+
+  /**
+   * The running total kept by the repository; O(1) and never blocks transfers.
+   */
+  RUNNING,
+
+  /**
+   * An exact point-in-time sum over every account, taken while transfers are held back.
+   */
+  AUDIT
+}
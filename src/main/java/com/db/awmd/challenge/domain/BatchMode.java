@@ -0,0 +1,14 @@
+package com.db.awmd.challenge.domain;
+
+public enum BatchMode {
+
+  /**
+   * Either every transfer in the batch is applied or none is.
+   */
+  ALL_OR_NOTHING,
+
+  /**
+   * Valid transfers are applied in order; failing ones are reported and skipped.
+   */
+  BEST_EFFORT
+}
@@ -0,0 +1,19 @@
+package com.db.awmd.challenge.domain;
+
+import java.util.List;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class BatchTransferResult {
+
+  private final BatchMode mode;
+
+  private final int applied;
+
+  private final int rejected;
+
+  private final List<TransferResult> results;
+
+}
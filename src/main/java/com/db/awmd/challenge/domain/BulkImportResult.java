@@ -0,0 +1,20 @@
+package com.db.awmd.challenge.domain;
+
+import java.util.List;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class BulkImportResult {
+
+  private final long imported;
+
+  private final long rejected;
+
+  /**
+   * Rejected lines in line order, at most {@code accounts.bulk-import.max-errors} of them.
+   */
+  private final List<ImportError> errors;
+
+}
@@ -0,0 +1,17 @@
+package com.db.awmd.challenge.domain;
+
+import java.util.List;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ChangeBatch {
+
+  private long head;
+
+  private List<BalanceChange> changes;
+
+}
@@ -0,0 +1,14 @@
+package com.db.awmd.challenge.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class ImportError {
+
+  private final long line;
+
+  private final String message;
+
+}
@@ -0,0 +1,73 @@
+package com.db.awmd.challenge.domain;
+
+import com.db.awmd.challenge.exception.InvalidAmountException;
+import java.math.BigDecimal;
+import java.util.Currency;
+import lombok.Getter;
+
+/**
+ * Fixed-point representation of money as a {@code long} count of minor units (cents for EUR).
+ * Conversions never round: an amount that is finer than the scale or does not fit in a long is
+ * rejected, and arithmetic fails on overflow instead of wrapping.
+ */
+public final class MinorUnits {
+
+  private static final BigDecimal MIN_UNITS = BigDecimal.valueOf(Long.MIN_VALUE);
+
+  private static final BigDecimal MAX_UNITS = BigDecimal.valueOf(Long.MAX_VALUE);
+
+  @Getter
+  private final int scale;
+
+  public MinorUnits(int scale) {
+    if (scale < 0 || scale > 18) {
+      throw new IllegalArgumentException("Scale must be between 0 and 18.");
+    }
+    this.scale = scale;
+  }
+
+  public static MinorUnits forCurrency(String currencyCode) {
+    return new MinorUnits(Currency.getInstance(currencyCode).getDefaultFractionDigits());
+  }
+
+  /**
+   * Whether {@link #fromDecimal(BigDecimal)} converts the amount without failing.
+   */
+  public boolean isRepresentable(BigDecimal amount) {
+    if (amount.scale() > scale && amount.stripTrailingZeros().scale() > scale) {
+      return false;
+    }
+    BigDecimal units = amount.movePointRight(scale);
+    return units.compareTo(MIN_UNITS) >= 0 && units.compareTo(MAX_UNITS) <= 0;
+  }
+
+  public long fromDecimal(BigDecimal amount) {
+    try {
+      return amount.movePointRight(scale).longValueExact();
+    } catch (ArithmeticException ex) {
+      throw new InvalidAmountException(
+          "Amount " + amount.toPlainString() + " can not be represented with scale " + scale
+              + ".");
+    }
+  }
+
+  public BigDecimal toDecimal(long minorUnits) {
+    return BigDecimal.valueOf(minorUnits, scale);
+  }
+
+  public static long add(long left, long right) {
+    try {
+      return Math.addExact(left, right);
+    } catch (ArithmeticException ex) {
+      throw new InvalidAmountException("Balance overflow.");
+    }
+  }
+
+  public static long subtract(long left, long right) {
+    try {
+      return Math.subtractExact(left, right);
+    } catch (ArithmeticException ex) {
+      throw new InvalidAmountException("Balance overflow.");
+    }
+  }
+}
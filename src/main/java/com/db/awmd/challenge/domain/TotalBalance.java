@@ -0,0 +1,15 @@
+package com.db.awmd.challenge.domain;
+
+import java.math.BigDecimal;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class TotalBalance {
+
+  private final BalanceMode mode;
+
+  private final BigDecimal totalBalance;
+
+}
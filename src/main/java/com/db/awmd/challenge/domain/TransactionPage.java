@@ -0,0 +1,21 @@
+package com.db.awmd.challenge.domain;
+
+import java.util.List;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * A page of an account statement, newest transaction first. Pass {@code nextCursor} as
+ * {@code before} to get the next older page; it is null on the last page.
+ */
+@Data
+@AllArgsConstructor
+public class TransactionPage {
+
+  private final String accountId;
+
+  private final List<TransactionRecord> transactions;
+
+  private final Long nextCursor;
+
+}
@@ -0,0 +1,22 @@
+package com.db.awmd.challenge.domain;
+
+import java.math.BigDecimal;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * One leg of a transfer as seen by a single account. Debits carry a negative amount.
+ */
+@Data
+@AllArgsConstructor
+public class TransactionRecord {
+
+  private final long sequence;
+
+  private final long timestamp;
+
+  private final BigDecimal amount;
+
+  private final String counterpartyAccountId;
+
+}
@@ -0,0 +1,19 @@
+package com.db.awmd.challenge.domain;
+
+import java.math.BigDecimal;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class TransferInstruction {
+
+  private String fromAccountId;
+
+  private String toAccountId;
+
+  private BigDecimal amount;
+
+}
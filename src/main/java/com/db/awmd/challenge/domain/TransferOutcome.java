@@ -0,0 +1,28 @@
+package com.db.awmd.challenge.domain;
+
+/**
+ * How a single transfer ended. Expected rejections are returned as these shared constants
+ * instead of being thrown, so rejecting a transfer costs no exception, stack trace or message.
+ */
+public enum TransferOutcome {
+
+  COMPLETED, FROM_ACCOUNT_NOT_FOUND, TO_ACCOUNT_NOT_FOUND, INSUFFICIENT_BALANCE, INVALID_AMOUNT;
+
+  /**
+   * The message reported to clients for a rejection, or null for a completed transfer.
+   */
+  public String describe(String fromId, String toId) {
+    switch (this) {
+      case FROM_ACCOUNT_NOT_FOUND:
+        return "Account " + fromId + " does not exist.";
+      case TO_ACCOUNT_NOT_FOUND:
+        return "Account " + toId + " does not exist.";
+      case INSUFFICIENT_BALANCE:
+        return "Insufficient Balance in account:" + fromId;
+      case INVALID_AMOUNT:
+        return "Transfer amount must be greater than 0.";
+      default:
+        return null;
+    }
+  }
+}
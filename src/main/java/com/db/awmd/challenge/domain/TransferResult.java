@@ -0,0 +1,20 @@
+package com.db.awmd.challenge.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class TransferResult {
+
+  public enum Status {
+    APPLIED, REJECTED, NOT_APPLIED
+  }
+
+  private final int index;
+
+  private final Status status;
+
+  private final String message;
+
+}
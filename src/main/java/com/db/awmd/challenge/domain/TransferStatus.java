@@ -0,0 +1,27 @@
+package com.db.awmd.challenge.domain;
+
+import java.math.BigDecimal;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class TransferStatus {
+
+  public enum State {
+    PENDING, COMPLETED, REJECTED, FAILED
+  }
+
+  private final String transferId;
+
+  private final String fromAccountId;
+
+  private final String toAccountId;
+
+  private final BigDecimal amount;
+
+  private final State state;
+
+  private final String message;
+
+}
@@ -0,0 +1,8 @@
+package com.db.awmd.challenge.exception;
+
+public class LockTimeoutException extends RuntimeException {
+
+  public LockTimeoutException(String message) {
+    super(message);
+  }
+}
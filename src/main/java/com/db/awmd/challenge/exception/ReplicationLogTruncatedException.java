@@ -0,0 +1,8 @@
+package com.db.awmd.challenge.exception;
+
+public class ReplicationLogTruncatedException extends RuntimeException {
+
+  public ReplicationLogTruncatedException(String message) {
+    super(message);
+  }
+}
@@ -0,0 +1,73 @@
+package com.db.awmd.challenge.journal;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.exception.JournalException;
+import com.db.awmd.challenge.repository.AccountsRepository;
+import java.math.BigDecimal;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import javax.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Rebuilds the repository from the latest snapshot, when snapshots are enabled, and the journal
+ * written after it. Runs while the application context starts, before the web server accepts
+ * requests.
+ *
+ * <p>Changes are journaled before they are applied, in the order each account changed, so the
+ * recovered prefix of the journal is a consistent state. Replay sums the recorded changes per
+ * account, and only the final balances are written to the repository. A negative final balance
+ * can only come from a damaged journal and stops the recovery.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "accounts.journal.enabled", havingValue = "true")
+public class JournalRecovery implements JournalVisitor {
+
+  private final TransactionJournal journal;
+
+  private final AccountsRepository accountsRepository;
+
+  private final Optional<SnapshotManager> snapshotManager;
+
+  private final ConcurrentMap<String, BigDecimal> balances = new ConcurrentHashMap<>();
+
+  @Autowired
+  public JournalRecovery(TransactionJournal journal, AccountsRepository accountsRepository,
+      Optional<SnapshotManager> snapshotManager) {
+    this.journal = journal;
+    this.accountsRepository = accountsRepository;
+    this.snapshotManager = snapshotManager;
+  }
+
+  @PostConstruct
+  public void recover() {
+    long snapshotPosition = snapshotManager.map(manager -> manager.load(balances)).orElse(0L);
+    long position = journal.replay(snapshotPosition, this);
+    balances.forEach((accountId, balance) -> {
+      if (balance.signum() < 0) {
+        throw new JournalException("Recovered balance of account " + accountId + " is negative.");
+      }
+    });
+    balances.entrySet().parallelStream().forEach(entry ->
+        accountsRepository.createAccount(new Account(entry.getKey(), entry.getValue())));
+    log.info("Recovered {} accounts from snapshot at {} and journal up to position {}",
+        balances.size(), snapshotPosition, position);
+    balances.clear();
+  }
+
+  @Override
+  public void accountCreated(String accountId, BigDecimal balance) {
+    balances.merge(accountId, balance, BigDecimal::add);
+  }
+
+  @Override
+  public void transferred(String fromId, String toId, BigDecimal amount) {
+    balances.merge(fromId, amount.negate(), BigDecimal::add);
+    balances.merge(toId, amount, BigDecimal::add);
+  }
+}
@@ -0,0 +1,10 @@
+package com.db.awmd.challenge.journal;
+
+import java.math.BigDecimal;
+
+public interface JournalVisitor {
+
+  void accountCreated(String accountId, BigDecimal balance);
+
+  void transferred(String fromId, String toId, BigDecimal amount);
+}
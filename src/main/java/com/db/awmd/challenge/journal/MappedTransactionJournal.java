@@ -0,0 +1,404 @@
+package com.db.awmd.challenge.journal;
+
+import com.db.awmd.challenge.exception.JournalException;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import javax.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Journal kept in fixed-size memory-mapped segment files named after the journal position they
+ * start at. Each record is framed as {@code int length, int crc32, byte type, payload}; a zero
+ * length marks the end of the written part of a segment.
+ *
+ * <p>Appenders only copy their record into the mapped segment. A single flusher thread forces
+ * the segment to disk once the unflushed bytes reach the flush size or the flush interval has
+ * passed, and wakes every appender whose record is covered.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "accounts.journal.enabled", havingValue = "true")
+public class MappedTransactionJournal implements TransactionJournal {
+
+  private static final String SEGMENT_PREFIX = "journal-";
+  private static final String SEGMENT_SUFFIX = ".log";
+  private static final int HEADER_BYTES = 8;
+  private static final byte ACCOUNT_CREATED = 1;
+  private static final byte TRANSFER = 2;
+
+  private final Path directory;
+
+  private final int segmentSize;
+
+  private final long flushIntervalMillis;
+
+  private final long flushBytes;
+
+  private final Object appendLock = new Object();
+
+  private final Object flushMonitor = new Object();
+
+  private final CRC32 crc = new CRC32();
+
+  private final Thread flusher;
+
+  private MappedByteBuffer segment;
+
+  private long segmentBase;
+
+  private volatile long writtenPosition;
+
+  private volatile long durablePosition;
+
+  private volatile boolean running = true;
+
+  @Autowired
+  public MappedTransactionJournal(
+      @Value("${accounts.journal.directory:journal}") String directory,
+      @Value("${accounts.journal.segment-size:67108864}") int segmentSize,
+      @Value("${accounts.journal.flush-interval-ms:2}") long flushIntervalMillis,
+      @Value("${accounts.journal.flush-bytes:65536}") long flushBytes) {
+    this.directory = Paths.get(directory);
+    this.segmentSize = segmentSize;
+    this.flushIntervalMillis = Math.max(1, flushIntervalMillis);
+    this.flushBytes = flushBytes;
+    try {
+      Files.createDirectories(this.directory);
+      List<Long> bases = segmentBases();
+      if (bases.isEmpty()) {
+        openSegment(0);
+      } else {
+        openSegment(bases.get(bases.size() - 1));
+        int end = scan(segment, null);
+        // Anything after the last intact record is a torn write; clear it before appending.
+        int offset = end;
+        for (; offset < segmentSize && offset % Long.BYTES != 0; offset++) {
+          segment.put(offset, (byte) 0);
+        }
+        for (; offset + Long.BYTES <= segmentSize; offset += Long.BYTES) {
+          segment.putLong(offset, 0L);
+        }
+        segment.position(end);
+      }
+    } catch (IOException ex) {
+      throw new JournalException("Could not open journal in " + directory, ex);
+    }
+    this.writtenPosition = segmentBase + segment.position();
+    this.durablePosition = writtenPosition;
+    this.flusher = new Thread(this::flushLoop, "journal-flusher");
+    this.flusher.setDaemon(true);
+    this.flusher.start();
+  }
+
+  @Override
+  public long appendAccountCreated(String accountId, BigDecimal balance) {
+    byte[] id = accountId.getBytes(StandardCharsets.UTF_8);
+    byte[] unscaled = balance.unscaledValue().toByteArray();
+    synchronized (appendLock) {
+      int payloadStart = reserve(1 + 2 + id.length + 6 + unscaled.length);
+      segment.put(ACCOUNT_CREATED);
+      putBytes(id);
+      putAmount(balance.scale(), unscaled);
+      return seal(payloadStart);
+    }
+  }
+
+  @Override
+  public long appendTransfer(String fromId, String toId, BigDecimal amount) {
+    byte[] from = fromId.getBytes(StandardCharsets.UTF_8);
+    byte[] to = toId.getBytes(StandardCharsets.UTF_8);
+    byte[] unscaled = amount.unscaledValue().toByteArray();
+    synchronized (appendLock) {
+      int payloadStart = reserve(1 + 4 + from.length + to.length + 6 + unscaled.length);
+      segment.put(TRANSFER);
+      putBytes(from);
+      putBytes(to);
+      putAmount(amount.scale(), unscaled);
+      return seal(payloadStart);
+    }
+  }
+
+  @Override
+  public void awaitDurable(long position) {
+    if (position <= durablePosition) {
+      return;
+    }
+    synchronized (flushMonitor) {
+      if (writtenPosition - durablePosition >= flushBytes) {
+        flushMonitor.notifyAll();
+      }
+      try {
+        while (durablePosition < position) {
+          flushMonitor.wait();
+        }
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+        throw new JournalException("Interrupted while waiting for journal flush.", ex);
+      }
+    }
+  }
+
+  @Override
+  public long replay(long fromPosition, JournalVisitor visitor) {
+    return replay(fromPosition, Long.MAX_VALUE, visitor);
+  }
+
+  /**
+   * Replays the records of the segments that start before {@code toPosition}. Used with a
+   * position returned by {@link #roll()} to read sealed segments only.
+   */
+  public long replay(long fromPosition, long toPosition, JournalVisitor visitor) {
+    long position = fromPosition;
+    try {
+      List<Long> bases = segmentBases();
+      for (int i = 0; i < bases.size(); i++) {
+        long base = bases.get(i);
+        long next = i + 1 < bases.size() ? bases.get(i + 1) : Long.MAX_VALUE;
+        if (next <= fromPosition) {
+          continue;
+        }
+        if (base >= toPosition) {
+          break;
+        }
+        try (FileChannel channel = FileChannel.open(segmentPath(base), StandardOpenOption.READ)) {
+          MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+          int start = (int) Math.max(0, fromPosition - base);
+          buffer.position(start);
+          position = base + scan(buffer, visitor);
+        }
+      }
+    } catch (IOException ex) {
+      throw new JournalException("Could not read journal in " + directory, ex);
+    }
+    return position;
+  }
+
+  /**
+   * Starts a new segment, so that every record written so far is in a sealed segment. Returns
+   * the position at which the new segment starts.
+   */
+  public long roll() {
+    synchronized (appendLock) {
+      if (segment.position() > 0) {
+        rollSegment();
+      }
+      return segmentBase;
+    }
+  }
+
+  /**
+   * Deletes the sealed segments that end at or before the given position.
+   */
+  public void deleteSegmentsBefore(long position) {
+    try {
+      List<Long> bases = segmentBases();
+      for (int i = 0; i + 1 < bases.size(); i++) {
+        if (bases.get(i + 1) <= position) {
+          Files.deleteIfExists(segmentPath(bases.get(i)));
+        }
+      }
+    } catch (IOException ex) {
+      throw new JournalException("Could not delete journal segments in " + directory, ex);
+    }
+  }
+
+  @Override
+  public long getWrittenPosition() {
+    return writtenPosition;
+  }
+
+  public long getDurablePosition() {
+    return durablePosition;
+  }
+
+  /**
+   * Stops the flusher and forces everything appended so far, releasing any waiting appenders.
+   */
+  @PreDestroy
+  public void close() {
+    running = false;
+    synchronized (flushMonitor) {
+      flushMonitor.notifyAll();
+    }
+    try {
+      flusher.join();
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    }
+    flush();
+  }
+
+  private int reserve(int payloadBytes) {
+    if (!running) {
+      throw new JournalException("Journal is closed.");
+    }
+    if (HEADER_BYTES + payloadBytes > segmentSize - Integer.BYTES) {
+      throw new JournalException("Journal record of " + payloadBytes + " bytes is too large.");
+    }
+    if (segment.remaining() < HEADER_BYTES + payloadBytes + Integer.BYTES) {
+      rollSegment();
+    }
+    segment.position(segment.position() + HEADER_BYTES);
+    return segment.position();
+  }
+
+  private long seal(int payloadStart) {
+    int payloadEnd = segment.position();
+    ByteBuffer payload = segment.duplicate();
+    payload.position(payloadStart);
+    payload.limit(payloadEnd);
+    crc.reset();
+    crc.update(payload);
+    segment.putInt(payloadStart - HEADER_BYTES + Integer.BYTES, (int) crc.getValue());
+    // The length goes last: a reader never sees a non-zero length before the record is complete.
+    segment.putInt(payloadStart - HEADER_BYTES, payloadEnd - payloadStart);
+    writtenPosition = segmentBase + payloadEnd;
+    return writtenPosition;
+  }
+
+  private void putBytes(byte[] bytes) {
+    segment.putShort((short) bytes.length);
+    segment.put(bytes);
+  }
+
+  private void putAmount(int scale, byte[] unscaled) {
+    segment.putInt(scale);
+    segment.putShort((short) unscaled.length);
+    segment.put(unscaled);
+  }
+
+  private void rollSegment() {
+    segment.force();
+    try {
+      openSegment(segmentBase + segmentSize);
+    } catch (IOException ex) {
+      throw new JournalException("Could not roll journal segment in " + directory, ex);
+    }
+  }
+
+  private void openSegment(long base) throws IOException {
+    try (FileChannel channel = FileChannel.open(segmentPath(base), StandardOpenOption.CREATE,
+        StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+      segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+    }
+    segmentBase = base;
+  }
+
+  /**
+   * Reads intact records from the buffer's position, passing them to the visitor when one is
+   * given, and returns the offset just past the last intact record.
+   */
+  private static int scan(ByteBuffer buffer, JournalVisitor visitor) {
+    CRC32 checksum = new CRC32();
+    int offset = buffer.position();
+    while (buffer.limit() - offset >= HEADER_BYTES) {
+      int length = buffer.getInt(offset);
+      if (length <= 0 || length > buffer.limit() - offset - HEADER_BYTES) {
+        break;
+      }
+      ByteBuffer payload = buffer.duplicate();
+      payload.position(offset + HEADER_BYTES);
+      payload.limit(offset + HEADER_BYTES + length);
+      checksum.reset();
+      checksum.update(payload.duplicate());
+      if ((int) checksum.getValue() != buffer.getInt(offset + Integer.BYTES)) {
+        log.warn("Journal record at offset {} failed its checksum; ignoring the rest", offset);
+        break;
+      }
+      if (visitor != null) {
+        decode(payload, visitor);
+      }
+      offset += HEADER_BYTES + length;
+    }
+    return offset;
+  }
+
+  private static void decode(ByteBuffer payload, JournalVisitor visitor) {
+    byte type = payload.get();
+    if (type == ACCOUNT_CREATED) {
+      visitor.accountCreated(getString(payload), getAmount(payload));
+    } else if (type == TRANSFER) {
+      visitor.transferred(getString(payload), getString(payload), getAmount(payload));
+    } else {
+      throw new JournalException("Unknown journal record type " + type);
+    }
+  }
+
+  private static String getString(ByteBuffer payload) {
+    byte[] bytes = new byte[payload.getShort()];
+    payload.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  private static BigDecimal getAmount(ByteBuffer payload) {
+    int scale = payload.getInt();
+    byte[] unscaled = new byte[payload.getShort()];
+    payload.get(unscaled);
+    return new BigDecimal(new BigInteger(unscaled), scale);
+  }
+
+  private void flushLoop() {
+    while (running) {
+      synchronized (flushMonitor) {
+        if (writtenPosition - durablePosition < flushBytes) {
+          try {
+            flushMonitor.wait(flushIntervalMillis);
+          } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return;
+          }
+        }
+      }
+      flush();
+    }
+  }
+
+  private void flush() {
+    long target;
+    MappedByteBuffer buffer;
+    synchronized (appendLock) {
+      target = writtenPosition;
+      buffer = segment;
+    }
+    if (target > durablePosition) {
+      buffer.force();
+      synchronized (flushMonitor) {
+        durablePosition = target;
+        flushMonitor.notifyAll();
+      }
+    }
+  }
+
+  private List<Long> segmentBases() throws IOException {
+    try (Stream<Path> files = Files.list(directory)) {
+      return files.map(path -> path.getFileName().toString())
+          .filter(name -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX))
+          .map(name -> Long.parseLong(
+              name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())))
+          .sorted()
+          .collect(Collectors.toCollection(ArrayList::new));
+    }
+  }
+
+  private Path segmentPath(long base) {
+    return directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, base, SEGMENT_SUFFIX));
+  }
+}
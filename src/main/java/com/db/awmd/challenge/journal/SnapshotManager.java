@@ -0,0 +1,305 @@
+package com.db.awmd.challenge.journal;
+
+import com.db.awmd.challenge.exception.JournalException;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import javax.annotation.PreDestroy;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Periodically compacts the journal into a binary snapshot of every account balance.
+ *
+ * <p>A snapshot is never read from the live repository. Instead the journal is rolled, and the
+ * records of all now sealed segments are folded into the previous snapshot. The result is the
+ * exact state as of the roll position, taken without pausing or even observing transfers;
+ * recovery loads it and replays only the journal after that position. Segments already covered
+ * by the previous snapshot are then deleted.
+ *
+ * <p>File layout: {@code int magic, int version, long journalPosition, int accounts,
+ * int chunks, int crc32}, then per chunk {@code long offset, int length, int count}, then the
+ * chunk bodies of {@code id, scale, unscaled} entries. Chunks are decoded in parallel on load.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "accounts.snapshot.enabled", havingValue = "true")
+public class SnapshotManager {
+
+  private static final int MAGIC = 0x534e4150;
+  private static final int VERSION = 1;
+  private static final int HEADER_BYTES = 28;
+  private static final int CHUNK_INDEX_BYTES = 16;
+  private static final String SNAPSHOT_PREFIX = "snapshot-";
+  private static final String SNAPSHOT_SUFFIX = ".bin";
+
+  private final MappedTransactionJournal journal;
+
+  private final Path directory;
+
+  private final int chunkSize;
+
+  private final ScheduledExecutorService scheduler;
+
+  @Getter
+  private volatile long lastDurationMillis;
+
+  @Getter
+  private volatile long lastSizeBytes;
+
+  @Getter
+  private volatile int lastAccountCount;
+
+  @Getter
+  private volatile long lastJournalPosition;
+
+  @Getter
+  private volatile long snapshotsTaken;
+
+  @Autowired
+  public SnapshotManager(MappedTransactionJournal journal,
+      @Value("${accounts.snapshot.directory:snapshots}") String directory,
+      @Value("${accounts.snapshot.interval-ms:60000}") long intervalMillis,
+      @Value("${accounts.snapshot.chunk-size:65536}") int chunkSize) {
+    this.journal = journal;
+    this.directory = Paths.get(directory);
+    this.chunkSize = chunkSize;
+    try {
+      Files.createDirectories(this.directory);
+    } catch (IOException ex) {
+      throw new JournalException("Could not create snapshot directory " + directory, ex);
+    }
+    this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "snapshot");
+      thread.setDaemon(true);
+      return thread;
+    });
+    if (intervalMillis > 0) {
+      scheduler.scheduleWithFixedDelay(this::snapshotQuietly, intervalMillis, intervalMillis,
+          TimeUnit.MILLISECONDS);
+    }
+  }
+
+  /**
+   * Loads the newest snapshot that passes its checksum into the given map and returns the
+   * journal position it covers, or 0 when there is none.
+   */
+  public long load(ConcurrentMap<String, BigDecimal> balances) {
+    for (Path path : snapshotsNewestFirst()) {
+      try {
+        return read(path, balances);
+      } catch (IOException | RuntimeException ex) {
+        log.warn("Skipping unreadable snapshot {}", path, ex);
+        balances.clear();
+      }
+    }
+    return 0;
+  }
+
+  /**
+   * Rolls the journal and writes a snapshot covering every record before the roll position.
+   */
+  public synchronized void snapshot() {
+    long started = System.nanoTime();
+    ConcurrentMap<String, BigDecimal> balances = new ConcurrentHashMap<>();
+    long previousPosition = load(balances);
+    long position = journal.roll();
+    journal.replay(previousPosition, position, new JournalVisitor() {
+      @Override
+      public void accountCreated(String accountId, BigDecimal balance) {
+        balances.merge(accountId, balance, BigDecimal::add);
+      }
+
+      @Override
+      public void transferred(String fromId, String toId, BigDecimal amount) {
+        balances.merge(fromId, amount.negate(), BigDecimal::add);
+        balances.merge(toId, amount, BigDecimal::add);
+      }
+    });
+    // The previous snapshot and the journal after it are kept as a fallback in case the new
+    // snapshot turns out to be unreadable.
+    long retainedPosition = previousPosition;
+    try {
+      Path written = write(balances, position);
+      lastSizeBytes = Files.size(written);
+      List<Path> snapshots = snapshotsNewestFirst();
+      for (int i = 2; i < snapshots.size(); i++) {
+        Files.deleteIfExists(snapshots.get(i));
+      }
+      retainedPosition = snapshots.size() > 1 ? positionOf(snapshots.get(1)) : 0;
+    } catch (IOException ex) {
+      throw new JournalException("Could not write snapshot in " + directory, ex);
+    }
+    journal.deleteSegmentsBefore(retainedPosition);
+    lastAccountCount = balances.size();
+    lastJournalPosition = position;
+    lastDurationMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+    snapshotsTaken++;
+    log.info("Wrote snapshot of {} accounts at journal position {} in {} ms",
+        lastAccountCount, position, lastDurationMillis);
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    scheduler.shutdownNow();
+  }
+
+  private void snapshotQuietly() {
+    try {
+      snapshot();
+    } catch (RuntimeException ex) {
+      log.error("Snapshot failed", ex);
+    }
+  }
+
+  private Path write(Map<String, BigDecimal> balances, long position) throws IOException {
+    List<byte[]> chunks = new ArrayList<>();
+    List<Integer> counts = new ArrayList<>();
+    ByteBuffer chunk = ByteBuffer.allocate(1 << 16);
+    int inChunk = 0;
+    for (Map.Entry<String, BigDecimal> entry : balances.entrySet()) {
+      byte[] id = entry.getKey().getBytes(StandardCharsets.UTF_8);
+      byte[] unscaled = entry.getValue().unscaledValue().toByteArray();
+      int needed = 2 + id.length + 6 + unscaled.length;
+      if (chunk.remaining() < needed) {
+        ByteBuffer grown = ByteBuffer.allocate(Math.max(chunk.capacity() * 2,
+            chunk.position() + needed));
+        chunk.flip();
+        chunk = grown.put(chunk);
+      }
+      chunk.putShort((short) id.length).put(id)
+          .putInt(entry.getValue().scale()).putShort((short) unscaled.length).put(unscaled);
+      if (++inChunk == chunkSize) {
+        chunks.add(Arrays.copyOf(chunk.array(), chunk.position()));
+        counts.add(inChunk);
+        chunk.clear();
+        inChunk = 0;
+      }
+    }
+    if (inChunk > 0) {
+      chunks.add(Arrays.copyOf(chunk.array(), chunk.position()));
+      counts.add(inChunk);
+    }
+
+    ByteBuffer index = ByteBuffer.allocate(chunks.size() * CHUNK_INDEX_BYTES);
+    long offset = HEADER_BYTES + (long) chunks.size() * CHUNK_INDEX_BYTES;
+    CRC32 crc = new CRC32();
+    for (int i = 0; i < chunks.size(); i++) {
+      index.putLong(offset).putInt(chunks.get(i).length).putInt(counts.get(i));
+      offset += chunks.get(i).length;
+    }
+    crc.update(index.array());
+    chunks.forEach(crc::update);
+    ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).putInt(MAGIC).putInt(VERSION)
+        .putLong(position).putInt(balances.size()).putInt(chunks.size())
+        .putInt((int) crc.getValue());
+    header.flip();
+    index.flip();
+
+    Path target = directory.resolve(String.format("%s%020d%s", SNAPSHOT_PREFIX, position,
+        SNAPSHOT_SUFFIX));
+    Path temporary = directory.resolve(target.getFileName() + ".tmp");
+    try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+        StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+      writeFully(channel, header);
+      writeFully(channel, index);
+      for (byte[] body : chunks) {
+        writeFully(channel, ByteBuffer.wrap(body));
+      }
+      channel.force(true);
+    }
+    return Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE,
+        StandardCopyOption.REPLACE_EXISTING);
+  }
+
+  private static long read(Path path, ConcurrentMap<String, BigDecimal> balances)
+      throws IOException {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+        throw new IOException("Not a snapshot file");
+      }
+      long position = buffer.getLong(8);
+      int chunks = buffer.getInt(20);
+      ByteBuffer body = buffer.duplicate();
+      body.position(HEADER_BYTES);
+      CRC32 crc = new CRC32();
+      crc.update(body);
+      if ((int) crc.getValue() != buffer.getInt(24)) {
+        throw new IOException("Snapshot checksum mismatch");
+      }
+      IntStream.range(0, chunks).parallel().forEach(i -> {
+        int entry = HEADER_BYTES + i * CHUNK_INDEX_BYTES;
+        ByteBuffer slice = buffer.duplicate();
+        slice.position((int) buffer.getLong(entry));
+        int count = buffer.getInt(entry + 12);
+        for (int n = 0; n < count; n++) {
+          byte[] id = new byte[slice.getShort()];
+          slice.get(id);
+          int scale = slice.getInt();
+          byte[] unscaled = new byte[slice.getShort()];
+          slice.get(unscaled);
+          balances.put(new String(id, StandardCharsets.UTF_8),
+              new BigDecimal(new BigInteger(unscaled), scale));
+        }
+      });
+      if (balances.size() != buffer.getInt(16)) {
+        throw new IOException("Snapshot account count mismatch");
+      }
+      return position;
+    }
+  }
+
+  private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+  }
+
+  private static long positionOf(Path snapshot) {
+    String name = snapshot.getFileName().toString();
+    return Long.parseLong(
+        name.substring(SNAPSHOT_PREFIX.length(), name.length() - SNAPSHOT_SUFFIX.length()));
+  }
+
+  private List<Path> snapshotsNewestFirst() {
+    try (Stream<Path> files = Files.list(directory)) {
+      List<Path> snapshots = files
+          .filter(path -> path.getFileName().toString().startsWith(SNAPSHOT_PREFIX)
+              && path.getFileName().toString().endsWith(SNAPSHOT_SUFFIX))
+          .sorted()
+          .collect(Collectors.toCollection(ArrayList::new));
+      Collections.reverse(snapshots);
+      return snapshots;
+    } catch (IOException ex) {
+      throw new JournalException("Could not list snapshots in " + directory, ex);
+    }
+  }
+}
@@ -0,0 +1,35 @@
+package com.db.awmd.challenge.journal;
+
+import java.math.BigDecimal;
+
+/**
+ * Write-ahead record of account creations and transfers. A record is appended before its change
+ * is applied, while no other request can change the accounts involved, so the journal order
+ * agrees with the order in which each account changed. Appends return the journal position just
+ * past the record; callers acknowledge the operation only after {@link #awaitDurable(long)}
+ * returns for that position, which lets one flush cover many concurrent appends.
+ *
+ * <p>A change can be seen by other requests before its record is durable, but never before it
+ * is appended. Anything that relied on it is appended later, so every durable prefix of the
+ * journal is a consistent state.
+ */
+public interface TransactionJournal {
+
+  long appendAccountCreated(String accountId, BigDecimal balance);
+
+  long appendTransfer(String fromId, String toId, BigDecimal amount);
+
+  void awaitDurable(long position);
+
+  /**
+   * Returns the position just past the last record appended; waiting for it covers every record
+   * appended before the call.
+   */
+  long getWrittenPosition();
+
+  /**
+   * Feeds every record at or after the given position to the visitor, in append order, and
+   * returns the position after the last record read.
+   */
+  long replay(long fromPosition, JournalVisitor visitor);
+}
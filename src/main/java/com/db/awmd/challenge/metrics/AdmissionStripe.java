@@ -0,0 +1,26 @@
+package com.db.awmd.challenge.metrics;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * Admission state of a lock stripe that turned transfers away. Queued transfers are those in
+ * flight that wait for the stripe's lock.
+ */
+@Data
+@AllArgsConstructor
+public class AdmissionStripe {
+
+  private final int stripe;
+
+  private final double limit;
+
+  private final int inFlight;
+
+  private final int queued;
+
+  private final long rejections;
+
+  private final String lastAccountId;
+
+}
@@ -0,0 +1,19 @@
+package com.db.awmd.challenge.metrics;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * A lock stripe that callers had to wait for, with the last account that waited on it.
+ */
+@Data
+@AllArgsConstructor
+public class ContendedStripe {
+
+  private final int stripe;
+
+  private final long contentions;
+
+  private final String lastAccountId;
+
+}
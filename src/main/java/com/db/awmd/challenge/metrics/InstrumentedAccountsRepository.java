@@ -0,0 +1,136 @@
+package com.db.awmd.challenge.metrics;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.AccountSnapshot;
+import com.db.awmd.challenge.exception.DuplicateAccountIdException;
+import com.db.awmd.challenge.repository.AccountsRepository;
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.function.BiConsumer;
+import javax.security.auth.login.AccountNotFoundException;
+
+/**
+ * Times every call of the hot repository methods, whether it succeeds or not.
+ */
+public class InstrumentedAccountsRepository implements AccountsRepository {
+
+  private final AccountsRepository delegate;
+
+  private final TransferMetrics metrics;
+
+  public InstrumentedAccountsRepository(AccountsRepository delegate, TransferMetrics metrics) {
+    this.delegate = delegate;
+    this.metrics = metrics;
+  }
+
+  @Override
+  public void createAccount(Account account) throws DuplicateAccountIdException {
+    long start = System.nanoTime();
+    try {
+      delegate.createAccount(account);
+    } finally {
+      metrics.getCreateAccountLatency().recordSince(start);
+    }
+  }
+
+  @Override
+  public List<Account> createAccounts(List<Account> accounts) {
+    return delegate.createAccounts(accounts);
+  }
+
+  @Override
+  public Account getAccount(String accountId) throws AccountNotFoundException {
+    long start = System.nanoTime();
+    try {
+      return delegate.getAccount(accountId);
+    } finally {
+      metrics.getGetAccountLatency().recordSince(start);
+    }
+  }
+
+  @Override
+  public AccountSnapshot getAccountSnapshot(String accountId) throws AccountNotFoundException {
+    long start = System.nanoTime();
+    try {
+      return delegate.getAccountSnapshot(accountId);
+    } finally {
+      metrics.getGetAccountLatency().recordSince(start);
+    }
+  }
+
+  @Override
+  public AccountSnapshot findAccountSnapshot(String accountId) {
+    long start = System.nanoTime();
+    try {
+      return delegate.findAccountSnapshot(accountId);
+    } finally {
+      metrics.getGetAccountLatency().recordSince(start);
+    }
+  }
+
+  @Override
+  public boolean compareAndSetBalance(AccountSnapshot expected, BigDecimal newBalance) {
+    return delegate.compareAndSetBalance(expected, newBalance);
+  }
+
+  @Override
+  public boolean isRepresentable(BigDecimal amount) {
+    return delegate.isRepresentable(amount);
+  }
+
+  @Override
+  public boolean markHot(String accountId) throws AccountNotFoundException {
+    return delegate.markHot(accountId);
+  }
+
+  @Override
+  public boolean isHot(String accountId) {
+    return delegate.isHot(accountId);
+  }
+
+  @Override
+  public void clearAccounts() {
+    delegate.clearAccounts();
+  }
+
+  @Override
+  public void addAmount(String accountId, BigDecimal amount) throws AccountNotFoundException {
+    long start = System.nanoTime();
+    try {
+      delegate.addAmount(accountId, amount);
+    } finally {
+      metrics.getAddAmountLatency().recordSince(start);
+    }
+  }
+
+  @Override
+  public void withdrawAmount(String accountId, BigDecimal amount)
+      throws AccountNotFoundException {
+    long start = System.nanoTime();
+    try {
+      delegate.withdrawAmount(accountId, amount);
+    } finally {
+      metrics.getWithdrawAmountLatency().recordSince(start);
+    }
+  }
+
+  @Override
+  public BigDecimal totalBalance() {
+    long start = System.nanoTime();
+    try {
+      return delegate.totalBalance();
+    } finally {
+      metrics.getTotalBalanceLatency().recordSince(start);
+    }
+  }
+
+  @Override
+  public BigDecimal sumBalances() {
+    return delegate.sumBalances();
+  }
+
+  @Override
+  public void forEachAccount(BiConsumer<String, BigDecimal> action) {
+    delegate.forEachAccount(action);
+  }
+}
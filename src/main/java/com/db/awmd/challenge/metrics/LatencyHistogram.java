@@ -0,0 +1,96 @@
+package com.db.awmd.challenge.metrics;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free latency histogram with a fixed set of buckets, so recording never allocates. Each
+ * power of two is split into four linear sub-buckets, which bounds the reported error at 25%
+ * and covers the full {@code long} range of nanoseconds in 252 buckets.
+ */
+public class LatencyHistogram {
+
+  private static final int SUB_BUCKET_BITS = 2;
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  private static final int BUCKETS = (Long.SIZE - SUB_BUCKET_BITS) * SUB_BUCKETS + SUB_BUCKETS;
+
+  private final LongAdder[] buckets = new LongAdder[BUCKETS];
+
+  private final LongAdder count = new LongAdder();
+
+  private final LongAdder sum = new LongAdder();
+
+  private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+  public LatencyHistogram() {
+    for (int i = 0; i < BUCKETS; i++) {
+      buckets[i] = new LongAdder();
+    }
+  }
+
+  public void record(long nanos) {
+    long value = Math.max(0, nanos);
+    buckets[bucketOf(value)].increment();
+    count.increment();
+    sum.add(value);
+    max.accumulate(value);
+  }
+
+  /**
+   * Records the time since the given {@link System#nanoTime()} reading.
+   */
+  public void recordSince(long startNanos) {
+    record(System.nanoTime() - startNanos);
+  }
+
+  public LatencySnapshot snapshot() {
+    long[] counts = new long[BUCKETS];
+    long total = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      counts[i] = buckets[i].sum();
+      total += counts[i];
+    }
+    return new LatencySnapshot(total, total == 0 ? 0 : micros(sum.sum()) / total,
+        micros(percentile(counts, total, 0.50)), micros(percentile(counts, total, 0.90)),
+        micros(percentile(counts, total, 0.99)), micros(percentile(counts, total, 0.999)),
+        micros(max.get()));
+  }
+
+  static int bucketOf(long value) {
+    if (value < 2 * SUB_BUCKETS) {
+      return (int) value;
+    }
+    int magnitude = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+    int subBucket = (int) (value >>> (magnitude - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+    return (magnitude - 1) * SUB_BUCKETS + subBucket;
+  }
+
+  static long upperBoundOf(int bucket) {
+    if (bucket < 2 * SUB_BUCKETS) {
+      return bucket;
+    }
+    int magnitude = bucket / SUB_BUCKETS + 1;
+    int subBucket = bucket % SUB_BUCKETS;
+    long width = 1L << (magnitude - SUB_BUCKET_BITS);
+    return (SUB_BUCKETS + subBucket) * width + (width - 1);
+  }
+
+  private static long percentile(long[] counts, long total, double quantile) {
+    if (total == 0) {
+      return 0;
+    }
+    long rank = (long) Math.ceil(total * quantile);
+    long seen = 0;
+    for (int i = 0; i < counts.length; i++) {
+      seen += counts[i];
+      if (seen >= rank) {
+        return upperBoundOf(i);
+      }
+    }
+    return upperBoundOf(counts.length - 1);
+  }
+
+  private static double micros(long nanos) {
+    return nanos / 1000.0;
+  }
+}
@@ -0,0 +1,27 @@
+package com.db.awmd.challenge.metrics;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * Latencies in microseconds. Percentiles are bucket upper bounds.
+ */
+@Data
+@AllArgsConstructor
+public class LatencySnapshot {
+
+  private final long count;
+
+  private final double mean;
+
+  private final double p50;
+
+  private final double p90;
+
+  private final double p99;
+
+  private final double p999;
+
+  private final double max;
+
+}
@@ -0,0 +1,37 @@
+package com.db.awmd.challenge.metrics;
+
+import com.db.awmd.challenge.repository.AccountsRepository;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Wraps whichever {@link AccountsRepository} is active in an
+ * {@link InstrumentedAccountsRepository}, so the implementations stay free of metrics code.
+ */
+@Component
+@ConditionalOnProperty(name = "accounts.metrics.repository", havingValue = "true",
+    matchIfMissing = true)
+public class RepositoryMetricsPostProcessor implements BeanPostProcessor {
+
+  private final TransferMetrics metrics;
+
+  @Autowired
+  public RepositoryMetricsPostProcessor(TransferMetrics metrics) {
+    this.metrics = metrics;
+  }
+
+  @Override
+  public Object postProcessBeforeInitialization(Object bean, String beanName) {
+    return bean;
+  }
+
+  @Override
+  public Object postProcessAfterInitialization(Object bean, String beanName) {
+    if (bean instanceof AccountsRepository) {
+      return new InstrumentedAccountsRepository((AccountsRepository) bean, metrics);
+    }
+    return bean;
+  }
+}
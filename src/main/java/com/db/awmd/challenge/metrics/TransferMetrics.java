@@ -0,0 +1,88 @@
+package com.db.awmd.challenge.metrics;
+
+import com.db.awmd.challenge.domain.TransferOutcome;
+import com.db.awmd.challenge.exception.InsufficientBalanceException;
+import com.db.awmd.challenge.exception.InvalidAmountException;
+import com.db.awmd.challenge.exception.LockTimeoutException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import javax.security.auth.login.AccountNotFoundException;
+import lombok.Getter;
+import org.springframework.stereotype.Component;
+
+/**
+ * Transfer and repository timings. Recording only touches pre-allocated adders.
+ */
+@Getter
+@Component
+public class TransferMetrics {
+
+  private final LatencyHistogram transferLatency = new LatencyHistogram();
+
+  private final LatencyHistogram engineLatency = new LatencyHistogram();
+
+  private final LatencyHistogram createAccountLatency = new LatencyHistogram();
+
+  private final LatencyHistogram getAccountLatency = new LatencyHistogram();
+
+  private final LatencyHistogram addAmountLatency = new LatencyHistogram();
+
+  private final LatencyHistogram withdrawAmountLatency = new LatencyHistogram();
+
+  private final LatencyHistogram totalBalanceLatency = new LatencyHistogram();
+
+  private final LongAdder insufficientBalance = new LongAdder();
+
+  private final LongAdder invalidAmount = new LongAdder();
+
+  private final LongAdder accountNotFound = new LongAdder();
+
+  private final LongAdder lockTimeout = new LongAdder();
+
+  private final LongAdder otherFailures = new LongAdder();
+
+  public void recordFailure(Exception ex) {
+    if (ex instanceof InsufficientBalanceException) {
+      insufficientBalance.increment();
+    } else if (ex instanceof InvalidAmountException) {
+      invalidAmount.increment();
+    } else if (ex instanceof AccountNotFoundException) {
+      accountNotFound.increment();
+    } else if (ex instanceof LockTimeoutException) {
+      lockTimeout.increment();
+    } else {
+      otherFailures.increment();
+    }
+  }
+
+  /**
+   * Counts a rejected transfer under the same name as the exception it used to be.
+   */
+  public void recordFailure(TransferOutcome outcome) {
+    switch (outcome) {
+      case INSUFFICIENT_BALANCE:
+        insufficientBalance.increment();
+        break;
+      case INVALID_AMOUNT:
+        invalidAmount.increment();
+        break;
+      case FROM_ACCOUNT_NOT_FOUND:
+      case TO_ACCOUNT_NOT_FOUND:
+        accountNotFound.increment();
+        break;
+      default:
+        otherFailures.increment();
+    }
+  }
+
+  public Map<String, Long> failures() {
+    Map<String, Long> failures = new LinkedHashMap<>();
+    failures.put(InsufficientBalanceException.class.getSimpleName(), insufficientBalance.sum());
+    failures.put(InvalidAmountException.class.getSimpleName(), invalidAmount.sum());
+    failures.put(AccountNotFoundException.class.getSimpleName(), accountNotFound.sum());
+    failures.put(LockTimeoutException.class.getSimpleName(), lockTimeout.sum());
+    failures.put("Other", otherFailures.sum());
+    return failures;
+  }
+}
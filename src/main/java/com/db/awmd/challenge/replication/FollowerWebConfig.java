@@ -0,0 +1,53 @@
+package com.db.awmd.challenge.replication;
+
+import java.io.IOException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurerAdapter;
+import org.springframework.web.servlet.handler.HandlerInterceptorAdapter;
+
+/**
+ * Until promoted, a follower serves reads with their replication lag in a header and turns
+ * writes away with 503, naming the primary.
+ */
+@Configuration
+@ConditionalOnProperty(name = "accounts.replication.role", havingValue = "follower")
+public class FollowerWebConfig extends WebMvcConfigurerAdapter {
+
+  public static final String LAG_HEADER = "X-Replication-Lag-Ms";
+
+  private final ReplicationFollower follower;
+
+  @Autowired
+  public FollowerWebConfig(ReplicationFollower follower) {
+    this.follower = follower;
+  }
+
+  @Override
+  public void addInterceptors(InterceptorRegistry registry) {
+    registry.addInterceptor(new HandlerInterceptorAdapter() {
+      @Override
+      public boolean preHandle(HttpServletRequest request, HttpServletResponse response,
+          Object handler) throws IOException {
+        if (follower.isPromoted()) {
+          return true;
+        }
+        if ("GET".equals(request.getMethod()) || "HEAD".equals(request.getMethod())) {
+          response.setHeader(LAG_HEADER, String.valueOf(follower.getLagMillis()));
+          return true;
+        }
+        response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+        response.setContentType(MediaType.TEXT_PLAIN_VALUE);
+        response.getWriter().write(
+            "This node is a read-only follower; send writes to " + follower.getPrimary() + ".");
+        return false;
+      }
+    }).addPathPatterns("/v1/**");
+  }
+}
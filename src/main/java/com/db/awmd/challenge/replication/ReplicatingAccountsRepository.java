@@ -0,0 +1,141 @@
+package com.db.awmd.challenge.replication;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.AccountSnapshot;
+import com.db.awmd.challenge.exception.DuplicateAccountIdException;
+import com.db.awmd.challenge.repository.AccountsRepository;
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import javax.security.auth.login.AccountNotFoundException;
+
+/**
+ * Appends the resulting balance of every change to the {@link ReplicationLog}. The balance is
+ * read back and appended under a lock per account stripe, so for each account the later
+ * sequence number always carries the later balance, even for credits to hot accounts that do
+ * not hold the account's transfer lock.
+ */
+public class ReplicatingAccountsRepository implements AccountsRepository {
+
+  private static final int LOCK_STRIPES = 256;
+
+  private final AccountsRepository delegate;
+
+  private final ReplicationLog replicationLog;
+
+  private final Object[] locks = new Object[LOCK_STRIPES];
+
+  public ReplicatingAccountsRepository(AccountsRepository delegate,
+      ReplicationLog replicationLog) {
+    this.delegate = delegate;
+    this.replicationLog = replicationLog;
+    for (int i = 0; i < LOCK_STRIPES; i++) {
+      locks[i] = new Object();
+    }
+  }
+
+  @Override
+  public void createAccount(Account account) throws DuplicateAccountIdException {
+    delegate.createAccount(account);
+    record(account.getAccountId());
+  }
+
+  @Override
+  public List<Account> createAccounts(List<Account> accounts) {
+    List<Account> duplicates = delegate.createAccounts(accounts);
+    Set<Account> rejected = Collections.newSetFromMap(new IdentityHashMap<>());
+    rejected.addAll(duplicates);
+    for (Account account : accounts) {
+      if (!rejected.contains(account)) {
+        record(account.getAccountId());
+      }
+    }
+    return duplicates;
+  }
+
+  @Override
+  public Account getAccount(String accountId) throws AccountNotFoundException {
+    return delegate.getAccount(accountId);
+  }
+
+  @Override
+  public AccountSnapshot getAccountSnapshot(String accountId) throws AccountNotFoundException {
+    return delegate.getAccountSnapshot(accountId);
+  }
+
+  @Override
+  public AccountSnapshot findAccountSnapshot(String accountId) {
+    return delegate.findAccountSnapshot(accountId);
+  }
+
+  @Override
+  public boolean compareAndSetBalance(AccountSnapshot expected, BigDecimal newBalance) {
+    if (!delegate.compareAndSetBalance(expected, newBalance)) {
+      return false;
+    }
+    record(expected.getAccountId());
+    return true;
+  }
+
+  @Override
+  public boolean isRepresentable(BigDecimal amount) {
+    return delegate.isRepresentable(amount);
+  }
+
+  @Override
+  public boolean markHot(String accountId) throws AccountNotFoundException {
+    return delegate.markHot(accountId);
+  }
+
+  @Override
+  public boolean isHot(String accountId) {
+    return delegate.isHot(accountId);
+  }
+
+  @Override
+  public void clearAccounts() {
+    delegate.clearAccounts();
+    replicationLog.append(null, null);
+  }
+
+  @Override
+  public void addAmount(String accountId, BigDecimal amount) throws AccountNotFoundException {
+    delegate.addAmount(accountId, amount);
+    record(accountId);
+  }
+
+  @Override
+  public void withdrawAmount(String accountId, BigDecimal amount)
+      throws AccountNotFoundException {
+    delegate.withdrawAmount(accountId, amount);
+    record(accountId);
+  }
+
+  @Override
+  public BigDecimal totalBalance() {
+    return delegate.totalBalance();
+  }
+
+  @Override
+  public BigDecimal sumBalances() {
+    return delegate.sumBalances();
+  }
+
+  @Override
+  public void forEachAccount(BiConsumer<String, BigDecimal> action) {
+    delegate.forEachAccount(action);
+  }
+
+  private void record(String accountId) {
+    synchronized (locks[(accountId.hashCode() & Integer.MAX_VALUE) % LOCK_STRIPES]) {
+      try {
+        replicationLog.append(accountId, delegate.getAccount(accountId).getBalance());
+      } catch (AccountNotFoundException ex) {
+        // cleared meanwhile; the clear itself is replicated
+      }
+    }
+  }
+}
@@ -0,0 +1,235 @@
+package com.db.awmd.challenge.replication;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.AccountSnapshot;
+import com.db.awmd.challenge.domain.BalanceChange;
+import com.db.awmd.challenge.domain.ChangeBatch;
+import com.db.awmd.challenge.repository.AccountsRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.security.auth.login.AccountNotFoundException;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestTemplate;
+
+/**
+ * Keeps this node a read-only copy of the primary. A single thread long-polls the primary's
+ * replication log and applies each change in order; on start, or when it has fallen behind what
+ * the log retains, it reloads all accounts from a snapshot of the primary first.
+ *
+ * <p>The reported lag is an upper bound: every write the primary acknowledged before the last
+ * poll that left this node caught up is visible here. Promotion stops the tailing and makes the
+ * node writable; its own replication log has recorded every applied change, so other followers
+ * can tail it after a resync.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "accounts.replication.role", havingValue = "follower")
+public class ReplicationFollower {
+
+  @Getter
+  private final String primary;
+
+  private final AccountsRepository accountsRepository;
+
+  private final ObjectMapper objectMapper;
+
+  private final RestTemplate restTemplate;
+
+  private final int batchSize;
+
+  private final long pollWaitMillis;
+
+  private final Thread tailer;
+
+  private final LongAdder applied = new LongAdder();
+
+  private final LongAdder resyncs = new LongAdder();
+
+  @Getter
+  private volatile long appliedSequence = -1;
+
+  private volatile long caughtUpAt;
+
+  @Getter
+  private volatile boolean promoted;
+
+  private volatile boolean stopped;
+
+  @Autowired
+  public ReplicationFollower(AccountsRepository accountsRepository, ObjectMapper objectMapper,
+      @Value("${accounts.replication.primary}") String primary,
+      @Value("${accounts.replication.batch-size:10000}") int batchSize,
+      @Value("${accounts.replication.poll-wait-ms:1000}") long pollWaitMillis,
+      @Value("${accounts.replication.request-timeout-ms:5000}") int requestTimeoutMillis) {
+    this.accountsRepository = accountsRepository;
+    this.objectMapper = objectMapper;
+    this.primary = primary;
+    this.batchSize = batchSize;
+    this.pollWaitMillis = pollWaitMillis;
+    SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+    requestFactory.setConnectTimeout(requestTimeoutMillis);
+    requestFactory.setReadTimeout(requestTimeoutMillis + (int) pollWaitMillis);
+    this.restTemplate = new RestTemplate(requestFactory);
+    this.tailer = new Thread(this::tail, "replication-follower");
+    this.tailer.setDaemon(true);
+  }
+
+  @PostConstruct
+  public void start() {
+    tailer.start();
+  }
+
+  @PreDestroy
+  public void stop() {
+    stopped = true;
+    tailer.interrupt();
+  }
+
+  /**
+   * Stops following the primary, after the change being applied, and accepts writes from then
+   * on.
+   */
+  public void promote() throws InterruptedException {
+    promoted = true;
+    tailer.interrupt();
+    tailer.join();
+    log.info("Promoted to primary at sequence {}", appliedSequence);
+  }
+
+  /**
+   * Milliseconds since the last moment this node is known to have matched the primary, or -1
+   * before it first caught up.
+   */
+  public long getLagMillis() {
+    long at = caughtUpAt;
+    return at == 0 ? -1 : System.currentTimeMillis() - at;
+  }
+
+  public long getApplied() {
+    return applied.sum();
+  }
+
+  public long getResyncs() {
+    return resyncs.sum();
+  }
+
+  private void tail() {
+    while (!stopped && !promoted) {
+      try {
+        if (appliedSequence < 0) {
+          resync();
+        } else {
+          poll();
+        }
+      } catch (HttpClientErrorException ex) {
+        if (ex.getStatusCode() == HttpStatus.GONE) {
+          log.warn("Fell behind the primary's log: {}", ex.getResponseBodyAsString());
+          appliedSequence = -1;
+          caughtUpAt = 0;
+        } else {
+          backOff(ex);
+        }
+      } catch (IOException | RuntimeException ex) {
+        backOff(ex);
+      }
+    }
+  }
+
+  private void poll() {
+    long sentAt = System.currentTimeMillis();
+    ChangeBatch batch = restTemplate.getForObject(
+        primary + "/internal/replication/changes?after={after}&max={max}&wait-ms={wait}",
+        ChangeBatch.class, appliedSequence, batchSize, pollWaitMillis);
+    for (BalanceChange change : batch.getChanges()) {
+      if (promoted) {
+        return;
+      }
+      apply(change);
+      appliedSequence = change.getSequence();
+      applied.increment();
+    }
+    if (appliedSequence >= batch.getHead()) {
+      caughtUpAt = sentAt;
+    }
+  }
+
+  private void apply(BalanceChange change) {
+    if (change.getAccountId() == null) {
+      accountsRepository.clearAccounts();
+      return;
+    }
+    try {
+      AccountSnapshot current = accountsRepository.getAccountSnapshot(change.getAccountId());
+      BigDecimal delta = change.getBalance().subtract(current.getBalance());
+      if (delta.signum() > 0) {
+        accountsRepository.addAmount(change.getAccountId(), delta);
+      } else if (delta.signum() < 0) {
+        accountsRepository.withdrawAmount(change.getAccountId(), delta.negate());
+      }
+    } catch (AccountNotFoundException ex) {
+      accountsRepository.createAccount(new Account(change.getAccountId(), change.getBalance()));
+    }
+  }
+
+  private void resync() throws IOException {
+    log.info("Loading a snapshot of {}", primary);
+    Long sequence = restTemplate.execute(primary + "/internal/replication/snapshot",
+        HttpMethod.GET, null, response -> load(response.getBody()));
+    appliedSequence = sequence;
+    resyncs.increment();
+    log.info("Loaded snapshot at sequence {}", sequence);
+  }
+
+  /**
+   * Replaces all accounts with the snapshot: a line with its sequence number followed by one
+   * account per line.
+   */
+  private long load(InputStream body) throws IOException {
+    BufferedReader reader = new BufferedReader(
+        new InputStreamReader(body, StandardCharsets.UTF_8));
+    long sequence = objectMapper.readTree(reader.readLine()).get("sequence").asLong();
+    accountsRepository.clearAccounts();
+    List<Account> chunk = new ArrayList<>(batchSize);
+    String line;
+    while ((line = reader.readLine()) != null) {
+      if (line.isEmpty()) {
+        continue;
+      }
+      chunk.add(objectMapper.readValue(line, Account.class));
+      if (chunk.size() == batchSize) {
+        accountsRepository.createAccounts(chunk);
+        chunk = new ArrayList<>(batchSize);
+      }
+    }
+    accountsRepository.createAccounts(chunk);
+    return sequence;
+  }
+
+  private void backOff(Exception ex) {
+    log.warn("Replication from {} failed: {}", primary, ex.toString());
+    try {
+      Thread.sleep(pollWaitMillis);
+    } catch (InterruptedException interrupted) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
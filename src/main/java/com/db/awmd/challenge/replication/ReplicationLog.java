@@ -0,0 +1,106 @@
+package com.db.awmd.challenge.replication;
+
+import com.db.awmd.challenge.domain.BalanceChange;
+import com.db.awmd.challenge.exception.ReplicationLogTruncatedException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * The most recent balance changes in sequence order, kept in a fixed ring so writers never wait
+ * for followers. A writer claims a sequence number and then publishes its change into the slot;
+ * readers stop at the first slot not published yet. A follower that falls further behind than
+ * the ring holds has to start over from a snapshot.
+ */
+@Component
+@ConditionalOnProperty(name = "accounts.replication.enabled", havingValue = "true")
+public class ReplicationLog {
+
+  private final AtomicReferenceArray<BalanceChange> slots;
+
+  private final int mask;
+
+  private final AtomicLong head = new AtomicLong();
+
+  private final AtomicInteger waiters = new AtomicInteger();
+
+  @Autowired
+  public ReplicationLog(@Value("${accounts.replication.log-capacity:1048576}") int capacity) {
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("Replication log capacity must be positive.");
+    }
+    int size = Integer.highestOneBit(capacity);
+    size = size < capacity ? size << 1 : size;
+    this.slots = new AtomicReferenceArray<>(size);
+    this.mask = size - 1;
+  }
+
+  public long append(String accountId, BigDecimal balance) {
+    long sequence = head.incrementAndGet();
+    slots.set((int) sequence & mask, new BalanceChange(sequence, accountId, balance));
+    if (waiters.get() > 0) {
+      synchronized (this) {
+        notifyAll();
+      }
+    }
+    return sequence;
+  }
+
+  /**
+   * The sequence number of the latest change, published or not.
+   */
+  public long getHead() {
+    return head.get();
+  }
+
+  /**
+   * Returns up to {@code max} published changes following {@code after}, in order.
+   */
+  public List<BalanceChange> readAfter(long after, int max) {
+    long current = head.get();
+    if (after > current || after < current - slots.length()) {
+      throw new ReplicationLogTruncatedException(
+          "Changes after " + after + " are not retained; the log is at " + current + ".");
+    }
+    List<BalanceChange> changes = new ArrayList<>((int) Math.min(max, current - after));
+    for (long sequence = after + 1; sequence <= current && changes.size() < max; sequence++) {
+      BalanceChange change = slots.get((int) sequence & mask);
+      if (change == null || change.getSequence() < sequence) {
+        break;
+      }
+      if (change.getSequence() > sequence) {
+        throw new ReplicationLogTruncatedException(
+            "Change " + sequence + " was overwritten before it was read.");
+      }
+      changes.add(change);
+    }
+    return changes;
+  }
+
+  /**
+   * Waits until a change follows {@code after} or the timeout expires.
+   */
+  public void awaitAfter(long after, long timeoutMillis) throws InterruptedException {
+    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+    waiters.incrementAndGet();
+    try {
+      synchronized (this) {
+        long remaining;
+        while (head.get() <= after
+            && (remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime())) > 0) {
+          wait(remaining);
+        }
+      }
+    } finally {
+      waiters.decrementAndGet();
+    }
+  }
+}
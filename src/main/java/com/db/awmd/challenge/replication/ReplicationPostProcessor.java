@@ -0,0 +1,36 @@
+package com.db.awmd.challenge.replication;
+
+import com.db.awmd.challenge.repository.AccountsRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Wraps whichever {@link AccountsRepository} is active in a
+ * {@link ReplicatingAccountsRepository}, so every applied change reaches the replication log.
+ */
+@Component
+@ConditionalOnProperty(name = "accounts.replication.enabled", havingValue = "true")
+public class ReplicationPostProcessor implements BeanPostProcessor {
+
+  private final ReplicationLog replicationLog;
+
+  @Autowired
+  public ReplicationPostProcessor(ReplicationLog replicationLog) {
+    this.replicationLog = replicationLog;
+  }
+
+  @Override
+  public Object postProcessBeforeInitialization(Object bean, String beanName) {
+    return bean;
+  }
+
+  @Override
+  public Object postProcessAfterInitialization(Object bean, String beanName) {
+    if (bean instanceof AccountsRepository) {
+      return new ReplicatingAccountsRepository((AccountsRepository) bean, replicationLog);
+    }
+    return bean;
+  }
+}
@@ -1,21 +1,112 @@
 package com.db.awmd.challenge.repository;
 
 import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.AccountSnapshot;
 import com.db.awmd.challenge.exception.DuplicateAccountIdException;
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiConsumer;
 import javax.security.auth.login.AccountNotFoundException;
 
 public interface AccountsRepository {
 
   void createAccount(Account account) throws DuplicateAccountIdException;
 
+  /**
+   * Creates every account whose id is not taken yet and returns the ones that were duplicates.
+   */
+  default List<Account> createAccounts(List<Account> accounts) {
+    List<Account> duplicates = new ArrayList<>();
+    for (Account account : accounts) {
+      try {
+        createAccount(account);
+      } catch (DuplicateAccountIdException ex) {
+        duplicates.add(account);
+      }
+    }
+    return duplicates;
+  }
+
   Account getAccount(String accountId) throws AccountNotFoundException;
 
+  /**
+   * Returns the current balance as an immutable snapshot. Stores that do not track versions
+   * copy it from {@link #getAccount(String)} and report {@link AccountSnapshot#UNVERSIONED}.
+   */
+  default AccountSnapshot getAccountSnapshot(String accountId) throws AccountNotFoundException {
+    Account account = getAccount(accountId);
+    return new AccountSnapshot(account.getAccountId(), account.getBalance(),
+        AccountSnapshot.UNVERSIONED);
+  }
+
+  /**
+   * Like {@link #getAccountSnapshot(String)}, but returns null for an unknown account, for paths
+   * where a missing account is an expected outcome rather than an error.
+   */
+  default AccountSnapshot findAccountSnapshot(String accountId) {
+    try {
+      return getAccountSnapshot(accountId);
+    } catch (AccountNotFoundException ex) {
+      return null;
+    }
+  }
+
+  /**
+   * Whether the store can hold the amount as a balance or apply it as a credit or debit. Stores
+   * with a fixed number of decimals reject finer amounts and amounts out of their range.
+   */
+  default boolean isRepresentable(BigDecimal amount) {
+    return true;
+  }
+
   void clearAccounts();
 
+  /**
+   * Marks the account as hot, so that credits to it no longer contend with each other. Returns
+   * false when the store does not support hot accounts.
+   */
+  default boolean markHot(String accountId) throws AccountNotFoundException {
+    getAccount(accountId);
+    return false;
+  }
+
+  /**
+   * Whether credits to the existing account may be applied without holding its lock stripe.
+   */
+  default boolean isHot(String accountId) {
+    return false;
+  }
+
+  /**
+   * Replaces the balance if the account still holds exactly the given snapshot, bumping its
+   * version. Only versioned stores support this.
+   */
+  default boolean compareAndSetBalance(AccountSnapshot expected, BigDecimal newBalance) {
+    throw new UnsupportedOperationException(
+        getClass().getSimpleName() + " does not support versioned updates.");
+  }
+
   void addAmount(String accountId, BigDecimal amount) throws AccountNotFoundException;
 
   void withdrawAmount(String accountId, BigDecimal amount) throws AccountNotFoundException;
 
+  /**
+   * Returns the running total of all balances, maintained when accounts are created or cleared.
+   * Transfers move money between accounts and leave it unchanged, so this is O(1) and exact as
+   * long as every credit is paired with a debit of the same amount.
+   */
   BigDecimal totalBalance();
+
+  /**
+   * Adds up every balance with a parallel reduction. The result is only a point-in-time value
+   * when the caller keeps all accounts from changing while it runs.
+   */
+  BigDecimal sumBalances();
+
+  /**
+   * Passes every account id and balance to the action without building a collection. Like
+   * {@link #sumBalances()} the view is only consistent while accounts are kept from changing.
+   */
+  void forEachAccount(BiConsumer<String, BigDecimal> action);
 }
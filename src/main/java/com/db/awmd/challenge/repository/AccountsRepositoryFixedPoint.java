@@ -0,0 +1,130 @@
+package com.db.awmd.challenge.repository;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.AccountSnapshot;
+import com.db.awmd.challenge.domain.MinorUnits;
+import com.db.awmd.challenge.exception.DuplicateAccountIdException;
+import com.db.awmd.challenge.exception.InsufficientBalanceException;
+import java.math.BigDecimal;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import javax.security.auth.login.AccountNotFoundException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Keeps balances as {@code long} minor units, so credits and debits are plain CAS updates on a
+ * primitive. Amounts are converted exactly when they cross the repository boundary.
+ */
+@Repository
+@ConditionalOnProperty(name = "accounts.repository.type", havingValue = "fixed-point")
+public class AccountsRepositoryFixedPoint implements AccountsRepository {
+
+  private final ConcurrentHashMap<String, AtomicLong> balances = new ConcurrentHashMap<>();
+
+  private final AtomicLong total = new AtomicLong();
+
+  private final MinorUnits minorUnits;
+
+  @Autowired
+  public AccountsRepositoryFixedPoint(@Value("${accounts.money.currency:EUR}") String currency,
+      @Value("${accounts.money.scale:-1}") int scale) {
+    this(scale < 0 ? MinorUnits.forCurrency(currency) : new MinorUnits(scale));
+  }
+
+  public AccountsRepositoryFixedPoint(MinorUnits minorUnits) {
+    this.minorUnits = minorUnits;
+  }
+
+  @Override
+  public void createAccount(Account account) throws DuplicateAccountIdException {
+    long balance = minorUnits.fromDecimal(account.getBalance());
+    // added to the total first, so that an overflow leaves no account behind
+    total.accumulateAndGet(balance, MinorUnits::add);
+    AtomicLong previousBalance = balances
+        .putIfAbsent(account.getAccountId(), new AtomicLong(balance));
+    if (previousBalance != null) {
+      total.addAndGet(-balance);
+      throw new DuplicateAccountIdException(
+          "Account id " + account.getAccountId() + " already exists!");
+    }
+  }
+
+  @Override
+  public Account getAccount(String accountId) throws AccountNotFoundException {
+    return new Account(accountId, minorUnits.toDecimal(balanceCell(accountId).get()));
+  }
+
+  @Override
+  public AccountSnapshot findAccountSnapshot(String accountId) {
+    AtomicLong balance = balances.get(accountId);
+    return balance == null ? null : new AccountSnapshot(accountId,
+        minorUnits.toDecimal(balance.get()), AccountSnapshot.UNVERSIONED);
+  }
+
+  @Override
+  public void forEachAccount(BiConsumer<String, BigDecimal> action) {
+    balances.forEach(
+        (accountId, balance) -> action.accept(accountId, minorUnits.toDecimal(balance.get())));
+  }
+
+  @Override
+  public boolean isRepresentable(BigDecimal amount) {
+    return minorUnits.isRepresentable(amount);
+  }
+
+  @Override
+  public void clearAccounts() {
+    balances.clear();
+    total.set(0);
+  }
+
+  @Override
+  public void addAmount(String accountId, BigDecimal amount) throws AccountNotFoundException {
+    long delta = minorUnits.fromDecimal(amount);
+    AtomicLong balance = balanceCell(accountId);
+    long current;
+    do {
+      current = balance.get();
+    } while (!balance.compareAndSet(current, MinorUnits.add(current, delta)));
+  }
+
+  @Override
+  public void withdrawAmount(String accountId, BigDecimal amount) throws
+      AccountNotFoundException, InsufficientBalanceException {
+    long delta = minorUnits.fromDecimal(amount);
+    AtomicLong balance = balanceCell(accountId);
+    long current;
+    long updated;
+    do {
+      current = balance.get();
+      updated = MinorUnits.subtract(current, delta);
+      if (updated < 0) {
+        throw new InsufficientBalanceException("Insufficient Balance in account:" + accountId);
+      }
+    } while (!balance.compareAndSet(current, updated));
+  }
+
+  @Override
+  public BigDecimal totalBalance() {
+    return minorUnits.toDecimal(total.get());
+  }
+
+  @Override
+  public BigDecimal sumBalances() {
+    return minorUnits.toDecimal(
+        balances.reduceValuesToLong(1, AtomicLong::get, 0L, MinorUnits::add));
+  }
+
+  private AtomicLong balanceCell(String accountId) throws AccountNotFoundException {
+    AtomicLong balance = balances.get(accountId);
+    if (balance == null) {
+      throw new AccountNotFoundException("Account " + accountId + " does not exist.");
+    }
+    return balance;
+  }
+
+}
@@ -1,83 +1,308 @@
 package com.db.awmd.challenge.repository;
 
 import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.AccountSnapshot;
 import com.db.awmd.challenge.exception.DuplicateAccountIdException;
 import com.db.awmd.challenge.exception.InsufficientBalanceException;
 import java.math.BigDecimal;
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
 import javax.security.auth.login.AccountNotFoundException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Repository;
 
 @Repository
+@ConditionalOnProperty(name = "accounts.repository.type", havingValue = "in-memory",
+    matchIfMissing = true)
 public class AccountsRepositoryInMemory implements AccountsRepository {
 
+  /**
+   * Each account is held as a cell with an immutable, versioned snapshot. Credits and debits
+   * swap in a new snapshot with a compare-and-set loop, so readers get a consistent balance and
+   * version without copying or locking.
+   */
+  private final ConcurrentHashMap<String, AtomicReference<AccountSnapshot>> balances =
+      new ConcurrentHashMap<>();
 
-  private final Map<String, Account> accounts = new ConcurrentHashMap<>();
+  /**
+   * Pending credits of hot accounts. A credit to a hot account only adds to one of its striped
+   * cells, so concurrent credits do not contend on the snapshot; a debit folds the cells into
+   * the snapshot first and is checked against the result. Reads add the pending credits without
+   * folding them, which is why hot accounts report unversioned snapshots, and retry if a fold
+   * ran meanwhile, so they never miss credits that were drained but not yet folded.
+   */
+  private final ConcurrentHashMap<String, StripedCredits> hotCredits = new ConcurrentHashMap<>();
+
+  private final Set<String> configuredHotAccounts;
+
+  private final AtomicReference<BigDecimal> total = new AtomicReference<>(BigDecimal.ZERO);
+
+  /**
+   * Source of account incarnations, starting at a random point so that accounts created again
+   * after a restart are unlikely to reuse one.
+   */
+  private final AtomicLong incarnations = new AtomicLong(ThreadLocalRandom.current().nextLong());
+
+  public AccountsRepositoryInMemory() {
+    this(new String[0]);
+  }
+
+  @Autowired
+  public AccountsRepositoryInMemory(@Value("${accounts.hot-accounts:}") String[] hotAccounts) {
+    this.configuredHotAccounts = new HashSet<>(Arrays.asList(hotAccounts));
+  }
 
   @Override
   public void createAccount(Account account) throws DuplicateAccountIdException {
-    Account previousAccount = accounts.putIfAbsent(account.getAccountId(), account);
-    if (previousAccount != null) {
+    AccountSnapshot initial = new AccountSnapshot(account.getAccountId(), account.getBalance(), 0,
+        incarnations.incrementAndGet());
+    AtomicReference<AccountSnapshot> previousBalance = balances
+        .putIfAbsent(account.getAccountId(), new AtomicReference<>(initial));
+    if (previousBalance != null) {
       throw new DuplicateAccountIdException(
           "Account id " + account.getAccountId() + " already exists!");
     }
+    if (configuredHotAccounts.contains(account.getAccountId())) {
+      hotCredits.put(account.getAccountId(), new StripedCredits());
+    }
+    total.accumulateAndGet(account.getBalance(), BigDecimal::add);
+  }
+
+  /**
+   * Inserts the accounts without throwing for duplicates and adds their balances to the
+   * running total in one step, instead of once per account.
+   */
+  @Override
+  public List<Account> createAccounts(List<Account> accounts) {
+    List<Account> duplicates = new ArrayList<>();
+    BigDecimal created = BigDecimal.ZERO;
+    for (Account account : accounts) {
+      AccountSnapshot initial = new AccountSnapshot(account.getAccountId(),
+          account.getBalance(), 0, incarnations.incrementAndGet());
+      if (balances.putIfAbsent(account.getAccountId(), new AtomicReference<>(initial)) == null) {
+        created = created.add(account.getBalance());
+        if (configuredHotAccounts.contains(account.getAccountId())) {
+          hotCredits.put(account.getAccountId(), new StripedCredits());
+        }
+      } else {
+        duplicates.add(account);
+      }
+    }
+    total.accumulateAndGet(created, BigDecimal::add);
+    return duplicates;
   }
 
   @Override
   public Account getAccount(String accountId) throws AccountNotFoundException {
-    Account account = accounts.get(accountId);
-    if (account == null) {
-      throw new AccountNotFoundException("Account " + accountId + " does not exist.");
+    return new Account(accountId, getAccountSnapshot(accountId).getBalance());
+  }
+
+  @Override
+  public AccountSnapshot getAccountSnapshot(String accountId) throws AccountNotFoundException {
+    AtomicReference<AccountSnapshot> balance = balanceCell(accountId);
+    StripedCredits credits = hotCredits.get(accountId);
+    if (credits == null) {
+      return balance.get();
+    }
+    return new AccountSnapshot(accountId, credits.balance(balance), AccountSnapshot.UNVERSIONED);
+  }
+
+  @Override
+  public AccountSnapshot findAccountSnapshot(String accountId) {
+    AtomicReference<AccountSnapshot> balance = balances.get(accountId);
+    if (balance == null) {
+      return null;
     }
-    return new Account(account);
+    StripedCredits credits = hotCredits.get(accountId);
+    if (credits == null) {
+      return balance.get();
+    }
+    return new AccountSnapshot(accountId, credits.balance(balance), AccountSnapshot.UNVERSIONED);
+  }
+
+  @Override
+  public boolean markHot(String accountId) throws AccountNotFoundException {
+    balanceCell(accountId);
+    hotCredits.putIfAbsent(accountId, new StripedCredits());
+    return true;
+  }
+
+  @Override
+  public boolean isHot(String accountId) {
+    return hotCredits.containsKey(accountId);
+  }
+
+  @Override
+  public boolean compareAndSetBalance(AccountSnapshot expected, BigDecimal newBalance) {
+    AtomicReference<AccountSnapshot> balance = balances.get(expected.getAccountId());
+    return balance != null && balance.compareAndSet(expected, expected.next(newBalance));
+  }
+
+  @Override
+  public void forEachAccount(BiConsumer<String, BigDecimal> action) {
+    balances.forEach((accountId, balance) -> {
+      StripedCredits credits = hotCredits.get(accountId);
+      action.accept(accountId,
+          credits == null ? balance.get().getBalance() : credits.balance(balance));
+    });
   }
 
   @Override
   public void clearAccounts() {
-    accounts.clear();
+    balances.clear();
+    hotCredits.clear();
+    total.set(BigDecimal.ZERO);
   }
 
   @Override
   public void addAmount(String accountId, BigDecimal amount) throws AccountNotFoundException {
-
-    synchronized (accountId) {
-      Account account = this.getAccount(accountId);
-      BigDecimal updatedToBalance = account.getBalance().add(amount);
-      accounts.computeIfPresent(accountId, (id, act) -> {
-        account.setBalance(updatedToBalance);
-        return account;
-      });
+    AtomicReference<AccountSnapshot> balance = balanceCell(accountId);
+    StripedCredits credits = hotCredits.get(accountId);
+    if (credits != null) {
+      credits.add(amount);
+      return;
     }
+    credit(balance, amount);
   }
 
   @Override
   public void withdrawAmount(String accountId, BigDecimal amount) throws
       AccountNotFoundException, InsufficientBalanceException {
-
-    synchronized (accountId) {
-      Account account = this.getAccount(accountId);
-      BigDecimal updatedBalance = account.getBalance().subtract(amount);
-      if (updatedBalance.compareTo(BigDecimal.ZERO) < 0) {
+    AtomicReference<AccountSnapshot> balance = balanceCell(accountId);
+    StripedCredits credits = hotCredits.get(accountId);
+    if (credits != null) {
+      credits.fold(balance);
+    }
+    AccountSnapshot current;
+    BigDecimal updated;
+    do {
+      current = balance.get();
+      updated = current.getBalance().subtract(amount);
+      if (updated.signum() < 0) {
         throw new InsufficientBalanceException("Insufficient Balance in account:" + accountId);
       }
-      accounts.computeIfPresent(accountId, (id, act) -> {
-        account.setBalance(updatedBalance);
-        return account;
-      });
-
-    }
-
+    } while (!balance.compareAndSet(current, current.next(updated)));
   }
 
   @Override
   public BigDecimal totalBalance() {
+    return total.get();
+  }
 
-    BigDecimal sum = accounts.values().stream().map(account -> {
-      return account.getBalance();
-    }).reduce(BigDecimal.ZERO, BigDecimal::add);
-    return sum;
+  @Override
+  public BigDecimal sumBalances() {
+    BigDecimal sum = balances.reduceValues(1, cell -> cell.get().getBalance(), BigDecimal::add);
+    BigDecimal pending = hotCredits.reduceValues(1, StripedCredits::pending, BigDecimal::add);
+    return (sum == null ? BigDecimal.ZERO : sum).add(pending == null ? BigDecimal.ZERO : pending);
+  }
+
+  private static void credit(AtomicReference<AccountSnapshot> balance, BigDecimal amount) {
+    AccountSnapshot current;
+    do {
+      current = balance.get();
+    } while (!balance.compareAndSet(current, current.next(current.getBalance().add(amount))));
+  }
 
+  private AtomicReference<AccountSnapshot> balanceCell(String accountId)
+      throws AccountNotFoundException {
+    AtomicReference<AccountSnapshot> balance = balances.get(accountId);
+    if (balance == null) {
+      throw new AccountNotFoundException("Account " + accountId + " does not exist.");
+    }
+    return balance;
   }
 
+  /**
+   * Credit cells in the manner of {@link java.util.concurrent.atomic.LongAdder}: a thread starts
+   * at the cell picked by its id and moves on to the next one when the update races. Folds are
+   * serialized and bracketed by a sequence that is odd while one runs, in the manner of a
+   * seqlock, so a reader can tell whether drained credits may have been missing from its sum.
+   */
+  private static final class StripedCredits {
+
+    private static final int CELLS = cellCount();
+
+    private volatile long foldSequence;
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private final AtomicReference<BigDecimal>[] cells = new AtomicReference[CELLS];
+
+    private StripedCredits() {
+      for (int i = 0; i < CELLS; i++) {
+        cells[i] = new AtomicReference<>(BigDecimal.ZERO);
+      }
+    }
+
+    private void add(BigDecimal amount) {
+      int h = (int) Thread.currentThread().getId() * 0x9E3779B9;
+      int index = h ^ (h >>> 16);
+      while (true) {
+        AtomicReference<BigDecimal> cell = cells[index & (CELLS - 1)];
+        BigDecimal current = cell.get();
+        if (cell.compareAndSet(current, current.add(amount))) {
+          return;
+        }
+        index++;
+      }
+    }
+
+    private BigDecimal pending() {
+      BigDecimal sum = BigDecimal.ZERO;
+      for (AtomicReference<BigDecimal> cell : cells) {
+        sum = sum.add(cell.get());
+      }
+      return sum;
+    }
+
+    private synchronized void fold(AtomicReference<AccountSnapshot> balance) {
+      foldSequence++;
+      try {
+        BigDecimal pending = drain();
+        if (pending.signum() != 0) {
+          credit(balance, pending);
+        }
+      } finally {
+        foldSequence++;
+      }
+    }
+
+    /**
+     * Returns the folded balance plus the pending credits as of one moment between folds.
+     */
+    private BigDecimal balance(AtomicReference<AccountSnapshot> balance) {
+      while (true) {
+        long sequence = foldSequence;
+        if ((sequence & 1) == 0) {
+          BigDecimal current = balance.get().getBalance().add(pending());
+          if (foldSequence == sequence) {
+            return current;
+          }
+        }
+        Thread.yield();
+      }
+    }
+
+    private BigDecimal drain() {
+      BigDecimal sum = BigDecimal.ZERO;
+      for (AtomicReference<BigDecimal> cell : cells) {
+        sum = sum.add(cell.getAndSet(BigDecimal.ZERO));
+      }
+      return sum;
+    }
+
+    private static int cellCount() {
+      int processors = Runtime.getRuntime().availableProcessors();
+      return Integer.highestOneBit(Math.max(1, processors * 2 - 1)) << 1;
+    }
+  }
 }
@@ -0,0 +1,358 @@
+package com.db.awmd.challenge.repository;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.AccountSnapshot;
+import com.db.awmd.challenge.domain.MinorUnits;
+import com.db.awmd.challenge.exception.DuplicateAccountIdException;
+import com.db.awmd.challenge.exception.InsufficientBalanceException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.BiConsumer;
+import javax.security.auth.login.AccountNotFoundException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Account store kept entirely in direct memory. The table is split into segments, each an
+ * open-addressing hash table in its own {@link ByteBuffer} with a key arena for the account id
+ * characters and a {@link StampedLock}. No objects are created per account, so the heap
+ * footprint does not grow with the number of accounts.
+ *
+ * <p>Slot layout: {@code int hash, int idLength + 1 (0 when free), long idOffset, long balance}.
+ */
+@Repository
+@ConditionalOnProperty(name = "accounts.repository.type", havingValue = "off-heap")
+public class AccountsRepositoryOffHeap implements AccountsRepository {
+
+  private static final int SLOT_BYTES = 24;
+  private static final int HASH = 0;
+  private static final int LENGTH = 4;
+  private static final int ID_OFFSET = 8;
+  private static final int BALANCE = 16;
+
+  private final Segment[] segments;
+
+  private final int segmentShift;
+
+  private final MinorUnits minorUnits;
+
+  private final AtomicLong total = new AtomicLong();
+
+  @Autowired
+  public AccountsRepositoryOffHeap(@Value("${accounts.money.currency:EUR}") String currency,
+      @Value("${accounts.money.scale:-1}") int scale,
+      @Value("${accounts.off-heap.capacity:1048576}") int capacity,
+      @Value("${accounts.off-heap.segments:64}") int segmentCount,
+      @Value("${accounts.off-heap.average-id-length:16}") int averageIdLength) {
+    this(scale < 0 ? MinorUnits.forCurrency(currency) : new MinorUnits(scale), capacity,
+        segmentCount, averageIdLength);
+  }
+
+  public AccountsRepositoryOffHeap(MinorUnits minorUnits, int capacity, int segmentCount,
+      int averageIdLength) {
+    if (Integer.bitCount(segmentCount) != 1) {
+      throw new IllegalArgumentException("Segment count must be a power of two.");
+    }
+    this.minorUnits = minorUnits;
+    this.segments = new Segment[segmentCount];
+    // Size each segment for a load factor of at most 0.75.
+    int slotsPerSegment = Integer.highestOneBit(
+        Math.max(2, (int) Math.ceil(capacity / (double) segmentCount / 0.75)) * 2 - 1);
+    int entriesPerSegment = (int) (slotsPerSegment * 0.75);
+    for (int i = 0; i < segmentCount; i++) {
+      segments[i] = new Segment(slotsPerSegment, entriesPerSegment, averageIdLength);
+    }
+    this.segmentShift = 32 - Integer.numberOfTrailingZeros(segmentCount);
+  }
+
+  @Override
+  public void createAccount(Account account) throws DuplicateAccountIdException {
+    String accountId = account.getAccountId();
+    long balance = minorUnits.fromDecimal(account.getBalance());
+    int hash = hash(accountId);
+    Segment segment = segmentFor(hash);
+    // added to the total first, so that an overflow leaves no account behind
+    total.accumulateAndGet(balance, MinorUnits::add);
+    boolean inserted = false;
+    long stamp = segment.lock.writeLock();
+    try {
+      int slot = segment.find(accountId, hash);
+      if (segment.isOccupied(slot)) {
+        throw new DuplicateAccountIdException(
+            "Account id " + accountId + " already exists!");
+      }
+      segment.insert(slot, accountId, hash, balance);
+      inserted = true;
+    } finally {
+      segment.lock.unlockWrite(stamp);
+      if (!inserted) {
+        total.addAndGet(-balance);
+      }
+    }
+  }
+
+  @Override
+  public Account getAccount(String accountId) throws AccountNotFoundException {
+    return new Account(accountId, minorUnits.toDecimal(balanceOf(accountId)));
+  }
+
+  @Override
+  public AccountSnapshot findAccountSnapshot(String accountId) {
+    int hash = hash(accountId);
+    Segment segment = segmentFor(hash);
+    long balance;
+    long stamp = segment.lock.readLock();
+    try {
+      int slot = segment.find(accountId, hash);
+      if (!segment.isOccupied(slot)) {
+        return null;
+      }
+      balance = segment.table.getLong(segment.position(slot) + BALANCE);
+    } finally {
+      segment.lock.unlockRead(stamp);
+    }
+    return new AccountSnapshot(accountId, minorUnits.toDecimal(balance),
+        AccountSnapshot.UNVERSIONED);
+  }
+
+  @Override
+  public boolean isRepresentable(BigDecimal amount) {
+    return minorUnits.isRepresentable(amount);
+  }
+
+  @Override
+  public void clearAccounts() {
+    for (Segment segment : segments) {
+      long stamp = segment.lock.writeLock();
+      try {
+        segment.clear();
+      } finally {
+        segment.lock.unlockWrite(stamp);
+      }
+    }
+    total.set(0);
+  }
+
+  @Override
+  public void addAmount(String accountId, BigDecimal amount) throws AccountNotFoundException {
+    long delta = minorUnits.fromDecimal(amount);
+    int hash = hash(accountId);
+    Segment segment = segmentFor(hash);
+    long stamp = segment.lock.writeLock();
+    try {
+      int position = segment.position(segment.lookup(accountId, hash));
+      segment.table.putLong(position + BALANCE,
+          MinorUnits.add(segment.table.getLong(position + BALANCE), delta));
+    } finally {
+      segment.lock.unlockWrite(stamp);
+    }
+  }
+
+  @Override
+  public void withdrawAmount(String accountId, BigDecimal amount) throws
+      AccountNotFoundException, InsufficientBalanceException {
+    long delta = minorUnits.fromDecimal(amount);
+    int hash = hash(accountId);
+    Segment segment = segmentFor(hash);
+    long stamp = segment.lock.writeLock();
+    try {
+      int position = segment.position(segment.lookup(accountId, hash));
+      long updated = MinorUnits.subtract(segment.table.getLong(position + BALANCE), delta);
+      if (updated < 0) {
+        throw new InsufficientBalanceException("Insufficient Balance in account:" + accountId);
+      }
+      segment.table.putLong(position + BALANCE, updated);
+    } finally {
+      segment.lock.unlockWrite(stamp);
+    }
+  }
+
+  @Override
+  public BigDecimal totalBalance() {
+    return minorUnits.toDecimal(total.get());
+  }
+
+  @Override
+  public BigDecimal sumBalances() {
+    return minorUnits.toDecimal(Arrays.stream(segments).parallel()
+        .mapToLong(Segment::sum).reduce(0L, MinorUnits::add));
+  }
+
+  /**
+   * Copies one segment at a time under its read lock and passes the copy on after releasing
+   * it, so a slow consumer never holds up writers.
+   */
+  @Override
+  public void forEachAccount(BiConsumer<String, BigDecimal> action) {
+    for (Segment segment : segments) {
+      String[] ids;
+      long[] balances;
+      long stamp = segment.lock.readLock();
+      try {
+        ids = new String[segment.entries];
+        balances = new long[segment.entries];
+        int count = 0;
+        for (int slot = 0; slot < segment.slots; slot++) {
+          if (segment.isOccupied(slot)) {
+            ids[count] = segment.idAt(slot);
+            balances[count++] = segment.table.getLong(segment.position(slot) + BALANCE);
+          }
+        }
+      } finally {
+        segment.lock.unlockRead(stamp);
+      }
+      for (int i = 0; i < ids.length; i++) {
+        action.accept(ids[i], minorUnits.toDecimal(balances[i]));
+      }
+    }
+  }
+
+  private long balanceOf(String accountId) throws AccountNotFoundException {
+    int hash = hash(accountId);
+    Segment segment = segmentFor(hash);
+    long stamp = segment.lock.readLock();
+    try {
+      return segment.table.getLong(segment.position(segment.lookup(accountId, hash)) + BALANCE);
+    } finally {
+      segment.lock.unlockRead(stamp);
+    }
+  }
+
+  private Segment segmentFor(int hash) {
+    return segments.length == 1 ? segments[0] : segments[hash >>> segmentShift];
+  }
+
+  private static int hash(String accountId) {
+    int h = accountId.hashCode() * 0x9E3779B9;
+    return h ^ (h >>> 16);
+  }
+
+  private static final class Segment {
+
+    private final StampedLock lock = new StampedLock();
+
+    private final ByteBuffer table;
+
+    private final int slots;
+
+    private final int mask;
+
+    private final int maxEntries;
+
+    private ByteBuffer ids;
+
+    private int entries;
+
+    private Segment(int slots, int maxEntries, int averageIdLength) {
+      this.slots = slots;
+      this.mask = slots - 1;
+      this.maxEntries = maxEntries;
+      this.table = ByteBuffer.allocateDirect(slots * SLOT_BYTES);
+      this.ids = ByteBuffer.allocateDirect(maxEntries * averageIdLength * Character.BYTES);
+    }
+
+    private int position(int slot) {
+      return slot * SLOT_BYTES;
+    }
+
+    private boolean isOccupied(int slot) {
+      return table.getInt(position(slot) + LENGTH) != 0;
+    }
+
+    /**
+     * Returns the slot holding the account, or the free slot where it would be inserted.
+     */
+    private int find(String accountId, int hash) {
+      int slot = hash & mask;
+      while (isOccupied(slot) && !matches(slot, accountId, hash)) {
+        slot = (slot + 1) & mask;
+      }
+      return slot;
+    }
+
+    private int lookup(String accountId, int hash) throws AccountNotFoundException {
+      int slot = find(accountId, hash);
+      if (!isOccupied(slot)) {
+        throw new AccountNotFoundException("Account " + accountId + " does not exist.");
+      }
+      return slot;
+    }
+
+    private boolean matches(int slot, String accountId, int hash) {
+      int position = position(slot);
+      if (table.getInt(position + HASH) != hash
+          || table.getInt(position + LENGTH) != accountId.length() + 1) {
+        return false;
+      }
+      int offset = (int) table.getLong(position + ID_OFFSET);
+      for (int i = 0; i < accountId.length(); i++) {
+        if (ids.getChar(offset + i * Character.BYTES) != accountId.charAt(i)) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    private String idAt(int slot) {
+      int position = position(slot);
+      int offset = (int) table.getLong(position + ID_OFFSET);
+      char[] id = new char[table.getInt(position + LENGTH) - 1];
+      for (int i = 0; i < id.length; i++) {
+        id[i] = ids.getChar(offset + i * Character.BYTES);
+      }
+      return new String(id);
+    }
+
+    private void insert(int slot, String accountId, int hash, long balance) {
+      if (entries >= maxEntries) {
+        throw new IllegalStateException("Off-heap account store is full.");
+      }
+      int length = accountId.length() * Character.BYTES;
+      if (ids.remaining() < length) {
+        ByteBuffer grown = ByteBuffer.allocateDirect(Math.max(ids.capacity() * 2,
+            ids.position() + length));
+        ids.flip();
+        grown.put(ids);
+        ids = grown;
+      }
+      int offset = ids.position();
+      for (int i = 0; i < accountId.length(); i++) {
+        ids.putChar(accountId.charAt(i));
+      }
+      int position = position(slot);
+      table.putInt(position + HASH, hash);
+      table.putLong(position + ID_OFFSET, offset);
+      table.putLong(position + BALANCE, balance);
+      table.putInt(position + LENGTH, accountId.length() + 1);
+      entries++;
+    }
+
+    private long sum() {
+      long stamp = lock.readLock();
+      try {
+        long sum = 0;
+        for (int slot = 0; slot < slots; slot++) {
+          if (isOccupied(slot)) {
+            sum = MinorUnits.add(sum, table.getLong(position(slot) + BALANCE));
+          }
+        }
+        return sum;
+      } finally {
+        lock.unlockRead(stamp);
+      }
+    }
+
+    private void clear() {
+      for (int position = 0; position < table.capacity(); position += Long.BYTES) {
+        table.putLong(position, 0L);
+      }
+      ids.clear();
+      entries = 0;
+    }
+  }
+}
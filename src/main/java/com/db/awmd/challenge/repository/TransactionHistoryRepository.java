@@ -0,0 +1,279 @@
+package com.db.awmd.challenge.repository;
+
+import com.db.awmd.challenge.domain.TransactionPage;
+import com.db.awmd.challenge.domain.TransactionRecord;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Per-account transaction history packed into primitive arrays. Every record is three longs:
+ * {@code timestamp, unscaled amount, scale << 32 | counterparty}, where the counterparty is an
+ * index into a shared id dictionary. Records of one account are kept in fixed-size chunks; the
+ * newest chunks stay in memory and older ones are spilled to a shared file on disk.
+ *
+ * <p>Timestamps never decrease within an account, so a statement page is found by binary search
+ * over the chunks' first timestamps and then within a chunk. A query reads only the chunks the
+ * page touches, however long the history is.
+ *
+ * <p>The spill file is scratch space and is deleted on shutdown; history does not survive a
+ * restart.
+ */
+@Slf4j
+@Repository
+public class TransactionHistoryRepository {
+
+  private static final int LONGS_PER_RECORD = 3;
+  private static final int INITIAL_CHUNK_RECORDS = 16;
+
+  private final ConcurrentHashMap<String, History> histories = new ConcurrentHashMap<>();
+
+  private final ConcurrentHashMap<String, Integer> counterpartyIndex = new ConcurrentHashMap<>();
+
+  private volatile String[] counterparties = new String[1024];
+
+  private int counterpartyCount;
+
+  private final int chunkRecords;
+
+  private final int memoryChunks;
+
+  private final FileChannel spill;
+
+  private final AtomicLong spillPosition = new AtomicLong();
+
+  @Autowired
+  public TransactionHistoryRepository(
+      @Value("${accounts.history.directory:${java.io.tmpdir}}") String directory,
+      @Value("${accounts.history.chunk-records:256}") int chunkRecords,
+      @Value("${accounts.history.memory-chunks:4}") int memoryChunks) {
+    this.chunkRecords = chunkRecords;
+    this.memoryChunks = memoryChunks;
+    try {
+      Path dir = Paths.get(directory);
+      Files.createDirectories(dir);
+      this.spill = FileChannel.open(Files.createTempFile(dir, "history-", ".spill"),
+          StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE);
+    } catch (IOException ex) {
+      throw new UncheckedIOException("Could not create history spill file in " + directory, ex);
+    }
+  }
+
+  /**
+   * Records both legs of a completed transfer.
+   */
+  public void recordTransfer(String fromId, String toId, BigDecimal amount) {
+    if (amount.unscaledValue().bitLength() >= Long.SIZE) {
+      log.warn("Not recording transfer of {} from {} to {}: amount too large", amount, fromId,
+          toId);
+      return;
+    }
+    long unscaled = amount.unscaledValue().longValue();
+    append(fromId, -unscaled, amount.scale(), counterparty(toId));
+    append(toId, unscaled, amount.scale(), counterparty(fromId));
+  }
+
+  /**
+   * Returns up to {@code limit} records older than the {@code before} cursor whose timestamp
+   * lies within {@code [fromMillis, toMillis]}, newest first. Null bounds are open.
+   */
+  public TransactionPage getTransactions(String accountId, Long before, Long fromMillis,
+      Long toMillis, int limit) {
+    History history = histories.get(accountId);
+    if (history == null) {
+      return new TransactionPage(accountId, new ArrayList<>(), null);
+    }
+    synchronized (history) {
+      long low = fromMillis == null ? 0 : history.firstIndexAfter(fromMillis - 1);
+      long high = toMillis == null ? history.size : history.firstIndexAfter(toMillis);
+      if (before != null) {
+        high = Math.min(high, Math.max(0, before));
+      }
+      long start = Math.max(low, high - limit);
+      List<TransactionRecord> records = new ArrayList<>((int) Math.max(0, high - start));
+      long[] chunk = null;
+      int chunkIndex = -1;
+      for (long sequence = high - 1; sequence >= start; sequence--) {
+        if (sequence / chunkRecords != chunkIndex) {
+          chunkIndex = (int) (sequence / chunkRecords);
+          chunk = history.chunk(chunkIndex);
+        }
+        int offset = (int) (sequence % chunkRecords) * LONGS_PER_RECORD;
+        records.add(new TransactionRecord(sequence, chunk[offset],
+            new BigDecimal(BigInteger.valueOf(chunk[offset + 1]), (int) (chunk[offset + 2] >> 32)),
+            counterparties[(int) chunk[offset + 2]]));
+      }
+      return new TransactionPage(accountId, records, start > low ? start : null);
+    }
+  }
+
+  public void clear() {
+    histories.clear();
+  }
+
+  @PreDestroy
+  public void close() throws IOException {
+    spill.close();
+  }
+
+  private void append(String accountId, long unscaled, int scale, int counterparty) {
+    History history = histories.computeIfAbsent(accountId, id -> new History());
+    synchronized (history) {
+      history.append(unscaled, scale, counterparty);
+    }
+  }
+
+  private int counterparty(String accountId) {
+    Integer index = counterpartyIndex.get(accountId);
+    return index != null ? index : internCounterparty(accountId);
+  }
+
+  private synchronized int internCounterparty(String accountId) {
+    Integer index = counterpartyIndex.get(accountId);
+    if (index != null) {
+      return index;
+    }
+    String[] names = counterparties;
+    if (counterpartyCount == names.length) {
+      names = Arrays.copyOf(names, names.length * 2);
+    }
+    names[counterpartyCount] = accountId;
+    counterparties = names;
+    counterpartyIndex.put(accountId, counterpartyCount);
+    return counterpartyCount++;
+  }
+
+  /**
+   * History of one account. All access is synchronized on the instance.
+   */
+  private final class History {
+
+    private long[][] chunks = new long[4][];
+
+    private long[] spillOffsets = new long[4];
+
+    private long[] firstTimestamps = new long[4];
+
+    private int chunkCount;
+
+    private int firstInMemory;
+
+    private long size;
+
+    private long lastTimestamp;
+
+    private void append(long unscaled, int scale, int counterparty) {
+      long timestamp = lastTimestamp = Math.max(lastTimestamp, System.currentTimeMillis());
+      int chunkIndex = (int) (size / chunkRecords);
+      int offset = (int) (size % chunkRecords) * LONGS_PER_RECORD;
+      if (offset == 0) {
+        if (chunkIndex == chunks.length) {
+          chunks = Arrays.copyOf(chunks, chunkIndex * 2);
+          spillOffsets = Arrays.copyOf(spillOffsets, chunkIndex * 2);
+          firstTimestamps = Arrays.copyOf(firstTimestamps, chunkIndex * 2);
+        }
+        chunks[chunkIndex] = new long[Math.min(INITIAL_CHUNK_RECORDS, chunkRecords)
+            * LONGS_PER_RECORD];
+        firstTimestamps[chunkIndex] = timestamp;
+        chunkCount++;
+        if (chunkCount - firstInMemory > memoryChunks) {
+          spill(firstInMemory++);
+        }
+      }
+      long[] chunk = chunks[chunkIndex];
+      if (offset == chunk.length) {
+        chunks[chunkIndex] = chunk = Arrays.copyOf(chunk,
+            Math.min(chunk.length * 2, chunkRecords * LONGS_PER_RECORD));
+      }
+      chunk[offset] = timestamp;
+      chunk[offset + 1] = unscaled;
+      chunk[offset + 2] = (long) scale << 32 | counterparty & 0xffffffffL;
+      size++;
+    }
+
+    /**
+     * Returns the index of the first record with a timestamp after the given one.
+     */
+    private long firstIndexAfter(long timestamp) {
+      int low = 0;
+      int high = chunkCount;
+      while (low < high) {
+        int mid = (low + high) >>> 1;
+        if (firstTimestamps[mid] <= timestamp) {
+          low = mid + 1;
+        } else {
+          high = mid;
+        }
+      }
+      if (low == 0) {
+        return 0;
+      }
+      int chunkIndex = low - 1;
+      long[] chunk = chunk(chunkIndex);
+      int records = (int) Math.min(chunkRecords, size - (long) chunkIndex * chunkRecords);
+      int first = 0;
+      int last = records;
+      while (first < last) {
+        int mid = (first + last) >>> 1;
+        if (chunk[mid * LONGS_PER_RECORD] <= timestamp) {
+          first = mid + 1;
+        } else {
+          last = mid;
+        }
+      }
+      return (long) chunkIndex * chunkRecords + first;
+    }
+
+    private long[] chunk(int chunkIndex) {
+      if (chunks[chunkIndex] != null) {
+        return chunks[chunkIndex];
+      }
+      ByteBuffer buffer = ByteBuffer.allocate(chunkRecords * LONGS_PER_RECORD * Long.BYTES);
+      try {
+        long position = spillOffsets[chunkIndex];
+        while (buffer.hasRemaining()) {
+          position += spill.read(buffer, position);
+        }
+      } catch (IOException ex) {
+        throw new UncheckedIOException("Could not read spilled history", ex);
+      }
+      buffer.flip();
+      long[] chunk = new long[chunkRecords * LONGS_PER_RECORD];
+      buffer.asLongBuffer().get(chunk);
+      return chunk;
+    }
+
+    private void spill(int chunkIndex) {
+      ByteBuffer buffer = ByteBuffer.allocate(chunkRecords * LONGS_PER_RECORD * Long.BYTES);
+      buffer.asLongBuffer().put(chunks[chunkIndex]);
+      long position = spillPosition.getAndAdd(buffer.capacity());
+      try {
+        long written = position;
+        while (buffer.hasRemaining()) {
+          written += spill.write(buffer, written);
+        }
+      } catch (IOException ex) {
+        throw new UncheckedIOException("Could not spill history", ex);
+      }
+      spillOffsets[chunkIndex] = position;
+      chunks[chunkIndex] = null;
+    }
+  }
+}
@@ -0,0 +1,120 @@
+package com.db.awmd.challenge.service;
+
+import com.db.awmd.challenge.domain.AccountFormat;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.function.BiConsumer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Writes every account as NDJSON or CSV straight from the repository, one line per account,
+ * without collecting the accounts first.
+ *
+ * <p>A fuzzy export streams to the client while transfers go on, so balances may be taken at
+ * different moments. A consistent export must not hold transfers back for as long as a slow
+ * client reads, so it is first written to a scratch file while all transfers wait and then
+ * streamed from that file. Accounts created meanwhile may or may not be included.
+ */
+@Service
+public class AccountExportService {
+
+  private static final int BUFFER_SIZE = 1 << 16;
+
+  private final AccountsService accountsService;
+
+  private final ObjectMapper objectMapper;
+
+  private final Path directory;
+
+  @Autowired
+  public AccountExportService(AccountsService accountsService, ObjectMapper objectMapper,
+      @Value("${accounts.export.directory:${java.io.tmpdir}}") String directory) {
+    this.accountsService = accountsService;
+    this.objectMapper = objectMapper;
+    this.directory = Paths.get(directory);
+  }
+
+  public void export(OutputStream out, AccountFormat format, boolean consistent)
+      throws IOException {
+    if (!consistent) {
+      write(out, format, false);
+      return;
+    }
+    Files.createDirectories(directory);
+    Path scratch = Files.createTempFile(directory, "export-", ".tmp");
+    try {
+      try (OutputStream file = Files.newOutputStream(scratch)) {
+        write(file, format, true);
+      }
+      Files.copy(scratch, out);
+    } finally {
+      Files.deleteIfExists(scratch);
+    }
+  }
+
+  private void write(OutputStream out, AccountFormat format, boolean consistent)
+      throws IOException {
+    Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8),
+        BUFFER_SIZE);
+    try {
+      if (format == AccountFormat.CSV) {
+        writer.write("accountId,balance\n");
+        accountsService.forEachAccount((accountId, balance) -> writeCsv(writer, accountId,
+            balance), consistent);
+      } else {
+        JsonGenerator generator = objectMapper.getFactory().createGenerator(writer);
+        generator.setRootValueSeparator(null);
+        accountsService.forEachAccount(ndjsonWriter(generator), consistent);
+        generator.flush();
+      }
+    } catch (UncheckedIOException ex) {
+      throw ex.getCause();
+    }
+    writer.flush();
+  }
+
+  private static BiConsumer<String, BigDecimal> ndjsonWriter(JsonGenerator generator) {
+    return (accountId, balance) -> {
+      try {
+        generator.writeStartObject();
+        generator.writeStringField("accountId", accountId);
+        generator.writeNumberField("balance", balance);
+        generator.writeEndObject();
+        generator.writeRaw('\n');
+      } catch (IOException ex) {
+        throw new UncheckedIOException(ex);
+      }
+    };
+  }
+
+  private static void writeCsv(Writer writer, String accountId, BigDecimal balance) {
+    try {
+      if (accountId.indexOf(',') >= 0 || accountId.indexOf('"') >= 0
+          || accountId.indexOf('\n') >= 0) {
+        writer.write('"');
+        writer.write(accountId.replace("\"", "\"\""));
+        writer.write('"');
+      } else {
+        writer.write(accountId);
+      }
+      writer.write(',');
+      writer.write(balance.toPlainString());
+      writer.write('\n');
+    } catch (IOException ex) {
+      throw new UncheckedIOException(ex);
+    }
+  }
+}
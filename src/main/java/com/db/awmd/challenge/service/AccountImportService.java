@@ -0,0 +1,282 @@
+package com.db.awmd.challenge.service;
+
+import com.db.awmd.challenge.cluster.ClusterRouter;
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.AccountFormat;
+import com.db.awmd.challenge.domain.BulkImportResult;
+import com.db.awmd.challenge.domain.ImportError;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+import javax.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Imports accounts from a stream of NDJSON objects or {@code accountId,balance} CSV lines, where
+ * an id may be quoted as {@link AccountExportService} writes it, with {@code ""} for a quote and
+ * line breaks kept inside the quotes. The calling thread only splits the stream into chunks of
+ * records; workers parse and validate each chunk and create its accounts with one repository
+ * call. At most two chunks per worker are in flight, so memory stays bounded however large the
+ * stream is.
+ *
+ * <p>In a partitioned cluster only accounts owned by this node are imported; the others are
+ * rejected and belong in an import on their owner.
+ */
+@Service
+public class AccountImportService {
+
+  private final AccountsService accountsService;
+
+  private final ObjectMapper objectMapper;
+
+  private final ExecutorService workers;
+
+  private final int workerCount;
+
+  private final int chunkSize;
+
+  private final int maxErrors;
+
+  private final Optional<ClusterRouter> clusterRouter;
+
+  @Autowired
+  public AccountImportService(AccountsService accountsService, ObjectMapper objectMapper,
+      @Value("${accounts.bulk-import.workers:4}") int workerCount,
+      @Value("${accounts.bulk-import.chunk-size:10000}") int chunkSize,
+      @Value("${accounts.bulk-import.max-errors:1000}") int maxErrors,
+      Optional<ClusterRouter> clusterRouter) {
+    this.accountsService = accountsService;
+    this.objectMapper = objectMapper;
+    this.workerCount = workerCount;
+    this.chunkSize = chunkSize;
+    this.maxErrors = maxErrors;
+    this.clusterRouter = clusterRouter;
+    AtomicInteger threadNumber = new AtomicInteger();
+    this.workers = Executors.newFixedThreadPool(workerCount, runnable -> {
+      Thread thread = new Thread(runnable, "import-" + threadNumber.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  public BulkImportResult importAccounts(BufferedReader reader, AccountFormat format)
+      throws IOException {
+    Progress progress = new Progress();
+    Semaphore inFlight = new Semaphore(workerCount * 2);
+    List<String> chunk = new ArrayList<>(chunkSize);
+    long[] chunkLines = new long[chunkSize];
+    StringBuilder quoted = null;
+    long recordStart = 0;
+    long lineNumber = 0;
+    String line;
+    try {
+      while ((line = reader.readLine()) != null) {
+        lineNumber++;
+        if (lineNumber == 1 && format == AccountFormat.CSV && isCsvHeader(line)) {
+          continue;
+        }
+        if (quoted != null) {
+          quoted.append('\n').append(line);
+          if (countQuotes(line) % 2 == 0) {
+            continue;
+          }
+          line = quoted.toString();
+          quoted = null;
+        } else if (format == AccountFormat.CSV && countQuotes(line) % 2 != 0) {
+          quoted = new StringBuilder(line);
+          recordStart = lineNumber;
+          continue;
+        } else {
+          recordStart = lineNumber;
+        }
+        chunkLines[chunk.size()] = recordStart;
+        chunk.add(line);
+        if (chunk.size() == chunkSize) {
+          submit(chunk, chunkLines, format, progress, inFlight);
+          chunk = new ArrayList<>(chunkSize);
+          chunkLines = new long[chunkSize];
+        }
+      }
+      if (quoted != null) {
+        chunkLines[chunk.size()] = recordStart;
+        chunk.add(quoted.toString());
+      }
+      if (!chunk.isEmpty()) {
+        submit(chunk, chunkLines, format, progress, inFlight);
+      }
+    } finally {
+      inFlight.acquireUninterruptibly(workerCount * 2);
+    }
+    progress.rethrowFailure();
+    List<ImportError> errors = progress.errors.stream()
+        .sorted(Comparator.comparingLong(ImportError::getLine))
+        .collect(Collectors.toList());
+    return new BulkImportResult(progress.imported.sum(), progress.rejected.sum(), errors);
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    workers.shutdownNow();
+  }
+
+  private void submit(List<String> lines, long[] lineNumbers, AccountFormat format,
+      Progress progress, Semaphore inFlight) {
+    progress.rethrowFailure();
+    inFlight.acquireUninterruptibly();
+    workers.execute(() -> {
+      try {
+        importChunk(lines, lineNumbers, format, progress);
+      } catch (RuntimeException ex) {
+        progress.failure.compareAndSet(null, ex);
+      } finally {
+        inFlight.release();
+      }
+    });
+  }
+
+  private void importChunk(List<String> lines, long[] lineNumbers, AccountFormat format,
+      Progress progress) {
+    List<Account> accounts = new ArrayList<>(lines.size());
+    Map<Account, Long> lineOf = new IdentityHashMap<>(lines.size());
+    for (int i = 0; i < lines.size(); i++) {
+      String line = lines.get(i).trim();
+      long lineNumber = lineNumbers[i];
+      if (line.isEmpty()) {
+        continue;
+      }
+      Account account;
+      try {
+        account = parse(line, format);
+      } catch (IOException | RuntimeException ex) {
+        progress.reject(lineNumber, "Malformed record.", maxErrors);
+        continue;
+      }
+      String error = validate(account);
+      if (error != null) {
+        progress.reject(lineNumber, error, maxErrors);
+      } else {
+        accounts.add(account);
+        lineOf.put(account, lineNumber);
+      }
+    }
+    List<Account> duplicates = accountsService.createAccounts(accounts);
+    for (Account duplicate : duplicates) {
+      progress.reject(lineOf.get(duplicate),
+          "Account id " + duplicate.getAccountId() + " already exists!", maxErrors);
+    }
+    progress.imported.add(accounts.size() - duplicates.size());
+  }
+
+  private Account parse(String line, AccountFormat format) throws IOException {
+    if (format == AccountFormat.NDJSON) {
+      return objectMapper.readValue(line, Account.class);
+    }
+    String accountId;
+    int comma;
+    if (line.charAt(0) == '"') {
+      StringBuilder id = new StringBuilder();
+      int start = 1;
+      int quote;
+      while ((quote = line.indexOf('"', start)) >= 0 && quote + 1 < line.length()
+          && line.charAt(quote + 1) == '"') {
+        id.append(line, start, quote + 1);
+        start = quote + 2;
+      }
+      if (quote < 0) {
+        throw new IllegalArgumentException("Unterminated quoted account id");
+      }
+      accountId = id.append(line, start, quote).toString();
+      comma = quote + 1;
+      if (comma == line.length() || line.charAt(comma) != ',') {
+        throw new IllegalArgumentException("Expected accountId,balance");
+      }
+    } else {
+      comma = line.indexOf(',');
+      if (comma < 0) {
+        throw new IllegalArgumentException("Expected accountId,balance");
+      }
+      accountId = line.substring(0, comma).trim();
+    }
+    return new Account(accountId, new BigDecimal(line.substring(comma + 1).trim()));
+  }
+
+  private String validate(Account account) {
+    if (account.getAccountId() == null || account.getAccountId().isEmpty()) {
+      return "Account id is required.";
+    }
+    if (account.getBalance() == null || account.getBalance().signum() < 0) {
+      return "Initial balance must be positive.";
+    }
+    if (!accountsService.getAccountsRepository().isRepresentable(account.getBalance())) {
+      return "Initial balance " + account.getBalance().toPlainString()
+          + " can not be represented by the account store.";
+    }
+    if (clusterRouter.isPresent() && !clusterRouter.get().owns(account.getAccountId())) {
+      return "Account id " + account.getAccountId() + " belongs to node "
+          + clusterRouter.get().ownerOf(account.getAccountId()) + ".";
+    }
+    return null;
+  }
+
+  private static int countQuotes(String line) {
+    int quotes = 0;
+    for (int i = 0; i < line.length(); i++) {
+      if (line.charAt(i) == '"') {
+        quotes++;
+      }
+    }
+    return quotes;
+  }
+
+  private static boolean isCsvHeader(String line) {
+    return line.trim().toLowerCase().startsWith("accountid");
+  }
+
+  /**
+   * Counts shared by the workers of one import.
+   */
+  private static final class Progress {
+
+    private final LongAdder imported = new LongAdder();
+
+    private final LongAdder rejected = new LongAdder();
+
+    private final Queue<ImportError> errors = new ConcurrentLinkedQueue<>();
+
+    private final AtomicInteger errorCount = new AtomicInteger();
+
+    private final AtomicReference<RuntimeException> failure = new AtomicReference<>();
+
+    private void reject(long line, String message, int maxErrors) {
+      rejected.increment();
+      if (errorCount.incrementAndGet() <= maxErrors) {
+        errors.add(new ImportError(line, message));
+      }
+    }
+
+    private void rethrowFailure() {
+      RuntimeException ex = failure.get();
+      if (ex != null) {
+        throw ex;
+      }
+    }
+  }
+}
@@ -0,0 +1,238 @@
+package com.db.awmd.challenge.service;
+
+import com.db.awmd.challenge.exception.LockTimeoutException;
+import com.db.awmd.challenge.metrics.ContendedStripe;
+import com.db.awmd.challenge.metrics.LatencyHistogram;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.IntStream;
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Fixed-size table of locks shared by all accounts. An account id is mapped to a stripe by its
+ * hash, so two requests for the same account always contend on the same lock regardless of
+ * the String instance they carry. Locks for several accounts are always taken in ascending
+ * stripe order, which rules out deadlocks between concurrent transfers.
+ *
+ * <p>The registry also measures how long locks are waited for and held, and counts per stripe
+ * how often a lock was not free, remembering the last account that had to wait for it.
+ */
+@Component
+public class AccountLockRegistry {
+
+  private final ReentrantLock[] stripes;
+
+  private final int mask;
+
+  @Getter
+  private final long timeoutMillis;
+
+  @Getter
+  private final LatencyHistogram waitTime = new LatencyHistogram();
+
+  @Getter
+  private final LatencyHistogram holdTime = new LatencyHistogram();
+
+  private final LongAdder[] contention;
+
+  private final AtomicReferenceArray<String> contendedAccounts;
+
+  /**
+   * When each stripe was acquired; written and read only by the thread holding the stripe.
+   */
+  private final long[] acquiredAt;
+
+  @Autowired
+  public AccountLockRegistry(@Value("${accounts.lock.stripes:1024}") int stripeCount,
+      @Value("${accounts.lock.timeout-ms:5000}") long timeoutMillis) {
+    if (stripeCount <= 0) {
+      throw new IllegalArgumentException("Lock stripe count must be positive.");
+    }
+    int size = Integer.highestOneBit(stripeCount);
+    if (size < stripeCount) {
+      size <<= 1;
+    }
+    this.stripes = new ReentrantLock[size];
+    this.contention = new LongAdder[size];
+    for (int i = 0; i < size; i++) {
+      this.stripes[i] = new ReentrantLock();
+      this.contention[i] = new LongAdder();
+    }
+    this.contendedAccounts = new AtomicReferenceArray<>(size);
+    this.acquiredAt = new long[size];
+    this.mask = size - 1;
+    this.timeoutMillis = timeoutMillis;
+  }
+
+  public int stripeCount() {
+    return stripes.length;
+  }
+
+  public int stripeFor(String accountId) {
+    int h = accountId.hashCode();
+    return (h ^ (h >>> 16)) & mask;
+  }
+
+  /**
+   * Locks the stripes of both accounts in stripe order. When both accounts share a stripe the
+   * lock is taken once.
+   */
+  public void lock(String firstId, String secondId) {
+    int first = stripeFor(firstId);
+    int second = stripeFor(secondId);
+    boolean firstIsLow = first <= second;
+    int low = firstIsLow ? first : second;
+    int high = firstIsLow ? second : first;
+    acquire(low, firstIsLow ? firstId : secondId);
+    if (high != low) {
+      try {
+        acquire(high, firstIsLow ? secondId : firstId);
+      } catch (RuntimeException ex) {
+        release(low);
+        throw ex;
+      }
+    }
+  }
+
+  /**
+   * Locks the stripes of both accounts only if both are free right now, without waiting.
+   */
+  public boolean tryLock(String firstId, String secondId) {
+    int first = stripeFor(firstId);
+    int second = stripeFor(secondId);
+    int low = Math.min(first, second);
+    int high = Math.max(first, second);
+    if (!stripes[low].tryLock()) {
+      contention[low].increment();
+      return false;
+    }
+    if (high != low && !stripes[high].tryLock()) {
+      contention[high].increment();
+      stripes[low].unlock();
+      return false;
+    }
+    long acquired = System.nanoTime();
+    acquiredAt[low] = acquired;
+    acquiredAt[high] = acquired;
+    return true;
+  }
+
+  public void unlock(String firstId, String secondId) {
+    int first = stripeFor(firstId);
+    int second = stripeFor(secondId);
+    release(first);
+    if (second != first) {
+      release(second);
+    }
+  }
+
+  /**
+   * Locks the stripes of all given accounts in ascending stripe order and returns the locked
+   * stripes, which must be handed back to {@link #unlockAll(int[])}.
+   */
+  public int[] lockAll(Collection<String> accountIds) {
+    return lockStripes(
+        accountIds.stream().mapToInt(this::stripeFor).distinct().sorted().toArray());
+  }
+
+  /**
+   * Locks every stripe in order, which holds back all transfers.
+   */
+  public int[] lockEverything() {
+    return lockStripes(IntStream.range(0, stripes.length).toArray());
+  }
+
+  public void unlockAll(int[] lockedStripes) {
+    for (int i = lockedStripes.length - 1; i >= 0; i--) {
+      release(lockedStripes[i]);
+    }
+  }
+
+  /**
+   * Returns an estimate of the number of threads waiting for the stripe.
+   */
+  public int queueLength(int stripe) {
+    return stripes[stripe].getQueueLength();
+  }
+
+  /**
+   * Returns an estimate of the number of threads waiting for any stripe.
+   */
+  public int queueLength() {
+    int waiting = 0;
+    for (ReentrantLock stripe : stripes) {
+      waiting += stripe.getQueueLength();
+    }
+    return waiting;
+  }
+
+  /**
+   * Returns up to {@code limit} stripes that were most often found locked, most contended first.
+   */
+  public List<ContendedStripe> mostContended(int limit) {
+    List<ContendedStripe> contended = new ArrayList<>();
+    for (int i = 0; i < stripes.length; i++) {
+      long count = contention[i].sum();
+      if (count > 0) {
+        contended.add(new ContendedStripe(i, count, contendedAccounts.get(i)));
+      }
+    }
+    contended.sort(Comparator.comparingLong(ContendedStripe::getContentions).reversed());
+    return contended.subList(0, Math.min(limit, contended.size()));
+  }
+
+  private int[] lockStripes(int[] locked) {
+    for (int i = 0; i < locked.length; i++) {
+      try {
+        acquire(locked[i], null);
+      } catch (RuntimeException ex) {
+        unlockAll(Arrays.copyOf(locked, i));
+        throw ex;
+      }
+    }
+    return locked;
+  }
+
+  private void acquire(int stripe, String accountId) {
+    ReentrantLock lock = stripes[stripe];
+    long start = System.nanoTime();
+    if (!lock.tryLock()) {
+      contention[stripe].increment();
+      if (accountId != null) {
+        contendedAccounts.lazySet(stripe, accountId);
+      }
+      try {
+        if (!lock.tryLock(timeoutMillis, TimeUnit.MILLISECONDS)) {
+          waitTime.recordSince(start);
+          throw new LockTimeoutException("Timed out waiting for account lock.");
+        }
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+        throw new LockTimeoutException("Interrupted while waiting for account lock.");
+      }
+    }
+    long acquired = System.nanoTime();
+    waitTime.record(acquired - start);
+    if (lock.getHoldCount() == 1) {
+      acquiredAt[stripe] = acquired;
+    }
+  }
+
+  private void release(int stripe) {
+    ReentrantLock lock = stripes[stripe];
+    if (lock.getHoldCount() == 1) {
+      holdTime.recordSince(acquiredAt[stripe]);
+    }
+    lock.unlock();
+  }
+}
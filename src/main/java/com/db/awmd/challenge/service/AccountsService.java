@@ -1,10 +1,32 @@
 package com.db.awmd.challenge.service;
 
 import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.AccountSnapshot;
+import com.db.awmd.challenge.domain.BalanceMode;
+import com.db.awmd.challenge.domain.BatchMode;
+import com.db.awmd.challenge.domain.BatchTransferResult;
+import com.db.awmd.challenge.domain.TransactionPage;
+import com.db.awmd.challenge.domain.TransferInstruction;
+import com.db.awmd.challenge.domain.TransferOutcome;
+import com.db.awmd.challenge.domain.TransferResult;
+import com.db.awmd.challenge.domain.TransferResult.Status;
 import com.db.awmd.challenge.exception.InsufficientBalanceException;
 import com.db.awmd.challenge.exception.InvalidAmountException;
+import com.db.awmd.challenge.journal.TransactionJournal;
+import com.db.awmd.challenge.metrics.TransferMetrics;
 import com.db.awmd.challenge.repository.AccountsRepository;
+import com.db.awmd.challenge.repository.TransactionHistoryRepository;
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
 import javax.security.auth.login.AccountNotFoundException;
 import lombok.Getter;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -13,81 +35,307 @@ import org.springframework.stereotype.Service;
 @Service
 public class AccountsService {
 
-  private final Object lock = new Object();
-
   @Getter
   private final AccountsRepository accountsRepository;
 
   @Getter
-  private final NotificationService notificationService;
+  private final NotificationDispatcher notificationDispatcher;
+
+  private final TransferEngine transferEngine;
+
+  private final TransactionJournal transactionJournal;
+
+  private final TransactionHistoryRepository transactionHistory;
+
+  private final TransferMetrics transferMetrics;
+
+  private final TransferEngine.Recorder journalRecorder;
 
   @Autowired
   public AccountsService(AccountsRepository accountsRepository,
-      NotificationService notificationService) {
+      NotificationDispatcher notificationDispatcher, TransferEngine transferEngine,
+      TransactionJournal transactionJournal, TransactionHistoryRepository transactionHistory,
+      TransferMetrics transferMetrics) {
     this.accountsRepository = accountsRepository;
-    this.notificationService = notificationService;
+    this.notificationDispatcher = notificationDispatcher;
+    this.transferEngine = transferEngine;
+    this.transactionJournal = transactionJournal;
+    this.transactionHistory = transactionHistory;
+    this.transferMetrics = transferMetrics;
+    this.journalRecorder = transactionJournal::appendTransfer;
   }
 
+  /**
+   * Creates the account and journals it while transfers are held back from it, so that no
+   * transfer on it is journaled before its creation.
+   */
   public void createAccount(Account account) {
-    this.accountsRepository.createAccount(account);
+    long journalPosition = transferEngine.callExclusively(
+        Collections.singleton(account.getAccountId()), () -> {
+          this.accountsRepository.createAccount(account);
+          return transactionJournal.appendAccountCreated(account.getAccountId(),
+              account.getBalance());
+        });
+    transactionJournal.awaitDurable(journalPosition);
+  }
+
+  /**
+   * Creates the accounts in one repository call, journals them while transfers are held back
+   * from them and waits for a single journal flush covering all of them. Returns the accounts
+   * that were not created because their id was taken.
+   */
+  public List<Account> createAccounts(List<Account> accounts) {
+    Set<String> accountIds = new HashSet<>();
+    for (Account account : accounts) {
+      accountIds.add(account.getAccountId());
+    }
+    List<Account> duplicates = new ArrayList<>();
+    long journalPosition = transferEngine.callExclusively(accountIds, () -> {
+      duplicates.addAll(this.accountsRepository.createAccounts(accounts));
+      Set<Account> notCreated = Collections.newSetFromMap(new IdentityHashMap<>());
+      notCreated.addAll(duplicates);
+      long position = 0;
+      for (Account account : accounts) {
+        if (!notCreated.contains(account)) {
+          position = transactionJournal.appendAccountCreated(account.getAccountId(),
+              account.getBalance());
+        }
+      }
+      return position;
+    });
+    transactionJournal.awaitDurable(journalPosition);
+    return duplicates;
   }
 
   public Account getAccount(String accountId) throws AccountNotFoundException {
     return this.accountsRepository.getAccount(accountId);
   }
 
+  public AccountSnapshot getAccountSnapshot(String accountId) throws AccountNotFoundException {
+    return this.accountsRepository.getAccountSnapshot(accountId);
+  }
+
+  /**
+   * Marks the account as hot, see {@link AccountsRepository#markHot(String)}.
+   */
+  public boolean markHot(String accountId) throws AccountNotFoundException {
+    return this.accountsRepository.markHot(accountId);
+  }
+
   public BigDecimal totalBalance() {
+    return totalBalance(BalanceMode.RUNNING);
+  }
 
+  /**
+   * Returns the running total, or in {@link BalanceMode#AUDIT} mode an exact sum over every
+   * account taken while the transfer engine holds all transfers back.
+   */
+  public BigDecimal totalBalance(BalanceMode mode) {
+    if (mode == BalanceMode.AUDIT) {
+      return transferEngine.callExclusivelyOnAll(accountsRepository::sumBalances);
+    }
     return this.accountsRepository.totalBalance();
   }
 
+  /**
+   * Passes every account to the action. With {@code consistent} the transfer engine holds all
+   * transfers back meanwhile, so the balances are those of a single point in time.
+   */
+  public void forEachAccount(BiConsumer<String, BigDecimal> action, boolean consistent) {
+    if (!consistent) {
+      this.accountsRepository.forEachAccount(action);
+      return;
+    }
+    transferEngine.callExclusivelyOnAll(() -> {
+      this.accountsRepository.forEachAccount(action);
+      return null;
+    });
+  }
+
+  /**
+   * Like {@link #tryTransfer(String, String, BigDecimal)}, but throws the matching exception when
+   * the transfer is rejected.
+   */
   public void transferAmount(String fromId, String toId, BigDecimal amount)
       throws AccountNotFoundException {
-    if (amount.equals(BigDecimal.ZERO)) {
-      throw new InvalidAmountException("Transfer amount must be greater than 0.");
-    }
-    int fromHash = System.identityHashCode(fromId);
-    int toHash = System.identityHashCode(toId);
-    if (fromHash < toHash) {
-      synchronized (fromId) {
-        synchronized (toId) {
-          doTransfer(fromId, toId, amount);
-        }
+    TransferOutcome outcome = tryTransfer(fromId, toId, amount);
+    switch (outcome) {
+      case COMPLETED:
+        return;
+      case FROM_ACCOUNT_NOT_FOUND:
+      case TO_ACCOUNT_NOT_FOUND:
+        throw new AccountNotFoundException(outcome.describe(fromId, toId));
+      case INSUFFICIENT_BALANCE:
+        throw new InsufficientBalanceException(outcome.describe(fromId, toId));
+      default:
+        throw new InvalidAmountException(outcome.describe(fromId, toId));
+    }
+  }
+
+  /**
+   * Transfers money and returns the outcome. Unknown accounts, insufficient balances and
+   * amounts that are not positive are expected rejections: they are returned as a shared
+   * constant, checked before any balance changes, and allocate nothing on the way. A transfer
+   * that goes ahead is journaled before it is applied and acknowledged once durable.
+   */
+  public TransferOutcome tryTransfer(String fromId, String toId, BigDecimal amount)
+      throws AccountNotFoundException {
+    long start = System.nanoTime();
+    try {
+      TransferOutcome outcome = amount.signum() <= 0 ? TransferOutcome.INVALID_AMOUNT
+          : transferEngine.transfer(fromId, toId, amount, journalRecorder);
+      if (outcome != TransferOutcome.COMPLETED) {
+        transferMetrics.recordFailure(outcome);
+        return outcome;
+      }
+      transferMetrics.getEngineLatency().recordSince(start);
+      transactionJournal.awaitDurable(transactionJournal.getWrittenPosition());
+      transactionHistory.recordTransfer(fromId, toId, amount);
+      notificationDispatcher.transferCompleted(fromId, toId, amount);
+      return outcome;
+    } catch (AccountNotFoundException | RuntimeException ex) {
+      transferMetrics.recordFailure(ex);
+      throw ex;
+    } finally {
+      transferMetrics.getTransferLatency().recordSince(start);
+    }
+  }
+
+  public TransactionPage getTransactions(String accountId, Long before, Long fromMillis,
+      Long toMillis, int limit) throws AccountNotFoundException {
+    this.accountsRepository.getAccount(accountId);
+    return transactionHistory.getTransactions(accountId, before, fromMillis, toMillis, limit);
+  }
+
+  /**
+   * Applies a batch of transfers in one exclusive section over every account involved, which
+   * the locking engine implements by taking their lock stripes once in order. All transfers are
+   * first checked against a working copy of the balances, including whether the store can
+   * represent every amount and resulting balance, so in {@link BatchMode#ALL_OR_NOTHING} mode
+   * nothing is written unless every transfer succeeds. Each transfer is journaled just before it
+   * is applied.
+   */
+  public BatchTransferResult transferBatch(List<TransferInstruction> transfers, BatchMode mode) {
+    TransferResult[] results = new TransferResult[transfers.size()];
+    Set<String> accountIds = new HashSet<>();
+    for (int i = 0; i < transfers.size(); i++) {
+      TransferInstruction transfer = transfers.get(i);
+      String error = validate(transfer);
+      if (error != null) {
+        results[i] = new TransferResult(i, Status.REJECTED, error);
+      } else {
+        accountIds.add(transfer.getFromAccountId());
+        accountIds.add(transfer.getToAccountId());
+      }
+    }
+
+    List<Integer> applied = transferEngine.callExclusively(accountIds,
+        () -> applyBatch(transfers, mode, results, accountIds));
+
+    transactionJournal.awaitDurable(transactionJournal.getWrittenPosition());
+    for (int i : applied) {
+      TransferInstruction transfer = transfers.get(i);
+      transactionHistory.recordTransfer(transfer.getFromAccountId(), transfer.getToAccountId(),
+          transfer.getAmount());
+      notificationDispatcher.transferCompleted(transfer.getFromAccountId(),
+          transfer.getToAccountId(), transfer.getAmount());
+    }
+    List<TransferResult> resultList = Arrays.asList(results);
+    return new BatchTransferResult(mode, applied.size(), (int) resultList.stream()
+        .filter(result -> result.getStatus() == Status.REJECTED).count(), resultList);
+  }
+
+  private List<Integer> applyBatch(List<TransferInstruction> transfers, BatchMode mode,
+      TransferResult[] results, Set<String> accountIds) {
+    List<Integer> applied = new ArrayList<>();
+    Map<String, BigDecimal> balances = new HashMap<>();
+    for (String accountId : accountIds) {
+      try {
+        balances.put(accountId, accountsRepository.getAccount(accountId).getBalance());
+      } catch (AccountNotFoundException ex) {
+        // reported per transfer below
       }
-    } else if (toHash < fromHash) {
-      synchronized (toId) {
-        synchronized (fromId) {
-          doTransfer(fromId, toId, amount);
+    }
+    for (int i = 0; i < transfers.size(); i++) {
+      if (results[i] == null) {
+        results[i] = simulate(i, transfers.get(i), balances);
+      }
+    }
+    boolean anyRejected = false;
+    for (TransferResult result : results) {
+      anyRejected |= result.getStatus() == Status.REJECTED;
+    }
+    if (mode == BatchMode.ALL_OR_NOTHING && anyRejected) {
+      for (int i = 0; i < results.length; i++) {
+        if (results[i].getStatus() == Status.APPLIED) {
+          results[i] = new TransferResult(i, Status.NOT_APPLIED, null);
         }
       }
-    } else {
-      synchronized (lock) {
-        synchronized (fromId) {
-          synchronized (toId) {
-            doTransfer(fromId, toId, amount);
-          }
+      return applied;
+    }
+    try {
+      for (int i = 0; i < results.length; i++) {
+        if (results[i].getStatus() == Status.APPLIED) {
+          TransferInstruction transfer = transfers.get(i);
+          transactionJournal.appendTransfer(transfer.getFromAccountId(),
+              transfer.getToAccountId(), transfer.getAmount());
+          accountsRepository.withdrawAmount(transfer.getFromAccountId(), transfer.getAmount());
+          accountsRepository.addAmount(transfer.getToAccountId(), transfer.getAmount());
+          applied.add(i);
         }
       }
+    } catch (AccountNotFoundException ex) {
+      // balances were read in the same exclusive section, so every account is known to exist
+      throw new IllegalStateException(ex);
     }
+    return applied;
   }
 
-  private void doTransfer(String fromId, String toId, BigDecimal amount)
-      throws AccountNotFoundException, InsufficientBalanceException {
-
-    Account fromAccount = accountsRepository.getAccount(fromId);
-    Account toAccount = accountsRepository.getAccount(toId);
-    try {
-      accountsRepository.addAmount(toId, amount);
-      accountsRepository.withdrawAmount(fromId, amount);
-    } catch (InsufficientBalanceException ex) {
-      accountsRepository.withdrawAmount(toId, amount);
-      throw new InsufficientBalanceException("Insufficient Balance in account:" + fromId);
+  private String validate(TransferInstruction transfer) {
+    if (transfer == null || transfer.getFromAccountId() == null
+        || transfer.getFromAccountId().isEmpty()) {
+      return "From Account can not be empty.";
+    }
+    if (transfer.getToAccountId() == null || transfer.getToAccountId().isEmpty()) {
+      return "To Account can not be empty.";
+    }
+    if (transfer.getAmount() == null || transfer.getAmount().signum() <= 0) {
+      return "Transfer amount must be greater than 0.";
     }
-    this.notificationService
-        .notifyAboutTransfer(fromAccount, "Amount " + amount + " credited to Account " + toId);
-    this.notificationService
-        .notifyAboutTransfer(toAccount, "Amount " + amount + " credited from Account " + fromId);
+    if (!accountsRepository.isRepresentable(transfer.getAmount())) {
+      return "Transfer amount " + transfer.getAmount().toPlainString()
+          + " can not be represented by the account store.";
+    }
+    return null;
   }
 
+  private TransferResult simulate(int index, TransferInstruction transfer,
+      Map<String, BigDecimal> balances) {
+    String fromId = transfer.getFromAccountId();
+    String toId = transfer.getToAccountId();
+    BigDecimal fromBalance = balances.get(fromId);
+    if (fromBalance == null) {
+      return new TransferResult(index, Status.REJECTED, "Account " + fromId + " does not exist.");
+    }
+    if (!balances.containsKey(toId)) {
+      return new TransferResult(index, Status.REJECTED, "Account " + toId + " does not exist.");
+    }
+    BigDecimal updatedFromBalance = fromBalance.subtract(transfer.getAmount());
+    if (updatedFromBalance.signum() < 0) {
+      return new TransferResult(index, Status.REJECTED,
+          "Insufficient Balance in account:" + fromId);
+    }
+    if (fromId.equals(toId)) {
+      // the credit returns the debit, so the balance is unchanged
+      return new TransferResult(index, Status.APPLIED, null);
+    }
+    BigDecimal updatedToBalance = balances.get(toId).add(transfer.getAmount());
+    if (!accountsRepository.isRepresentable(updatedToBalance)) {
+      return new TransferResult(index, Status.REJECTED, "Balance overflow in account:" + toId);
+    }
+    balances.put(fromId, updatedFromBalance);
+    balances.put(toId, updatedToBalance);
+    return new TransferResult(index, Status.APPLIED, null);
+  }
 
 }
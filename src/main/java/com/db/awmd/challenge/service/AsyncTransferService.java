@@ -0,0 +1,173 @@
+package com.db.awmd.challenge.service;
+
+import com.db.awmd.challenge.domain.TransferInstruction;
+import com.db.awmd.challenge.domain.TransferOutcome;
+import com.db.awmd.challenge.domain.TransferStatus;
+import com.db.awmd.challenge.domain.TransferStatus.State;
+import com.db.awmd.challenge.exception.InsufficientBalanceException;
+import com.db.awmd.challenge.exception.InvalidAmountException;
+import com.db.awmd.challenge.exception.TransferQueueFullException;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import javax.annotation.PreDestroy;
+import javax.security.auth.login.AccountNotFoundException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Runs submitted transfers on a bounded pool of worker threads, so the caller gets a transfer id
+ * back at once instead of waiting for locks. A full queue rejects the submission rather than
+ * blocking the caller.
+ *
+ * <p>Outcomes are kept for polling in a store bounded by {@code max-results}; the oldest
+ * transfers are evicted first, so a client has to poll within a reasonable time.
+ */
+@Slf4j
+@Component
+public class AsyncTransferService {
+
+  private final AccountsService accountsService;
+
+  private final ThreadPoolExecutor workers;
+
+  private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+
+  private final Queue<Entry> submissionOrder = new ConcurrentLinkedQueue<>();
+
+  private final int maxResults;
+
+  private final LongAdder submitted = new LongAdder();
+
+  private final LongAdder rejected = new LongAdder();
+
+  private final LongAdder evictions = new LongAdder();
+
+  @Autowired
+  public AsyncTransferService(AccountsService accountsService,
+      @Value("${accounts.async-transfers.queue-size:10000}") int queueSize,
+      @Value("${accounts.async-transfers.workers:4}") int workerCount,
+      @Value("${accounts.async-transfers.max-results:100000}") int maxResults) {
+    this.accountsService = accountsService;
+    this.maxResults = maxResults;
+    AtomicInteger threadNumber = new AtomicInteger();
+    this.workers = new ThreadPoolExecutor(workerCount, workerCount, 0, TimeUnit.MILLISECONDS,
+        new ArrayBlockingQueue<>(queueSize), runnable -> {
+          Thread thread = new Thread(runnable, "transfer-" + threadNumber.incrementAndGet());
+          thread.setDaemon(true);
+          return thread;
+        });
+  }
+
+  /**
+   * Queues the transfer and returns its pending status.
+   */
+  public TransferStatus submit(TransferInstruction instruction) {
+    Entry entry = new Entry(UUID.randomUUID().toString(), instruction);
+    entries.put(entry.pending.getTransferId(), entry);
+    try {
+      workers.execute(() -> entry.outcome.complete(run(entry)));
+    } catch (RejectedExecutionException ex) {
+      entries.remove(entry.pending.getTransferId());
+      rejected.increment();
+      throw new TransferQueueFullException("Transfer queue is full, retry later.");
+    }
+    submitted.increment();
+    submissionOrder.add(entry);
+    evict();
+    return entry.pending;
+  }
+
+  /**
+   * Returns the current status of the transfer, or null when it is unknown or was evicted.
+   */
+  public TransferStatus getStatus(String transferId) {
+    Entry entry = entries.get(transferId);
+    return entry == null ? null : entry.outcome.getNow(entry.pending);
+  }
+
+  /**
+   * Returns a future completed with the final status of the transfer, or null when it is
+   * unknown or was evicted.
+   */
+  public CompletableFuture<TransferStatus> getOutcome(String transferId) {
+    Entry entry = entries.get(transferId);
+    return entry == null ? null : entry.outcome;
+  }
+
+  public long getSubmitted() {
+    return submitted.sum();
+  }
+
+  public long getRejected() {
+    return rejected.sum();
+  }
+
+  public long getEvictions() {
+    return evictions.sum();
+  }
+
+  public int getQueueDepth() {
+    return workers.getQueue().size();
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    workers.shutdownNow();
+  }
+
+  private TransferStatus run(Entry entry) {
+    TransferStatus pending = entry.pending;
+    try {
+      TransferOutcome outcome = accountsService.tryTransfer(pending.getFromAccountId(),
+          pending.getToAccountId(), pending.getAmount());
+      if (outcome != TransferOutcome.COMPLETED) {
+        return entry.withState(State.REJECTED,
+            outcome.describe(pending.getFromAccountId(), pending.getToAccountId()));
+      }
+      return entry.withState(State.COMPLETED, null);
+    } catch (AccountNotFoundException | InsufficientBalanceException
+        | InvalidAmountException ex) {
+      return entry.withState(State.REJECTED, ex.getMessage());
+    } catch (RuntimeException ex) {
+      log.warn("Transfer {} failed", pending.getTransferId(), ex);
+      return entry.withState(State.FAILED, ex.getMessage());
+    }
+  }
+
+  private void evict() {
+    Entry oldest;
+    while (entries.size() > maxResults && (oldest = submissionOrder.poll()) != null) {
+      if (entries.remove(oldest.pending.getTransferId(), oldest)) {
+        evictions.increment();
+      }
+    }
+  }
+
+  private static final class Entry {
+
+    private final TransferStatus pending;
+
+    private final CompletableFuture<TransferStatus> outcome = new CompletableFuture<>();
+
+    private Entry(String transferId, TransferInstruction instruction) {
+      this.pending = new TransferStatus(transferId, instruction.getFromAccountId(),
+          instruction.getToAccountId(), instruction.getAmount(), State.PENDING, null);
+    }
+
+    private TransferStatus withState(State state, String message) {
+      return new TransferStatus(pending.getTransferId(), pending.getFromAccountId(),
+          pending.getToAccountId(), pending.getAmount(), state, message);
+    }
+  }
+}
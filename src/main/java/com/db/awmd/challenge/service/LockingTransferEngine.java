@@ -0,0 +1,106 @@
+package com.db.awmd.challenge.service;
+
+import com.db.awmd.challenge.domain.TransferOutcome;
+import com.db.awmd.challenge.repository.AccountsRepository;
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.function.Supplier;
+import javax.security.auth.login.AccountNotFoundException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Runs transfers on the calling thread while holding the lock stripes of both accounts, or only
+ * the sender's stripe when the receiving account is hot.
+ */
+@Component
+@ConditionalOnProperty(name = "accounts.transfer.engine", havingValue = "locking",
+    matchIfMissing = true)
+public class LockingTransferEngine implements TransferEngine {
+
+  private final AccountsRepository accountsRepository;
+
+  private final AccountLockRegistry accountLockRegistry;
+
+  @Autowired
+  public LockingTransferEngine(AccountsRepository accountsRepository,
+      AccountLockRegistry accountLockRegistry) {
+    this.accountsRepository = accountsRepository;
+    this.accountLockRegistry = accountLockRegistry;
+  }
+
+  @Override
+  public TransferOutcome transfer(String fromId, String toId, BigDecimal amount,
+      Recorder recorder) throws AccountNotFoundException {
+    if (!fromId.equals(toId) && accountsRepository.isHot(toId)) {
+      return transferToHot(fromId, toId, amount, recorder);
+    }
+    accountLockRegistry.lock(fromId, toId);
+    try {
+      return doTransfer(fromId, toId, amount, recorder);
+    } finally {
+      accountLockRegistry.unlock(fromId, toId);
+    }
+  }
+
+  @Override
+  public <T> T callExclusively(Collection<String> accountIds, Supplier<T> action) {
+    int[] lockedStripes = accountLockRegistry.lockAll(accountIds);
+    try {
+      return action.get();
+    } finally {
+      accountLockRegistry.unlockAll(lockedStripes);
+    }
+  }
+
+  @Override
+  public <T> T callExclusivelyOnAll(Supplier<T> action) {
+    int[] lockedStripes = accountLockRegistry.lockEverything();
+    try {
+      return action.get();
+    } finally {
+      accountLockRegistry.unlockAll(lockedStripes);
+    }
+  }
+
+  /**
+   * A credit to a hot account needs no lock on it, so only the sender's stripe is taken and
+   * transfers into the hot account from different senders run in parallel. Credits never lower
+   * the sender's balance, so the check made under its stripe still holds when it is debited.
+   * Credits commute, so recording them without the receiver's stripe keeps the record in order
+   * with every debit of the receiver that could have relied on them.
+   */
+  private TransferOutcome transferToHot(String fromId, String toId, BigDecimal amount,
+      Recorder recorder) throws AccountNotFoundException {
+    accountLockRegistry.lock(fromId, fromId);
+    try {
+      TransferOutcome rejected = TransferEngine.check(accountsRepository, fromId, toId, amount);
+      if (rejected != null) {
+        return rejected;
+      }
+      recorder.record(fromId, toId, amount);
+      accountsRepository.withdrawAmount(fromId, amount);
+      accountsRepository.addAmount(toId, amount);
+      return TransferOutcome.COMPLETED;
+    } finally {
+      accountLockRegistry.unlock(fromId, fromId);
+    }
+  }
+
+  /**
+   * Both stripes are held, so the balances checked are the ones the legs apply to and a
+   * rejected transfer has nothing to undo.
+   */
+  private TransferOutcome doTransfer(String fromId, String toId, BigDecimal amount,
+      Recorder recorder) throws AccountNotFoundException {
+    TransferOutcome rejected = TransferEngine.check(accountsRepository, fromId, toId, amount);
+    if (rejected != null) {
+      return rejected;
+    }
+    recorder.record(fromId, toId, amount);
+    accountsRepository.withdrawAmount(fromId, amount);
+    accountsRepository.addAmount(toId, amount);
+    return TransferOutcome.COMPLETED;
+  }
+}
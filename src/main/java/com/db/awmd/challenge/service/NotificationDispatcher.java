@@ -0,0 +1,194 @@
+package com.db.awmd.challenge.service;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.metrics.LatencyHistogram;
+import com.db.awmd.challenge.repository.AccountsRepository;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import javax.annotation.PreDestroy;
+import javax.security.auth.login.AccountNotFoundException;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Delivers transfer notifications off the request thread. Transfers only enqueue a small notice;
+ * worker threads drain the queue in batches, merge the notices of one account into a single
+ * notification, and only then look up the account and build the description.
+ *
+ * <p>The queue is bounded: when it is full a notice waits at most the offer timeout and is then
+ * dropped and counted, so a slow notification channel never backs up into transfers.
+ */
+@Slf4j
+@Component
+public class NotificationDispatcher {
+
+  private final NotificationService notificationService;
+
+  private final AccountsRepository accountsRepository;
+
+  private final BlockingQueue<Notice> queue;
+
+  private final ExecutorService workers;
+
+  private final int batchSize;
+
+  private final long offerTimeoutMillis;
+
+  private final LongAdder submitted = new LongAdder();
+
+  private final LongAdder delivered = new LongAdder();
+
+  private final LongAdder coalesced = new LongAdder();
+
+  private final LongAdder dropped = new LongAdder();
+
+  private final LongAdder failed = new LongAdder();
+
+  @Getter
+  private final LatencyHistogram deliveryLatency = new LatencyHistogram();
+
+  @Autowired
+  public NotificationDispatcher(NotificationService notificationService,
+      AccountsRepository accountsRepository,
+      @Value("${accounts.notifications.queue-size:10000}") int queueSize,
+      @Value("${accounts.notifications.workers:2}") int workerCount,
+      @Value("${accounts.notifications.batch-size:100}") int batchSize,
+      @Value("${accounts.notifications.offer-timeout-ms:0}") long offerTimeoutMillis) {
+    this.notificationService = notificationService;
+    this.accountsRepository = accountsRepository;
+    this.queue = new ArrayBlockingQueue<>(queueSize);
+    this.batchSize = batchSize;
+    this.offerTimeoutMillis = offerTimeoutMillis;
+    AtomicInteger threadNumber = new AtomicInteger();
+    this.workers = Executors.newFixedThreadPool(workerCount, runnable -> {
+      Thread thread = new Thread(runnable, "notification-" + threadNumber.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+    for (int i = 0; i < workerCount; i++) {
+      workers.execute(this::deliverLoop);
+    }
+  }
+
+  /**
+   * Queues the notifications for both parties of a completed transfer. Must be called after the
+   * transfer has released its locks.
+   */
+  public void transferCompleted(String fromId, String toId, BigDecimal amount) {
+    long now = System.nanoTime();
+    enqueue(new Notice(fromId, toId, amount, true, now));
+    enqueue(new Notice(toId, fromId, amount, false, now));
+  }
+
+  public long getSubmitted() {
+    return submitted.sum();
+  }
+
+  public long getDelivered() {
+    return delivered.sum();
+  }
+
+  public long getCoalesced() {
+    return coalesced.sum();
+  }
+
+  public long getDropped() {
+    return dropped.sum();
+  }
+
+  public long getFailed() {
+    return failed.sum();
+  }
+
+  public int getQueueDepth() {
+    return queue.size();
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    workers.shutdownNow();
+  }
+
+  private void enqueue(Notice notice) {
+    submitted.increment();
+    try {
+      if (!queue.offer(notice, offerTimeoutMillis, TimeUnit.MILLISECONDS)) {
+        dropped.increment();
+      }
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      dropped.increment();
+    }
+  }
+
+  private void deliverLoop() {
+    List<Notice> batch = new ArrayList<>(batchSize);
+    try {
+      while (!Thread.currentThread().isInterrupted()) {
+        batch.add(queue.take());
+        queue.drainTo(batch, batchSize - 1);
+        deliver(batch);
+        batch.clear();
+      }
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void deliver(List<Notice> batch) {
+    Map<String, StringBuilder> descriptions = new LinkedHashMap<>();
+    for (Notice notice : batch) {
+      StringBuilder description = descriptions.get(notice.accountId);
+      if (description == null) {
+        descriptions.put(notice.accountId, description = new StringBuilder());
+      } else {
+        description.append('\n');
+        coalesced.increment();
+      }
+      description.append("Amount ").append(notice.amount)
+          .append(notice.outgoing ? " credited to Account " : " credited from Account ")
+          .append(notice.counterpartyId);
+    }
+    for (Map.Entry<String, StringBuilder> entry : descriptions.entrySet()) {
+      try {
+        Account account = accountsRepository.getAccount(entry.getKey());
+        notificationService.notifyAboutTransfer(account, entry.getValue().toString());
+        delivered.increment();
+      } catch (AccountNotFoundException | RuntimeException ex) {
+        failed.increment();
+        log.warn("Could not notify owner of {}", entry.getKey(), ex);
+      }
+    }
+    for (Notice notice : batch) {
+      deliveryLatency.recordSince(notice.enqueuedAt);
+    }
+  }
+
+  @AllArgsConstructor
+  private static final class Notice {
+
+    private final String accountId;
+
+    private final String counterpartyId;
+
+    private final BigDecimal amount;
+
+    private final boolean outgoing;
+
+    private final long enqueuedAt;
+  }
+}
@@ -0,0 +1,143 @@
+package com.db.awmd.challenge.service;
+
+import com.db.awmd.challenge.domain.AccountSnapshot;
+import com.db.awmd.challenge.domain.TransferOutcome;
+import com.db.awmd.challenge.repository.AccountsRepository;
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+import javax.security.auth.login.AccountNotFoundException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Runs transfers optimistically. Both account snapshots are read and the new balances computed
+ * without any lock; the commit then takes the two lock stripes only if they are free, checks
+ * that neither account changed since it was read and swaps in the new snapshots. Unknown
+ * accounts and insufficient balances are rejected without locking at all.
+ *
+ * <p>A conflict (a busy stripe or a changed version) is retried after a randomised exponential
+ * backoff. After {@code max-attempts} conflicts the transfer falls back to the blocking path of
+ * {@link LockingTransferEngine}, so a busy account can not starve a transfer. Accounts without
+ * versioned snapshots, such as hot accounts, always take the blocking path.
+ */
+@Component
+@ConditionalOnProperty(name = "accounts.transfer.engine", havingValue = "optimistic")
+public class OptimisticTransferEngine implements TransferEngine {
+
+  private final AccountsRepository accountsRepository;
+
+  private final AccountLockRegistry accountLockRegistry;
+
+  private final LockingTransferEngine pessimistic;
+
+  private final int maxAttempts;
+
+  private final long backoffNanos;
+
+  private final LongAdder commits = new LongAdder();
+
+  private final LongAdder conflicts = new LongAdder();
+
+  private final LongAdder fallbacks = new LongAdder();
+
+  @Autowired
+  public OptimisticTransferEngine(AccountsRepository accountsRepository,
+      AccountLockRegistry accountLockRegistry,
+      @Value("${accounts.transfer.optimistic.max-attempts:4}") int maxAttempts,
+      @Value("${accounts.transfer.optimistic.backoff-nanos:1000}") long backoffNanos) {
+    this.accountsRepository = accountsRepository;
+    this.accountLockRegistry = accountLockRegistry;
+    this.pessimistic = new LockingTransferEngine(accountsRepository, accountLockRegistry);
+    this.maxAttempts = maxAttempts;
+    this.backoffNanos = backoffNanos;
+  }
+
+  @Override
+  public TransferOutcome transfer(String fromId, String toId, BigDecimal amount,
+      Recorder recorder) throws AccountNotFoundException {
+    if (!fromId.equals(toId)) {
+      for (int attempt = 0; attempt < maxAttempts; attempt++) {
+        AccountSnapshot from = accountsRepository.findAccountSnapshot(fromId);
+        if (from == null) {
+          return TransferOutcome.FROM_ACCOUNT_NOT_FOUND;
+        }
+        AccountSnapshot to = accountsRepository.findAccountSnapshot(toId);
+        if (to == null) {
+          return TransferOutcome.TO_ACCOUNT_NOT_FOUND;
+        }
+        if (!from.isVersioned() || !to.isVersioned()) {
+          break;
+        }
+        if (from.getBalance().compareTo(amount) < 0) {
+          return TransferOutcome.INSUFFICIENT_BALANCE;
+        }
+        if (commit(from, from.getBalance().subtract(amount), to, to.getBalance().add(amount),
+            amount, recorder)) {
+          commits.increment();
+          return TransferOutcome.COMPLETED;
+        }
+        conflicts.increment();
+        LockSupport.parkNanos(
+            ThreadLocalRandom.current().nextLong(backoffNanos << Math.min(attempt, 20)) + 1);
+      }
+    }
+    fallbacks.increment();
+    return pessimistic.transfer(fromId, toId, amount, recorder);
+  }
+
+  @Override
+  public <T> T callExclusively(Collection<String> accountIds, Supplier<T> action) {
+    return pessimistic.callExclusively(accountIds, action);
+  }
+
+  @Override
+  public <T> T callExclusivelyOnAll(Supplier<T> action) {
+    return pessimistic.callExclusivelyOnAll(action);
+  }
+
+  public long getCommits() {
+    return commits.sum();
+  }
+
+  public long getConflicts() {
+    return conflicts.sum();
+  }
+
+  public long getFallbacks() {
+    return fallbacks.sum();
+  }
+
+  /**
+   * Every writer of an existing account holds its stripe, so once both stripes are held the
+   * snapshots can only still be current or already replaced; no other swap can interleave. Both
+   * are confirmed current before the transfer is recorded, so both swaps then succeed.
+   */
+  private boolean commit(AccountSnapshot from, BigDecimal newFromBalance, AccountSnapshot to,
+      BigDecimal newToBalance, BigDecimal amount, Recorder recorder)
+      throws AccountNotFoundException {
+    if (!accountLockRegistry.tryLock(from.getAccountId(), to.getAccountId())) {
+      return false;
+    }
+    try {
+      if (accountsRepository.getAccountSnapshot(from.getAccountId()) != from
+          || accountsRepository.getAccountSnapshot(to.getAccountId()) != to) {
+        return false;
+      }
+      recorder.record(from.getAccountId(), to.getAccountId(), amount);
+      if (!accountsRepository.compareAndSetBalance(from, newFromBalance)
+          || !accountsRepository.compareAndSetBalance(to, newToBalance)) {
+        throw new IllegalStateException("Account " + from.getAccountId() + " or "
+            + to.getAccountId() + " changed without holding its lock stripe.");
+      }
+      return true;
+    } finally {
+      accountLockRegistry.unlock(from.getAccountId(), to.getAccountId());
+    }
+  }
+}
@@ -0,0 +1,392 @@
+package com.db.awmd.challenge.service;
+
+import com.db.awmd.challenge.domain.TransferOutcome;
+import com.db.awmd.challenge.exception.InsufficientBalanceException;
+import com.db.awmd.challenge.exception.LockTimeoutException;
+import com.db.awmd.challenge.repository.AccountsRepository;
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+import javax.annotation.PreDestroy;
+import javax.security.auth.login.AccountNotFoundException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Partitions accounts into shards by hash and gives every shard a single owner thread. Only the
+ * owner thread changes the balances of its accounts, so a transfer within one shard needs no
+ * locks at all. A transfer between shards is two messages: the source shard reserves the amount
+ * by debiting it, then the destination shard commits the credit, or the source shard refunds it
+ * if the credit can not be applied.
+ *
+ * <p>Each shard's queue is a lock-free linked queue drained by its owner thread, which parks
+ * only when the queue is empty. Requests wait for a queue slot for at most the submit timeout,
+ * and for the transfer to start for at most the same time again. A transfer that has not
+ * started by then is cancelled and reported as timed out; one that has started always runs to
+ * completion and is waited for, so a timeout always means the transfer was not applied.
+ * Messages between shards bypass the queue limit so that two full shards can never block each
+ * other.
+ *
+ * <p>A transfer is recorded on the owner thread of the shard that publishes its credit, just
+ * before the credit. A reserved debit only lowers a balance, so nothing can rely on it before
+ * the transfer is recorded.
+ *
+ * <p>Transfers between shards are counted while in flight. An exclusive section over all
+ * accounts closes the gate for new ones and waits for the count to drain before parking the
+ * shards, so it never sees an amount that was reserved but not yet committed.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "accounts.transfer.engine", havingValue = "sharded")
+public class ShardedTransferEngine implements TransferEngine {
+
+  private static final long DRAIN_POLL_NANOS = 100_000;
+
+  private final AccountsRepository accountsRepository;
+
+  private final Shard[] shards;
+
+  private final long submitTimeoutMillis;
+
+  private final ReentrantLock exclusiveLock = new ReentrantLock();
+
+  private final LongAdder crossShardInFlight = new LongAdder();
+
+  private final Object gate = new Object();
+
+  private volatile boolean gateClosed;
+
+  @Autowired
+  public ShardedTransferEngine(AccountsRepository accountsRepository,
+      @Value("${accounts.transfer.shards:0}") int shardCount,
+      @Value("${accounts.transfer.shard-queue-size:1024}") int queueSize,
+      @Value("${accounts.transfer.submit-timeout-ms:5000}") long submitTimeoutMillis) {
+    this.accountsRepository = accountsRepository;
+    this.submitTimeoutMillis = submitTimeoutMillis;
+    int count = shardCount > 0 ? shardCount : Runtime.getRuntime().availableProcessors();
+    this.shards = new Shard[count];
+    for (int i = 0; i < count; i++) {
+      shards[i] = new Shard(i, queueSize);
+    }
+  }
+
+  @Override
+  public TransferOutcome transfer(String fromId, String toId, BigDecimal amount,
+      Recorder recorder) throws AccountNotFoundException {
+    // Accounts are never removed while the engine runs, so existence can be checked up front.
+    // A balance seen too low is a valid moment to reject at; a later shortfall is still caught
+    // by the debit on the owner thread.
+    TransferOutcome rejected = TransferEngine.check(accountsRepository, fromId, toId, amount);
+    if (rejected != null) {
+      return rejected;
+    }
+
+    Shard source = shardFor(fromId);
+    Shard destination = shardFor(toId);
+    CompletableFuture<Void> done = new CompletableFuture<>();
+    AtomicBoolean claimed = new AtomicBoolean();
+    if (source == destination) {
+      source.submit(() -> {
+        if (accountsRepository.getAccount(fromId).getBalance().compareTo(amount) < 0) {
+          throw new InsufficientBalanceException("Insufficient Balance in account:" + fromId);
+        }
+        recorder.record(fromId, toId, amount);
+        accountsRepository.withdrawAmount(fromId, amount);
+        accountsRepository.addAmount(toId, amount);
+      }, done, claimed);
+    } else {
+      enterCrossShard();
+      done.whenComplete((ignored, failure) -> crossShardInFlight.decrement());
+      CompletableFuture<Void> reserved = new CompletableFuture<>();
+      try {
+        source.submit(() -> accountsRepository.withdrawAmount(fromId, amount), reserved,
+            claimed);
+      } catch (RuntimeException ex) {
+        done.completeExceptionally(ex);
+      }
+      reserved.whenComplete((ignored, reserveFailure) -> {
+        if (reserveFailure != null) {
+          done.completeExceptionally(reserveFailure);
+          return;
+        }
+        CompletableFuture<Void> committed = new CompletableFuture<>();
+        destination.submit(() -> {
+          recorder.record(fromId, toId, amount);
+          accountsRepository.addAmount(toId, amount);
+        }, committed, null);
+        committed.whenComplete((none, commitFailure) -> {
+          if (commitFailure == null) {
+            done.complete(null);
+            return;
+          }
+          CompletableFuture<Void> refunded = new CompletableFuture<>();
+          source.submit(() -> accountsRepository.addAmount(fromId, amount), refunded, null);
+          refunded.whenComplete((nothing, refundFailure) -> {
+            if (refundFailure != null) {
+              log.error("Could not refund {} to account {}", amount, fromId, refundFailure);
+            }
+            done.completeExceptionally(commitFailure);
+          });
+        });
+      });
+    }
+    return await(done, claimed, submitTimeoutMillis);
+  }
+
+  /**
+   * Parks the owner threads of all shards holding the accounts, runs the action and releases
+   * them again. Exclusive sections are serialized so that two of them can not park the same
+   * shards in opposite order.
+   */
+  @Override
+  public <T> T callExclusively(Collection<String> accountIds, Supplier<T> action) {
+    boolean[] involved = new boolean[shards.length];
+    for (String accountId : accountIds) {
+      involved[shardFor(accountId).index] = true;
+    }
+    lockExclusively();
+    try {
+      return parkAndCall(involved, action);
+    } finally {
+      exclusiveLock.unlock();
+    }
+  }
+
+  @Override
+  public <T> T callExclusivelyOnAll(Supplier<T> action) {
+    boolean[] involved = new boolean[shards.length];
+    Arrays.fill(involved, true);
+    lockExclusively();
+    gateClosed = true;
+    try {
+      while (crossShardInFlight.sum() != 0) {
+        LockSupport.parkNanos(DRAIN_POLL_NANOS);
+      }
+      return parkAndCall(involved, action);
+    } finally {
+      synchronized (gate) {
+        gateClosed = false;
+        gate.notifyAll();
+      }
+      exclusiveLock.unlock();
+    }
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    for (Shard shard : shards) {
+      shard.owner.interrupt();
+    }
+  }
+
+  private void lockExclusively() {
+    try {
+      if (!exclusiveLock.tryLock(submitTimeoutMillis, TimeUnit.MILLISECONDS)) {
+        throw new LockTimeoutException("Timed out waiting for transfer shards.");
+      }
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new LockTimeoutException("Interrupted while waiting for transfer shards.");
+    }
+  }
+
+  private <T> T parkAndCall(boolean[] involved, Supplier<T> action) {
+    CountDownLatch release = new CountDownLatch(1);
+    try {
+      int count = 0;
+      for (boolean shard : involved) {
+        count += shard ? 1 : 0;
+      }
+      CountDownLatch parked = new CountDownLatch(count);
+      for (Shard shard : shards) {
+        if (involved[shard.index]) {
+          shard.submit(() -> {
+            parked.countDown();
+            release.await();
+          }, new CompletableFuture<>(), null);
+        }
+      }
+      parked.await();
+      return action.get();
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new LockTimeoutException("Interrupted while waiting for shards.");
+    } finally {
+      release.countDown();
+    }
+  }
+
+  /**
+   * Counts a transfer between shards as in flight, waiting while an exclusive section over all
+   * accounts is draining them. The count is raised before the gate is checked, so a transfer
+   * either is seen by the draining section or sees the closed gate.
+   */
+  private void enterCrossShard() {
+    crossShardInFlight.increment();
+    while (gateClosed) {
+      crossShardInFlight.decrement();
+      synchronized (gate) {
+        while (gateClosed) {
+          try {
+            gate.wait();
+          } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new LockTimeoutException("Interrupted while waiting for transfer shard.");
+          }
+        }
+      }
+      crossShardInFlight.increment();
+    }
+  }
+
+  private Shard shardFor(String accountId) {
+    int h = accountId.hashCode();
+    return shards[((h ^ (h >>> 16)) & 0x7fffffff) % shards.length];
+  }
+
+  /**
+   * Waits for the transfer to start for at most the submit timeout, so that callers are released
+   * when an owner thread stops. A transfer is only reported as failed if it can still be
+   * cancelled by claiming it before its first step runs; otherwise it is waited for.
+   */
+  private static TransferOutcome await(CompletableFuture<Void> done, AtomicBoolean claimed,
+      long timeoutMillis) throws AccountNotFoundException {
+    try {
+      done.get(timeoutMillis, TimeUnit.MILLISECONDS);
+    } catch (TimeoutException | InterruptedException ex) {
+      String message = "Timed out waiting for transfer shard.";
+      if (ex instanceof InterruptedException) {
+        Thread.currentThread().interrupt();
+        message = "Interrupted while waiting for transfer shard.";
+      }
+      if (claimed.compareAndSet(false, true)) {
+        LockTimeoutException timeout = new LockTimeoutException(message);
+        done.completeExceptionally(timeout);
+        throw timeout;
+      }
+    } catch (ExecutionException ex) {
+      return outcomeOf(ex.getCause());
+    }
+    try {
+      done.join();
+      return TransferOutcome.COMPLETED;
+    } catch (CompletionException ex) {
+      return outcomeOf(ex.getCause());
+    }
+  }
+
+  private static TransferOutcome outcomeOf(Throwable cause) throws AccountNotFoundException {
+    if (cause instanceof InsufficientBalanceException) {
+      return TransferOutcome.INSUFFICIENT_BALANCE;
+    }
+    if (cause instanceof AccountNotFoundException) {
+      throw (AccountNotFoundException) cause;
+    }
+    if (cause instanceof RuntimeException) {
+      throw (RuntimeException) cause;
+    }
+    throw new IllegalStateException(cause);
+  }
+
+  private interface Step {
+
+    void run() throws Exception;
+  }
+
+  private final class Shard implements Runnable {
+
+    private final int index;
+
+    private final Queue<Runnable> queue = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Set by the owner thread before it parks on an empty queue. Producers read it after adding,
+     * and the owner checks the queue again after setting it, so one of them always sees the other.
+     */
+    private volatile boolean parked;
+
+    private final Semaphore capacity;
+
+    private final Thread owner;
+
+    private Shard(int index, int queueSize) {
+      this.index = index;
+      this.capacity = new Semaphore(queueSize);
+      this.owner = new Thread(this, "transfer-shard-" + index);
+      this.owner.setDaemon(true);
+      this.owner.start();
+    }
+
+    /**
+     * Queues a step for the owner thread. External submissions carry the transfer's claim: they
+     * take a queue slot, give up after the submit timeout and are skipped if the claim was taken
+     * by a caller that stopped waiting. Messages between shards pass no claim and are always
+     * accepted.
+     */
+    private void submit(Step step, CompletableFuture<Void> result, AtomicBoolean claimed) {
+      boolean external = claimed != null;
+      if (external) {
+        try {
+          if (!capacity.tryAcquire(submitTimeoutMillis, TimeUnit.MILLISECONDS)) {
+            throw new LockTimeoutException("Timed out waiting for transfer shard.");
+          }
+        } catch (InterruptedException ex) {
+          Thread.currentThread().interrupt();
+          throw new LockTimeoutException("Interrupted while waiting for transfer shard.");
+        }
+      }
+      queue.offer(() -> {
+        if (external) {
+          capacity.release();
+          if (!claimed.compareAndSet(false, true)) {
+            result.completeExceptionally(
+                new LockTimeoutException("Timed out waiting for transfer shard."));
+            return;
+          }
+        }
+        try {
+          step.run();
+          result.complete(null);
+        } catch (Exception ex) {
+          result.completeExceptionally(ex);
+        }
+      });
+      if (parked) {
+        LockSupport.unpark(owner);
+      }
+    }
+
+    @Override
+    public void run() {
+      while (!Thread.currentThread().isInterrupted()) {
+        Runnable task = queue.poll();
+        if (task != null) {
+          task.run();
+          continue;
+        }
+        parked = true;
+        if (queue.isEmpty()) {
+          LockSupport.park(this);
+        }
+        parked = false;
+      }
+    }
+  }
+}
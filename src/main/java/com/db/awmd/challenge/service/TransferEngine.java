@@ -0,0 +1,72 @@
+package com.db.awmd.challenge.service;
+
+import com.db.awmd.challenge.domain.AccountSnapshot;
+import com.db.awmd.challenge.domain.TransferOutcome;
+import com.db.awmd.challenge.repository.AccountsRepository;
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.function.Supplier;
+import javax.security.auth.login.AccountNotFoundException;
+
+/**
+ * Applies the balance changes of transfers. Implementations decide how concurrent transfers on
+ * the same account are kept apart; the engine is chosen with {@code accounts.transfer.engine}.
+ */
+public interface TransferEngine {
+
+  /**
+   * Applies the transfer, or rejects it without changing any balance. Unknown accounts and
+   * insufficient balances are returned as the outcome, not thrown.
+   */
+  default TransferOutcome transfer(String fromId, String toId, BigDecimal amount)
+      throws AccountNotFoundException {
+    return transfer(fromId, toId, amount, Recorder.NONE);
+  }
+
+  /**
+   * Like {@link #transfer(String, String, BigDecimal)}, and passes the transfer to the recorder
+   * once it is going ahead: before any balance changes, while no other transfer can change
+   * either account. A recorder that throws cancels the transfer.
+   */
+  TransferOutcome transfer(String fromId, String toId, BigDecimal amount, Recorder recorder)
+      throws AccountNotFoundException;
+
+  /**
+   * Runs the action while no other transfer can change any of the given accounts.
+   */
+  <T> T callExclusively(Collection<String> accountIds, Supplier<T> action);
+
+  /**
+   * Runs the action while no transfer can change any account and none is partially applied.
+   */
+  <T> T callExclusivelyOnAll(Supplier<T> action);
+
+  /**
+   * Receives transfers that are about to be applied, such as the journal.
+   */
+  interface Recorder {
+
+    Recorder NONE = (fromId, toId, amount) -> { };
+
+    void record(String fromId, String toId, BigDecimal amount);
+  }
+
+  /**
+   * Returns why the transfer has to be rejected given the current balances, or null if it can
+   * go ahead. Allocates nothing for accounts with versioned snapshots.
+   */
+  static TransferOutcome check(AccountsRepository accountsRepository, String fromId,
+      String toId, BigDecimal amount) {
+    AccountSnapshot from = accountsRepository.findAccountSnapshot(fromId);
+    if (from == null) {
+      return TransferOutcome.FROM_ACCOUNT_NOT_FOUND;
+    }
+    if (accountsRepository.findAccountSnapshot(toId) == null) {
+      return TransferOutcome.TO_ACCOUNT_NOT_FOUND;
+    }
+    if (from.getBalance().compareTo(amount) < 0) {
+      return TransferOutcome.INSUFFICIENT_BALANCE;
+    }
+    return null;
+  }
+}
@@ -1,15 +1,40 @@
 package com.db.awmd.challenge.web;
 
+import com.db.awmd.challenge.cluster.ClusterRouter;
+import com.db.awmd.challenge.cluster.TwoPhaseTransferService;
 import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.AccountFormat;
+import com.db.awmd.challenge.domain.AccountSnapshot;
+import com.db.awmd.challenge.domain.BalanceMode;
+import com.db.awmd.challenge.domain.BatchMode;
+import com.db.awmd.challenge.domain.BatchTransferResult;
+import com.db.awmd.challenge.domain.BulkImportResult;
+import com.db.awmd.challenge.domain.TotalBalance;
+import com.db.awmd.challenge.domain.TransactionPage;
 import com.db.awmd.challenge.domain.Transfer;
+import com.db.awmd.challenge.domain.TransferInstruction;
+import com.db.awmd.challenge.domain.TransferOutcome;
 import com.db.awmd.challenge.exception.DuplicateAccountIdException;
 import com.db.awmd.challenge.exception.InsufficientBalanceException;
 import com.db.awmd.challenge.exception.InvalidAmountException;
+import com.db.awmd.challenge.exception.LockTimeoutException;
+import com.db.awmd.challenge.exception.PartitionUnavailableException;
+import com.db.awmd.challenge.service.AccountExportService;
+import com.db.awmd.challenge.service.AccountImportService;
 import com.db.awmd.challenge.service.AccountsService;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Optional;
 import javax.security.auth.login.AccountNotFoundException;
+import javax.servlet.http.HttpServletRequest;
 import javax.validation.Valid;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
@@ -17,56 +42,299 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 @RestController
 @RequestMapping("/v1/accounts")
 @Slf4j
 public class AccountsController {
 
+  private static final int MAX_IDEMPOTENCY_KEY_LENGTH = 255;
+
+  private static final String NDJSON = "application/x-ndjson";
+
+  private static final String CSV = "text/csv";
+
   private final AccountsService accountsService;
 
+  private final int maxBatchSize;
+
+  private final int maxPageSize;
+
+  private final IdempotencyCache idempotencyCache;
+
+  private final AccountImportService accountImportService;
+
+  private final AccountExportService accountExportService;
+
+  private final Optional<ClusterRouter> clusterRouter;
+
+  private final Optional<TwoPhaseTransferService> twoPhaseTransferService;
+
+  private final Optional<TransferAdmission> transferAdmission;
+
   @Autowired
-  public AccountsController(AccountsService accountsService) {
+  public AccountsController(AccountsService accountsService,
+      @Value("${accounts.batch.max-size:10000}") int maxBatchSize,
+      @Value("${accounts.history.max-page-size:1000}") int maxPageSize,
+      IdempotencyCache idempotencyCache, AccountImportService accountImportService,
+      AccountExportService accountExportService, Optional<ClusterRouter> clusterRouter,
+      Optional<TwoPhaseTransferService> twoPhaseTransferService,
+      Optional<TransferAdmission> transferAdmission) {
     this.accountsService = accountsService;
+    this.maxBatchSize = maxBatchSize;
+    this.maxPageSize = maxPageSize;
+    this.idempotencyCache = idempotencyCache;
+    this.accountImportService = accountImportService;
+    this.accountExportService = accountExportService;
+    this.clusterRouter = clusterRouter;
+    this.twoPhaseTransferService = twoPhaseTransferService;
+    this.transferAdmission = transferAdmission;
   }
 
   @PostMapping(consumes = MediaType.APPLICATION_JSON_VALUE)
-  public ResponseEntity<Object> createAccount(@RequestBody @Valid Account account) {
+  public ResponseEntity<Object> createAccount(@RequestBody @Valid Account account,
+      HttpServletRequest request) {
+    ResponseEntity<Object> routed = routed(account.getAccountId(), request, account);
+    if (routed != null) {
+      return routed;
+    }
     log.info("Creating account {}", account);
 
     try {
       this.accountsService.createAccount(account);
-    } catch (DuplicateAccountIdException daie) {
-      return new ResponseEntity<>(daie.getMessage(), HttpStatus.BAD_REQUEST);
+    } catch (DuplicateAccountIdException | InvalidAmountException e) {
+      return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
     }
 
     return new ResponseEntity<>(HttpStatus.CREATED);
   }
 
+  /**
+   * Creates accounts from a streamed NDJSON or CSV body, one account per line. The body is read
+   * incrementally; invalid and duplicate lines are reported without stopping the import.
+   */
+  @PostMapping(path = "/bulk", consumes = {NDJSON, CSV})
+  public ResponseEntity<Object> importAccounts(InputStream body,
+      @RequestHeader("Content-Type") String contentType) throws IOException {
+    AccountFormat format =
+        contentType.startsWith(CSV) ? AccountFormat.CSV : AccountFormat.NDJSON;
+    try (BufferedReader reader = new BufferedReader(
+        new InputStreamReader(body, StandardCharsets.UTF_8))) {
+      BulkImportResult result = this.accountImportService.importAccounts(reader, format);
+      log.info("Imported {} accounts, rejected {}", result.getImported(), result.getRejected());
+      return new ResponseEntity<>(result, HttpStatus.OK);
+    }
+  }
+
+  /**
+   * Streams every account as NDJSON or CSV. With {@code consistent=true} the balances are taken
+   * at a single point in time, briefly holding all transfers back.
+   */
+  @GetMapping(path = "/export")
+  public ResponseEntity<StreamingResponseBody> exportAccounts(
+      @RequestParam(name = "format", defaultValue = "NDJSON") AccountFormat format,
+      @RequestParam(name = "consistent", defaultValue = "false") boolean consistent) {
+    log.info("Exporting accounts as {}, consistent {}", format, consistent);
+    return ResponseEntity.ok()
+        .contentType(MediaType.parseMediaType(format == AccountFormat.CSV ? CSV : NDJSON))
+        .body(out -> this.accountExportService.export(out, format, consistent));
+  }
+
+  @GetMapping(path = "/total-balance")
+  public ResponseEntity<Object> totalBalance(
+      @RequestParam(name = "mode", defaultValue = "RUNNING") BalanceMode mode) {
+    try {
+      return new ResponseEntity<>(
+          new TotalBalance(mode, this.accountsService.totalBalance(mode)), HttpStatus.OK);
+    } catch (LockTimeoutException e) {
+      return new ResponseEntity<>(e.getMessage(), HttpStatus.SERVICE_UNAVAILABLE);
+    }
+  }
+
+  /**
+   * Returns the account with its balance version as ETag; a matching {@code If-None-Match}
+   * gets 304 Not Modified.
+   */
   @GetMapping(path = "/{accountId}")
-  public ResponseEntity<Account> getAccount(@PathVariable String accountId) {
-    log.info("Retrieving account for id {}", accountId);
+  public ResponseEntity<Object> getAccount(@PathVariable String accountId,
+      @RequestHeader(name = "If-None-Match", required = false) String ifNoneMatch,
+      HttpServletRequest request) {
+    ResponseEntity<Object> routed = routed(accountId, request, null);
+    if (routed != null) {
+      return routed;
+    }
+    log.debug("Retrieving account for id {}", accountId);
     try {
-      Account account = this.accountsService.getAccount(accountId);
-      return new ResponseEntity<Account>(account, HttpStatus.OK);
+      AccountSnapshot account = this.accountsService.getAccountSnapshot(accountId);
+      if (!account.isVersioned()) {
+        return new ResponseEntity<>(account, HttpStatus.OK);
+      }
+      // the incarnation tells apart an account created again, whose versions restart at 0
+      String etag = "\"" + Long.toHexString(account.getIncarnation()) + '.'
+          + account.getVersion() + "\"";
+      if (ifNoneMatch != null && matches(ifNoneMatch, etag)) {
+        return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+      }
+      return ResponseEntity.ok().eTag(etag).body(account);
     } catch (AccountNotFoundException e) {
       return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
     }
 
   }
 
+  /**
+   * Marks the account as hot: credits to it are spread over striped cells instead of contending
+   * on its balance, at the cost of versioned reads.
+   */
+  @PostMapping(path = "/{accountId}/hot")
+  public ResponseEntity<Object> markHot(@PathVariable String accountId,
+      HttpServletRequest request) {
+    ResponseEntity<Object> routed = routed(accountId, request, null);
+    if (routed != null) {
+      return routed;
+    }
+    log.info("Marking account {} as hot", accountId);
+    try {
+      if (!this.accountsService.markHot(accountId)) {
+        return new ResponseEntity<>("Hot accounts are not supported by this repository.",
+            HttpStatus.BAD_REQUEST);
+      }
+      return new ResponseEntity<>(HttpStatus.OK);
+    } catch (AccountNotFoundException e) {
+      return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
+    }
+  }
+
+  @GetMapping(path = "/{accountId}/transactions")
+  public ResponseEntity<Object> getTransactions(@PathVariable String accountId,
+      @RequestParam(name = "before", required = false) Long before,
+      @RequestParam(name = "from", required = false) Long fromMillis,
+      @RequestParam(name = "to", required = false) Long toMillis,
+      @RequestParam(name = "limit", defaultValue = "50") int limit,
+      HttpServletRequest request) {
+    ResponseEntity<Object> routed = routed(accountId, request, null);
+    if (routed != null) {
+      return routed;
+    }
+    if (limit < 1 || limit > maxPageSize) {
+      return new ResponseEntity<>("Limit must be between 1 and " + maxPageSize + ".",
+          HttpStatus.BAD_REQUEST);
+    }
+    try {
+      TransactionPage page = this.accountsService
+          .getTransactions(accountId, before, fromMillis, toMillis, limit);
+      return new ResponseEntity<>(page, HttpStatus.OK);
+    } catch (AccountNotFoundException e) {
+      return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
+    }
+  }
+
+  /**
+   * Transfers money. With an {@code Idempotency-Key} header, a retry of the same request returns
+   * the original response without transferring again. When too many transfers for either account
+   * or in total are in flight, the transfer is refused with 429 before its key is remembered.
+   */
   @PostMapping(path = "/{id}/transfer")
   public ResponseEntity<Object> transferMoney(@PathVariable("id") String fromAccount,
-      @RequestBody @Valid Transfer transfer) {
+      @RequestBody @Valid Transfer transfer,
+      @RequestHeader(name = "Idempotency-Key", required = false) String idempotencyKey,
+      HttpServletRequest request) {
+    ResponseEntity<Object> routed = routed(fromAccount, request, transfer);
+    if (routed != null) {
+      return routed;
+    }
+    if (!transferAdmission.isPresent()) {
+      return transferOnce(fromAccount, transfer, idempotencyKey);
+    }
+    return transferAdmission.get().execute(fromAccount, transfer.getToAccountId(),
+        () -> transferOnce(fromAccount, transfer, idempotencyKey));
+  }
+
+  private ResponseEntity<Object> transferOnce(String fromAccount, Transfer transfer,
+      String idempotencyKey) {
+    if (idempotencyKey == null) {
+      return transfer(fromAccount, transfer);
+    }
+    if (idempotencyKey.isEmpty() || idempotencyKey.length() > MAX_IDEMPOTENCY_KEY_LENGTH) {
+      return new ResponseEntity<>("Idempotency-Key must have between 1 and "
+          + MAX_IDEMPOTENCY_KEY_LENGTH + " characters.", HttpStatus.BAD_REQUEST);
+    }
+    // 10 and 10.0 are the same amount, so a retry may spell it either way
+    String fingerprint = fromAccount + '\n' + transfer.getToAccountId() + '\n'
+        + transfer.getAmount().stripTrailingZeros().toPlainString();
+    return idempotencyCache.execute(idempotencyKey, fingerprint,
+        () -> transfer(fromAccount, transfer));
+  }
+
+  @PostMapping(path = "/transfers/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+  public ResponseEntity<Object> transferBatch(@RequestBody List<TransferInstruction> transfers,
+      @RequestParam(name = "mode", defaultValue = "ALL_OR_NOTHING") BatchMode mode) {
+    log.info("Transferring batch of {} in mode {}", transfers.size(), mode);
+    if (transfers.isEmpty() || transfers.size() > maxBatchSize) {
+      return new ResponseEntity<>("Batch must contain between 1 and " + maxBatchSize
+          + " transfers.", HttpStatus.BAD_REQUEST);
+    }
+    try {
+      BatchTransferResult result = this.accountsService.transferBatch(transfers, mode);
+      HttpStatus status = mode == BatchMode.ALL_OR_NOTHING && result.getRejected() > 0
+          ? HttpStatus.BAD_REQUEST : HttpStatus.OK;
+      return new ResponseEntity<>(result, status);
+    } catch (LockTimeoutException e) {
+      return new ResponseEntity<>(e.getMessage(), HttpStatus.SERVICE_UNAVAILABLE);
+    }
+  }
+
+  private ResponseEntity<Object> transfer(String fromAccount, Transfer transfer) {
     try {
-      this.accountsService
-          .transferAmount(fromAccount, transfer.getToAccountId(), transfer.getAmount());
+      if (clusterRouter.isPresent() && !clusterRouter.get().owns(transfer.getToAccountId())) {
+        this.twoPhaseTransferService.get()
+            .transfer(fromAccount, transfer.getToAccountId(), transfer.getAmount());
+        return new ResponseEntity<>(HttpStatus.OK);
+      }
+      TransferOutcome outcome = this.accountsService
+          .tryTransfer(fromAccount, transfer.getToAccountId(), transfer.getAmount());
+      if (outcome != TransferOutcome.COMPLETED) {
+        return new ResponseEntity<>(outcome.describe(fromAccount, transfer.getToAccountId()),
+            HttpStatus.BAD_REQUEST);
+      }
       return new ResponseEntity<>(HttpStatus.OK);
     } catch (AccountNotFoundException | InsufficientBalanceException | InvalidAmountException e) {
       return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
+    } catch (LockTimeoutException | PartitionUnavailableException e) {
+      return new ResponseEntity<>(e.getMessage(), HttpStatus.SERVICE_UNAVAILABLE);
+    }
+  }
+
+  /**
+   * Forwards the request to the node owning the account and returns its response, or returns
+   * null when the request is to be served here.
+   */
+  private ResponseEntity<Object> routed(String accountId, HttpServletRequest request,
+      Object body) {
+    if (!clusterRouter.isPresent() || clusterRouter.get().isForwarded(request)
+        || clusterRouter.get().owns(accountId)) {
+      return null;
+    }
+    try {
+      return clusterRouter.get().forward(clusterRouter.get().ownerOf(accountId), request, body);
+    } catch (PartitionUnavailableException e) {
+      return new ResponseEntity<>(e.getMessage(), HttpStatus.SERVICE_UNAVAILABLE);
+    }
+  }
+
+  private static boolean matches(String ifNoneMatch, String etag) {
+    for (String candidate : ifNoneMatch.split(",")) {
+      String trimmed = candidate.trim();
+      if (trimmed.equals("*") || trimmed.equals(etag) || trimmed.equals("W/" + etag)) {
+        return true;
+      }
     }
+    return false;
   }
 
 }
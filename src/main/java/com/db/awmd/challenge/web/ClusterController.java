@@ -0,0 +1,72 @@
+package com.db.awmd.challenge.web;
+
+import com.db.awmd.challenge.cluster.TwoPhaseTransferService;
+import com.db.awmd.challenge.domain.TransferInstruction;
+import javax.security.auth.login.AccountNotFoundException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Node-to-node endpoints of the two-phase protocol for transfers between partitions. Not meant
+ * for clients.
+ */
+@RestController
+@RequestMapping("/internal/transfers")
+@ConditionalOnProperty(name = "accounts.cluster.enabled", havingValue = "true")
+@Slf4j
+public class ClusterController {
+
+  private final TwoPhaseTransferService twoPhaseTransferService;
+
+  @Autowired
+  public ClusterController(TwoPhaseTransferService twoPhaseTransferService) {
+    this.twoPhaseTransferService = twoPhaseTransferService;
+  }
+
+  @PostMapping(path = "/{transferId}/prepare", consumes = MediaType.APPLICATION_JSON_VALUE)
+  public ResponseEntity<Object> prepare(@PathVariable String transferId,
+      @RequestParam("coordinator") String coordinator,
+      @RequestBody TransferInstruction transfer) {
+    log.debug("Preparing transfer {} from {}", transferId, coordinator);
+    try {
+      twoPhaseTransferService.prepare(transferId, transfer.getToAccountId(),
+          transfer.getAmount(), coordinator);
+      return new ResponseEntity<>(HttpStatus.OK);
+    } catch (AccountNotFoundException e) {
+      return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
+    }
+  }
+
+  @PostMapping(path = "/{transferId}/commit")
+  public ResponseEntity<Object> commit(@PathVariable String transferId) {
+    try {
+      twoPhaseTransferService.commit(transferId);
+      return new ResponseEntity<>(HttpStatus.OK);
+    } catch (AccountNotFoundException e) {
+      return new ResponseEntity<>(e.getMessage(), HttpStatus.CONFLICT);
+    }
+  }
+
+  @PostMapping(path = "/{transferId}/abort")
+  public ResponseEntity<Object> abort(@PathVariable String transferId) {
+    twoPhaseTransferService.abort(transferId);
+    return new ResponseEntity<>(HttpStatus.OK);
+  }
+
+  @GetMapping(path = "/{transferId}", produces = MediaType.TEXT_PLAIN_VALUE)
+  public ResponseEntity<String> decision(@PathVariable String transferId) {
+    return new ResponseEntity<>(twoPhaseTransferService.decisionOf(transferId).name(),
+        HttpStatus.OK);
+  }
+}
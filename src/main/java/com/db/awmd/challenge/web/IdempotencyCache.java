@@ -0,0 +1,154 @@
+package com.db.awmd.challenge.web;
+
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+/**
+ * Remembers the response to each {@code Idempotency-Key}, so that a retried request gets the
+ * original outcome instead of being applied again. The first request with a key runs the action;
+ * requests with the same key that arrive while it runs wait for its result.
+ *
+ * <p>Entries expire after a fixed time to live. Because every entry lives equally long, eviction
+ * in insertion order removes the entries closest to expiry first; when the cache is over its
+ * size bound the oldest entries are evicted early. Server errors are not remembered, so a request
+ * that failed for a transient reason can be retried with the same key. Only remembered entries
+ * join the eviction order, so failing requests leave nothing behind.
+ */
+@Component
+public class IdempotencyCache {
+
+  private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+
+  private final Queue<Entry> insertionOrder = new ConcurrentLinkedQueue<>();
+
+  private final int maxEntries;
+
+  private final long ttlNanos;
+
+  private final LongAdder hits = new LongAdder();
+
+  private final LongAdder misses = new LongAdder();
+
+  private final LongAdder evictions = new LongAdder();
+
+  @Autowired
+  public IdempotencyCache(@Value("${accounts.idempotency.max-entries:100000}") int maxEntries,
+      @Value("${accounts.idempotency.ttl-ms:600000}") long ttlMillis) {
+    this.maxEntries = maxEntries;
+    this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+  }
+
+  /**
+   * Returns the remembered response for the key, or runs the action and remembers its response.
+   * A key reused for a different request, as told by the fingerprint, is rejected.
+   */
+  public ResponseEntity<Object> execute(String key, String fingerprint,
+      Supplier<ResponseEntity<Object>> action) {
+    long now = System.nanoTime();
+    Entry entry = new Entry(key, fingerprint, now + ttlNanos);
+    Entry existing = entries.putIfAbsent(key, entry);
+    while (existing != null && existing.expiresAt - now < 0) {
+      entries.remove(key, existing);
+      existing = entries.putIfAbsent(key, entry);
+    }
+    if (existing != null) {
+      hits.increment();
+      if (!existing.fingerprint.equals(fingerprint)) {
+        return new ResponseEntity<>("Idempotency-Key " + key
+            + " was already used for a different request.", HttpStatus.UNPROCESSABLE_ENTITY);
+      }
+      try {
+        return existing.response.join();
+      } catch (CompletionException ex) {
+        Throwable cause = ex.getCause();
+        if (cause instanceof RuntimeException) {
+          throw (RuntimeException) cause;
+        }
+        if (cause instanceof Error) {
+          throw (Error) cause;
+        }
+        throw ex;
+      }
+    }
+
+    misses.increment();
+    ResponseEntity<Object> response;
+    try {
+      response = action.get();
+    } catch (Throwable ex) {
+      // errors too, or requests waiting on the same key would block until it expires
+      entries.remove(key, entry);
+      entry.response.completeExceptionally(ex);
+      throw ex;
+    }
+    if (response.getStatusCode().is5xxServerError()) {
+      entries.remove(key, entry);
+    } else {
+      insertionOrder.add(entry);
+      evict(System.nanoTime());
+    }
+    entry.response.complete(response);
+    return response;
+  }
+
+  public long getHits() {
+    return hits.sum();
+  }
+
+  public long getMisses() {
+    return misses.sum();
+  }
+
+  public long getEvictions() {
+    return evictions.sum();
+  }
+
+  public int size() {
+    return entries.size();
+  }
+
+  /**
+   * Returns the number of entries awaiting eviction, in time linear in that number.
+   */
+  public int evictionBacklog() {
+    return insertionOrder.size();
+  }
+
+  private void evict(long now) {
+    Entry oldest;
+    while ((oldest = insertionOrder.peek()) != null
+        && (oldest.expiresAt - now < 0 || entries.size() > maxEntries)) {
+      if (insertionOrder.remove(oldest) && entries.remove(oldest.key, oldest)) {
+        evictions.increment();
+      }
+    }
+  }
+
+  private static final class Entry {
+
+    private final String key;
+
+    private final String fingerprint;
+
+    private final long expiresAt;
+
+    private final CompletableFuture<ResponseEntity<Object>> response = new CompletableFuture<>();
+
+    private Entry(String key, String fingerprint, long expiresAt) {
+      this.key = key;
+      this.fingerprint = fingerprint;
+      this.expiresAt = expiresAt;
+    }
+  }
+}
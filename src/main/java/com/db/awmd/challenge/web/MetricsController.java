@@ -0,0 +1,189 @@
+package com.db.awmd.challenge.web;
+
+import com.db.awmd.challenge.cluster.TwoPhaseTransferService;
+import com.db.awmd.challenge.journal.MappedTransactionJournal;
+import com.db.awmd.challenge.journal.SnapshotManager;
+import com.db.awmd.challenge.metrics.TransferMetrics;
+import com.db.awmd.challenge.replication.ReplicationFollower;
+import com.db.awmd.challenge.replication.ReplicationLog;
+import com.db.awmd.challenge.service.AccountLockRegistry;
+import com.db.awmd.challenge.service.AsyncTransferService;
+import com.db.awmd.challenge.service.NotificationDispatcher;
+import com.db.awmd.challenge.service.OptimisticTransferEngine;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Read-only view of the transfer, admission, repository, lock, notification, idempotency,
+ * asynchronous transfer, cluster, replication and journal metrics. Latencies are in microseconds.
+ */
+@RestController
+@RequestMapping("/v1/metrics")
+public class MetricsController {
+
+  private final TransferMetrics transferMetrics;
+
+  private final AccountLockRegistry accountLockRegistry;
+
+  private final NotificationDispatcher notificationDispatcher;
+
+  private final Optional<MappedTransactionJournal> journal;
+
+  private final Optional<SnapshotManager> snapshotManager;
+
+  private final IdempotencyCache idempotencyCache;
+
+  private final AsyncTransferService asyncTransferService;
+
+  private final Optional<OptimisticTransferEngine> optimisticEngine;
+
+  private final Optional<TwoPhaseTransferService> twoPhaseTransferService;
+
+  private final Optional<ReplicationLog> replicationLog;
+
+  private final Optional<ReplicationFollower> follower;
+
+  private final Optional<TransferAdmission> transferAdmission;
+
+  private final int topContended;
+
+  @Autowired
+  public MetricsController(TransferMetrics transferMetrics,
+      AccountLockRegistry accountLockRegistry, NotificationDispatcher notificationDispatcher,
+      Optional<MappedTransactionJournal> journal, Optional<SnapshotManager> snapshotManager,
+      IdempotencyCache idempotencyCache, AsyncTransferService asyncTransferService,
+      Optional<OptimisticTransferEngine> optimisticEngine,
+      Optional<TwoPhaseTransferService> twoPhaseTransferService,
+      Optional<ReplicationLog> replicationLog, Optional<ReplicationFollower> follower,
+      Optional<TransferAdmission> transferAdmission,
+      @Value("${accounts.metrics.top-contended:10}") int topContended) {
+    this.transferMetrics = transferMetrics;
+    this.accountLockRegistry = accountLockRegistry;
+    this.notificationDispatcher = notificationDispatcher;
+    this.journal = journal;
+    this.snapshotManager = snapshotManager;
+    this.idempotencyCache = idempotencyCache;
+    this.asyncTransferService = asyncTransferService;
+    this.optimisticEngine = optimisticEngine;
+    this.twoPhaseTransferService = twoPhaseTransferService;
+    this.replicationLog = replicationLog;
+    this.follower = follower;
+    this.transferAdmission = transferAdmission;
+    this.topContended = topContended;
+  }
+
+  @GetMapping
+  public Map<String, Object> metrics() {
+    Map<String, Object> transfers = new LinkedHashMap<>();
+    transfers.put("latency", transferMetrics.getTransferLatency().snapshot());
+    transfers.put("engineLatency", transferMetrics.getEngineLatency().snapshot());
+    transfers.put("failures", transferMetrics.failures());
+    optimisticEngine.ifPresent(engine -> {
+      Map<String, Object> optimistic = new LinkedHashMap<>();
+      long commits = engine.getCommits();
+      long conflicts = engine.getConflicts();
+      optimistic.put("commits", commits);
+      optimistic.put("conflicts", conflicts);
+      optimistic.put("fallbacks", engine.getFallbacks());
+      optimistic.put("conflictRate",
+          commits + conflicts == 0 ? 0.0 : (double) conflicts / (commits + conflicts));
+      transfers.put("optimistic", optimistic);
+    });
+
+    Map<String, Object> repository = new LinkedHashMap<>();
+    repository.put("createAccount", transferMetrics.getCreateAccountLatency().snapshot());
+    repository.put("getAccount", transferMetrics.getGetAccountLatency().snapshot());
+    repository.put("addAmount", transferMetrics.getAddAmountLatency().snapshot());
+    repository.put("withdrawAmount", transferMetrics.getWithdrawAmountLatency().snapshot());
+    repository.put("totalBalance", transferMetrics.getTotalBalanceLatency().snapshot());
+
+    Map<String, Object> locks = new LinkedHashMap<>();
+    locks.put("waitTime", accountLockRegistry.getWaitTime().snapshot());
+    locks.put("holdTime", accountLockRegistry.getHoldTime().snapshot());
+    locks.put("mostContended", accountLockRegistry.mostContended(topContended));
+
+    Map<String, Object> notifications = new LinkedHashMap<>();
+    notifications.put("submitted", notificationDispatcher.getSubmitted());
+    notifications.put("delivered", notificationDispatcher.getDelivered());
+    notifications.put("coalesced", notificationDispatcher.getCoalesced());
+    notifications.put("dropped", notificationDispatcher.getDropped());
+    notifications.put("failed", notificationDispatcher.getFailed());
+    notifications.put("queueDepth", notificationDispatcher.getQueueDepth());
+    notifications.put("deliveryLatency", notificationDispatcher.getDeliveryLatency().snapshot());
+
+    Map<String, Object> idempotency = new LinkedHashMap<>();
+    idempotency.put("hits", idempotencyCache.getHits());
+    idempotency.put("misses", idempotencyCache.getMisses());
+    idempotency.put("evictions", idempotencyCache.getEvictions());
+    idempotency.put("size", idempotencyCache.size());
+
+    Map<String, Object> asyncTransfers = new LinkedHashMap<>();
+    asyncTransfers.put("submitted", asyncTransferService.getSubmitted());
+    asyncTransfers.put("rejected", asyncTransferService.getRejected());
+    asyncTransfers.put("evictions", asyncTransferService.getEvictions());
+    asyncTransfers.put("queueDepth", asyncTransferService.getQueueDepth());
+
+    Map<String, Object> metrics = new LinkedHashMap<>();
+    metrics.put("transfers", transfers);
+    transferAdmission.ifPresent(admission -> {
+      Map<String, Object> admissions = new LinkedHashMap<>();
+      admissions.put("limit", admission.getGlobalLimit());
+      admissions.put("inFlight", admission.getGlobalInFlight());
+      admissions.put("queued", admission.getQueued());
+      admissions.put("admitted", admission.getAdmitted());
+      admissions.put("rejectedGlobally", admission.getRejectedGlobally());
+      admissions.put("rejectedPerAccount", admission.getRejectedPerAccount());
+      admissions.put("mostRejected", admission.mostRejected(topContended));
+      metrics.put("admission", admissions);
+    });
+    metrics.put("repository", repository);
+    metrics.put("locks", locks);
+    metrics.put("notifications", notifications);
+    metrics.put("idempotency", idempotency);
+    metrics.put("asyncTransfers", asyncTransfers);
+    twoPhaseTransferService.ifPresent(twoPhase -> {
+      Map<String, Object> cluster = new LinkedHashMap<>();
+      cluster.put("committed", twoPhase.getCommitted());
+      cluster.put("aborted", twoPhase.getAborted());
+      cluster.put("recovered", twoPhase.getRecovered());
+      cluster.put("unacknowledged", twoPhase.getUnacknowledged());
+      cluster.put("inDoubt", twoPhase.getInDoubt());
+      metrics.put("cluster", cluster);
+    });
+    replicationLog.ifPresent(changes -> {
+      Map<String, Object> replication = new LinkedHashMap<>();
+      replication.put("head", changes.getHead());
+      follower.ifPresent(tail -> {
+        replication.put("primary", tail.getPrimary());
+        replication.put("appliedSequence", tail.getAppliedSequence());
+        replication.put("applied", tail.getApplied());
+        replication.put("resyncs", tail.getResyncs());
+        replication.put("lagMillis", tail.getLagMillis());
+        replication.put("promoted", tail.isPromoted());
+      });
+      metrics.put("replication", replication);
+    });
+    journal.ifPresent(mapped -> {
+      Map<String, Object> positions = new LinkedHashMap<>();
+      positions.put("writtenPosition", mapped.getWrittenPosition());
+      positions.put("durablePosition", mapped.getDurablePosition());
+      metrics.put("journal", positions);
+    });
+    snapshotManager.ifPresent(snapshots -> {
+      Map<String, Object> snapshot = new LinkedHashMap<>();
+      snapshot.put("taken", snapshots.getSnapshotsTaken());
+      snapshot.put("lastDurationMillis", snapshots.getLastDurationMillis());
+      snapshot.put("lastSizeBytes", snapshots.getLastSizeBytes());
+      snapshot.put("lastAccountCount", snapshots.getLastAccountCount());
+      snapshot.put("lastJournalPosition", snapshots.getLastJournalPosition());
+      metrics.put("snapshot", snapshot);
+    });
+    return metrics;
+  }
+}
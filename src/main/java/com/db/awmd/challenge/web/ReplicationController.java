@@ -0,0 +1,100 @@
+package com.db.awmd.challenge.web;
+
+import com.db.awmd.challenge.domain.AccountFormat;
+import com.db.awmd.challenge.domain.ChangeBatch;
+import com.db.awmd.challenge.exception.ReplicationLogTruncatedException;
+import com.db.awmd.challenge.replication.ReplicationFollower;
+import com.db.awmd.challenge.replication.ReplicationLog;
+import com.db.awmd.challenge.service.AccountExportService;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+/**
+ * Node-to-node endpoints for log-shipping replication, and promotion of a follower. Not meant
+ * for clients.
+ */
+@RestController
+@RequestMapping("/internal/replication")
+@ConditionalOnProperty(name = "accounts.replication.enabled", havingValue = "true")
+@Slf4j
+public class ReplicationController {
+
+  private final ReplicationLog replicationLog;
+
+  private final AccountExportService accountExportService;
+
+  private final Optional<ReplicationFollower> follower;
+
+  private final long maxWaitMillis;
+
+  @Autowired
+  public ReplicationController(ReplicationLog replicationLog,
+      AccountExportService accountExportService, Optional<ReplicationFollower> follower,
+      @Value("${accounts.replication.max-wait-ms:30000}") long maxWaitMillis) {
+    this.replicationLog = replicationLog;
+    this.accountExportService = accountExportService;
+    this.follower = follower;
+    this.maxWaitMillis = maxWaitMillis;
+  }
+
+  /**
+   * Returns the changes following {@code after}. With {@code wait-ms} an empty answer is held
+   * back until a change arrives or the wait expires; 410 Gone means the follower must resync.
+   */
+  @GetMapping(path = "/changes")
+  public ResponseEntity<Object> changes(@RequestParam("after") long after,
+      @RequestParam(name = "max", defaultValue = "10000") int max,
+      @RequestParam(name = "wait-ms", defaultValue = "0") long waitMillis) {
+    try {
+      if (waitMillis > 0) {
+        replicationLog.awaitAfter(after, Math.min(waitMillis, maxWaitMillis));
+      }
+      long head = replicationLog.getHead();
+      return new ResponseEntity<>(new ChangeBatch(head, replicationLog.readAfter(after, max)),
+          HttpStatus.OK);
+    } catch (ReplicationLogTruncatedException e) {
+      return new ResponseEntity<>(e.getMessage(), HttpStatus.GONE);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return new ResponseEntity<>(HttpStatus.SERVICE_UNAVAILABLE);
+    }
+  }
+
+  /**
+   * Streams the sequence number of the log followed by every account as NDJSON. Replaying the
+   * changes after that sequence number over the accounts yields the current state.
+   */
+  @GetMapping(path = "/snapshot")
+  public ResponseEntity<StreamingResponseBody> snapshot() {
+    long sequence = replicationLog.getHead();
+    log.info("Streaming replication snapshot at sequence {}", sequence);
+    return ResponseEntity.ok()
+        .contentType(MediaType.parseMediaType("application/x-ndjson"))
+        .body(out -> {
+          out.write(("{\"sequence\":" + sequence + "}\n").getBytes(StandardCharsets.UTF_8));
+          accountExportService.export(out, AccountFormat.NDJSON, false);
+        });
+  }
+
+  @PostMapping(path = "/promote")
+  public ResponseEntity<Object> promote() throws InterruptedException {
+    if (!follower.isPresent()) {
+      return new ResponseEntity<>("This node is not a follower.", HttpStatus.BAD_REQUEST);
+    }
+    follower.get().promote();
+    return new ResponseEntity<>(HttpStatus.OK);
+  }
+}
@@ -0,0 +1,266 @@
+package com.db.awmd.challenge.web;
+
+import com.db.awmd.challenge.metrics.AdmissionStripe;
+import com.db.awmd.challenge.repository.AccountsRepository;
+import com.db.awmd.challenge.service.AccountLockRegistry;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+/**
+ * Admits a transfer only while its accounts' lock stripes and the whole service are below their
+ * concurrency limits, and otherwise answers at once with 429 Too Many Requests and
+ * {@code Retry-After}, so that requests for a hot account cannot pile up on its lock and take
+ * every request thread. Stripes are the unit because accounts sharing a stripe contend on the
+ * same lock anyway. Credits to a hot account do not take its stripe's lock, so only the sender's
+ * stripe limits them.
+ *
+ * <p>Limits adapt by additive increase and multiplicative decrease: a transfer that completes
+ * within the target latency while at least half the limit is in use raises the limit by
+ * {@code 1 / limit}, about one per limit's worth of transfers, and one that is slower or ends
+ * with 503 lowers it by the backoff ratio. Only transfers admitted after the last decrease can
+ * lower it again, so a single slow burst costs one step rather than one per transfer.
+ */
+@Component
+@ConditionalOnProperty(name = "accounts.admission.enabled", havingValue = "true",
+    matchIfMissing = true)
+public class TransferAdmission {
+
+  private final AccountLockRegistry accountLockRegistry;
+
+  private final AccountsRepository accountsRepository;
+
+  private final AdaptiveLimit global;
+
+  private final AdaptiveLimit[] stripes;
+
+  private final long targetLatencyNanos;
+
+  private final double backoffRatio;
+
+  private final String retryAfterSeconds;
+
+  private final LongAdder admitted = new LongAdder();
+
+  private final LongAdder rejectedGlobally = new LongAdder();
+
+  private final LongAdder rejectedPerAccount = new LongAdder();
+
+  @Autowired
+  public TransferAdmission(AccountLockRegistry accountLockRegistry,
+      AccountsRepository accountsRepository,
+      @Value("${accounts.admission.global.initial-limit:100}") int globalInitial,
+      @Value("${accounts.admission.global.min-limit:8}") int globalMin,
+      @Value("${accounts.admission.global.max-limit:1000}") int globalMax,
+      @Value("${accounts.admission.account.initial-limit:8}") int accountInitial,
+      @Value("${accounts.admission.account.min-limit:1}") int accountMin,
+      @Value("${accounts.admission.account.max-limit:64}") int accountMax,
+      @Value("${accounts.admission.target-latency-ms:50}") long targetLatencyMillis,
+      @Value("${accounts.admission.backoff-ratio:0.9}") double backoffRatio,
+      @Value("${accounts.admission.retry-after-seconds:1}") int retryAfterSeconds) {
+    if (backoffRatio <= 0 || backoffRatio >= 1) {
+      throw new IllegalArgumentException("Admission backoff ratio must be between 0 and 1.");
+    }
+    this.accountLockRegistry = accountLockRegistry;
+    this.accountsRepository = accountsRepository;
+    this.global = new AdaptiveLimit(globalInitial, globalMin, globalMax);
+    this.stripes = new AdaptiveLimit[accountLockRegistry.stripeCount()];
+    for (int i = 0; i < stripes.length; i++) {
+      stripes[i] = new AdaptiveLimit(accountInitial, accountMin, accountMax);
+    }
+    this.targetLatencyNanos = TimeUnit.MILLISECONDS.toNanos(targetLatencyMillis);
+    this.backoffRatio = backoffRatio;
+    this.retryAfterSeconds = Integer.toString(retryAfterSeconds);
+  }
+
+  /**
+   * Runs the transfer between the two accounts if it is admitted, or returns 429 without
+   * running it.
+   */
+  public ResponseEntity<Object> execute(String fromId, String toId,
+      Supplier<ResponseEntity<Object>> action) {
+    int first = accountLockRegistry.stripeFor(fromId);
+    int second = accountLockRegistry.stripeFor(toId);
+    boolean limitReceiver = second != first && !accountsRepository.isHot(toId);
+    if (!global.tryAcquire()) {
+      rejectedGlobally.increment();
+      return tooManyRequests("Too many concurrent transfers, retry later.");
+    }
+    if (!stripes[first].tryAcquire()) {
+      global.cancel();
+      return rejected(stripes[first], fromId);
+    }
+    if (limitReceiver && !stripes[second].tryAcquire()) {
+      stripes[first].cancel();
+      global.cancel();
+      return rejected(stripes[second], toId);
+    }
+    admitted.increment();
+    long start = System.nanoTime();
+    boolean overloaded = true;
+    try {
+      ResponseEntity<Object> response = action.get();
+      overloaded = response.getStatusCode() == HttpStatus.SERVICE_UNAVAILABLE;
+      return response;
+    } finally {
+      long end = System.nanoTime();
+      boolean slow = overloaded || end - start > targetLatencyNanos;
+      global.release(start, end, slow);
+      stripes[first].release(start, end, slow);
+      if (limitReceiver) {
+        stripes[second].release(start, end, slow);
+      }
+    }
+  }
+
+  public long getAdmitted() {
+    return admitted.sum();
+  }
+
+  public long getRejectedGlobally() {
+    return rejectedGlobally.sum();
+  }
+
+  public long getRejectedPerAccount() {
+    return rejectedPerAccount.sum();
+  }
+
+  public double getGlobalLimit() {
+    return global.limit();
+  }
+
+  public int getGlobalInFlight() {
+    return global.inFlight.get();
+  }
+
+  public int getQueued() {
+    return accountLockRegistry.queueLength();
+  }
+
+  public double limitFor(String accountId) {
+    return stripes[accountLockRegistry.stripeFor(accountId)].limit();
+  }
+
+  /**
+   * Returns up to {@code limit} stripes that rejected the most transfers, most rejections first.
+   */
+  public List<AdmissionStripe> mostRejected(int limit) {
+    List<AdmissionStripe> rejecting = new ArrayList<>();
+    for (int i = 0; i < stripes.length; i++) {
+      AdaptiveLimit stripe = stripes[i];
+      long count = stripe.rejections.sum();
+      if (count > 0) {
+        rejecting.add(new AdmissionStripe(i, stripe.limit(), stripe.inFlight.get(),
+            accountLockRegistry.queueLength(i), count,
+            stripe.lastRejectedAccount));
+      }
+    }
+    rejecting.sort(Comparator.comparingLong(AdmissionStripe::getRejections).reversed());
+    return rejecting.subList(0, Math.min(limit, rejecting.size()));
+  }
+
+  private ResponseEntity<Object> rejected(AdaptiveLimit stripe, String accountId) {
+    stripe.rejections.increment();
+    stripe.lastRejectedAccount = accountId;
+    rejectedPerAccount.increment();
+    return tooManyRequests("Too many concurrent transfers for account " + accountId
+        + ", retry later.");
+  }
+
+  private ResponseEntity<Object> tooManyRequests(String message) {
+    return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+        .header(HttpHeaders.RETRY_AFTER, retryAfterSeconds)
+        .body(message);
+  }
+
+  private final class AdaptiveLimit {
+
+    private final double minLimit;
+
+    private final double maxLimit;
+
+    private final AtomicLong limitBits;
+
+    private final AtomicLong decreasedAt = new AtomicLong(System.nanoTime());
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private final LongAdder rejections = new LongAdder();
+
+    private volatile String lastRejectedAccount;
+
+    private AdaptiveLimit(int initialLimit, int minLimit, int maxLimit) {
+      if (minLimit < 1 || minLimit > initialLimit || initialLimit > maxLimit) {
+        throw new IllegalArgumentException(
+            "Admission limits must satisfy 1 <= min <= initial <= max.");
+      }
+      this.minLimit = minLimit;
+      this.maxLimit = maxLimit;
+      this.limitBits = new AtomicLong(Double.doubleToRawLongBits(initialLimit));
+    }
+
+    private double limit() {
+      return Double.longBitsToDouble(limitBits.get());
+    }
+
+    private boolean tryAcquire() {
+      int limit = (int) limit();
+      int current;
+      do {
+        current = inFlight.get();
+        if (current >= limit) {
+          return false;
+        }
+      } while (!inFlight.compareAndSet(current, current + 1));
+      return true;
+    }
+
+    private void cancel() {
+      inFlight.decrementAndGet();
+    }
+
+    private void release(long start, long end, boolean slow) {
+      int inUse = inFlight.getAndDecrement();
+      if (slow) {
+        long last = decreasedAt.get();
+        if (start - last >= 0 && decreasedAt.compareAndSet(last, end)) {
+          decrease();
+        }
+      } else if (inUse * 2 >= limit()) {
+        increase();
+      }
+    }
+
+    private void increase() {
+      long bits;
+      double limit;
+      do {
+        bits = limitBits.get();
+        limit = Double.longBitsToDouble(bits);
+      } while (limit < maxLimit && !limitBits.compareAndSet(bits,
+          Double.doubleToRawLongBits(Math.min(maxLimit, limit + 1 / limit))));
+    }
+
+    private void decrease() {
+      long bits;
+      double limit;
+      do {
+        bits = limitBits.get();
+        limit = Double.longBitsToDouble(bits);
+      } while (limit > minLimit && !limitBits.compareAndSet(bits,
+          Double.doubleToRawLongBits(Math.max(minLimit, limit * backoffRatio))));
+    }
+  }
+}
@@ -0,0 +1,89 @@
+package com.db.awmd.challenge.web;
+
+import com.db.awmd.challenge.domain.TransferInstruction;
+import com.db.awmd.challenge.domain.TransferStatus;
+import com.db.awmd.challenge.domain.TransferStatus.State;
+import com.db.awmd.challenge.exception.TransferQueueFullException;
+import com.db.awmd.challenge.service.AsyncTransferService;
+import java.net.URI;
+import java.util.concurrent.CompletableFuture;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
+
+/**
+ * Asynchronous transfers: a submission is queued and answered with 202 Accepted and the transfer
+ * id, and the outcome is polled afterwards. With {@code wait-ms} the poll is held open until the
+ * transfer finishes or the wait expires, without occupying a request thread meanwhile.
+ */
+@RestController
+@RequestMapping("/v1/transfers")
+@Slf4j
+public class TransfersController {
+
+  private final AsyncTransferService asyncTransferService;
+
+  private final long maxWaitMillis;
+
+  @Autowired
+  public TransfersController(AsyncTransferService asyncTransferService,
+      @Value("${accounts.async-transfers.max-wait-ms:30000}") long maxWaitMillis) {
+    this.asyncTransferService = asyncTransferService;
+    this.maxWaitMillis = maxWaitMillis;
+  }
+
+  @PostMapping(consumes = MediaType.APPLICATION_JSON_VALUE)
+  public ResponseEntity<Object> submitTransfer(@RequestBody TransferInstruction transfer) {
+    if (transfer.getFromAccountId() == null || transfer.getToAccountId() == null
+        || transfer.getAmount() == null) {
+      return new ResponseEntity<>("From account, to account and amount are required.",
+          HttpStatus.BAD_REQUEST);
+    }
+    try {
+      TransferStatus status = asyncTransferService.submit(transfer);
+      return ResponseEntity.accepted()
+          .location(URI.create("/v1/transfers/" + status.getTransferId()))
+          .body(status);
+    } catch (TransferQueueFullException e) {
+      return new ResponseEntity<>(e.getMessage(), HttpStatus.SERVICE_UNAVAILABLE);
+    }
+  }
+
+  @GetMapping(path = "/{transferId}")
+  public DeferredResult<ResponseEntity<Object>> getTransfer(@PathVariable String transferId,
+      @RequestParam(name = "wait-ms", defaultValue = "0") long waitMillis) {
+    TransferStatus status = asyncTransferService.getStatus(transferId);
+    if (status == null) {
+      return completed(new ResponseEntity<>("Transfer " + transferId + " is unknown.",
+          HttpStatus.NOT_FOUND));
+    }
+    if (waitMillis <= 0 || status.getState() != State.PENDING) {
+      return completed(new ResponseEntity<>(status, HttpStatus.OK));
+    }
+    DeferredResult<ResponseEntity<Object>> result = new DeferredResult<>(
+        Math.min(waitMillis, maxWaitMillis), new ResponseEntity<Object>(status, HttpStatus.OK));
+    CompletableFuture<TransferStatus> outcome = asyncTransferService.getOutcome(transferId);
+    if (outcome != null) {
+      outcome.thenAccept(done -> result.setResult(new ResponseEntity<>(done, HttpStatus.OK)));
+    }
+    return result;
+  }
+
+  private static DeferredResult<ResponseEntity<Object>> completed(
+      ResponseEntity<Object> response) {
+    DeferredResult<ResponseEntity<Object>> result = new DeferredResult<>();
+    result.setResult(response);
+    return result;
+  }
+}
@@ -3,20 +3,28 @@ package com.db.awmd.challenge;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.fail;
 import static org.junit.Assert.assertEquals;
+import static org.hamcrest.Matchers.endsWith;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 import static org.springframework.test.web.servlet.setup.MockMvcBuilders.webAppContextSetup;
 
 import com.db.awmd.challenge.domain.Account;
 import com.db.awmd.challenge.domain.Transfer;
+import com.db.awmd.challenge.domain.TransferInstruction;
 import com.db.awmd.challenge.service.AccountsService;
 import com.db.awmd.challenge.service.NotificationService;
 import com.db.awmd.challenge.web.AccountsController;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.List;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -27,6 +35,7 @@ import org.springframework.http.MediaType;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.context.web.WebAppConfiguration;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.web.context.WebApplicationContext;
 
 @RunWith(SpringRunner.class)
@@ -196,4 +205,241 @@ public class AccountsControllerTest {
         .andExpect(status().isBadRequest())
         .andExpect(content().string("Transfer amount must be greater than 0."));
   }
+
+  @Test
+  public void transferBatch_allOrNothingAppliesNothingOnFailure() throws Exception {
+    this.accountsService.createAccount(TestUtil.getAccount("ID-123", new BigDecimal("100")));
+    this.accountsService.createAccount(TestUtil.getAccount("ID-456", new BigDecimal("100")));
+    List<TransferInstruction> transfers = Arrays.asList(
+        new TransferInstruction("ID-123", "ID-456", new BigDecimal("60")),
+        new TransferInstruction("ID-123", "ID-456", new BigDecimal("60")));
+
+    this.mockMvc.perform(post("/v1/accounts/transfers/batch")
+        .contentType(MediaType.APPLICATION_JSON)
+        .content(objectMapper.writeValueAsString(transfers)))
+        .andExpect(status().isBadRequest())
+        .andExpect(jsonPath("$.applied").value(0))
+        .andExpect(jsonPath("$.results[0].status").value("NOT_APPLIED"))
+        .andExpect(jsonPath("$.results[1].message")
+            .value("Insufficient Balance in account:ID-123"));
+
+    assertThat(accountsService.getAccount("ID-123").getBalance()).isEqualByComparingTo("100");
+    assertThat(accountsService.getAccount("ID-456").getBalance()).isEqualByComparingTo("100");
+  }
+
+  @Test
+  public void transferBatch_bestEffortAppliesValidTransfers() throws Exception {
+    this.accountsService.createAccount(TestUtil.getAccount("ID-123", new BigDecimal("100")));
+    this.accountsService.createAccount(TestUtil.getAccount("ID-456", new BigDecimal("100")));
+    List<TransferInstruction> transfers = Arrays.asList(
+        new TransferInstruction("ID-123", "ID-456", new BigDecimal("60")),
+        new TransferInstruction("ID-123", "ID-789", new BigDecimal("10")),
+        new TransferInstruction("ID-456", "ID-123", new BigDecimal("160")));
+
+    this.mockMvc.perform(post("/v1/accounts/transfers/batch?mode=BEST_EFFORT")
+        .contentType(MediaType.APPLICATION_JSON)
+        .content(objectMapper.writeValueAsString(transfers)))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.applied").value(2))
+        .andExpect(jsonPath("$.results[1].message").value("Account ID-789 does not exist."));
+
+    assertThat(accountsService.getAccount("ID-123").getBalance()).isEqualByComparingTo("200");
+    assertThat(accountsService.getAccount("ID-456").getBalance()).isEqualByComparingTo("0");
+  }
+
+  @Test
+  public void totalBalance() throws Exception {
+    this.accountsService.createAccount(TestUtil.getAccount("ID-123", new BigDecimal("100")));
+    this.accountsService.createAccount(TestUtil.getAccount("ID-456", new BigDecimal("50")));
+    this.accountsService.transferAmount("ID-123", "ID-456", new BigDecimal("30"));
+
+    this.mockMvc.perform(get("/v1/accounts/total-balance"))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.mode").value("RUNNING"))
+        .andExpect(jsonPath("$.totalBalance").value(150));
+    this.mockMvc.perform(get("/v1/accounts/total-balance?mode=AUDIT"))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.mode").value("AUDIT"))
+        .andExpect(jsonPath("$.totalBalance").value(150));
+  }
+
+  @Test
+  public void getTransactions() throws Exception {
+    this.accountsService.createAccount(TestUtil.getAccount("ID-TX-1", new BigDecimal("100")));
+    this.accountsService.createAccount(TestUtil.getAccount("ID-TX-2", new BigDecimal("100")));
+    this.accountsService.transferAmount("ID-TX-1", "ID-TX-2", new BigDecimal("30"));
+    this.accountsService.transferAmount("ID-TX-2", "ID-TX-1", new BigDecimal("10"));
+
+    this.mockMvc.perform(get("/v1/accounts/ID-TX-1/transactions?limit=1"))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.transactions[0].amount").value(10))
+        .andExpect(jsonPath("$.transactions[0].counterpartyAccountId").value("ID-TX-2"))
+        .andExpect(jsonPath("$.nextCursor").value(1));
+    this.mockMvc.perform(get("/v1/accounts/ID-TX-1/transactions?limit=1&before=1"))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.transactions[0].amount").value(-30))
+        .andExpect(jsonPath("$.nextCursor").doesNotExist());
+    this.mockMvc.perform(get("/v1/accounts/ID-TX-3/transactions"))
+        .andExpect(status().isBadRequest());
+  }
+
+  @Test
+  public void metricsCountTransfersAndFailures() throws Exception {
+    this.accountsService.createAccount(TestUtil.getAccount("ID-123", new BigDecimal("10")));
+    this.accountsService.createAccount(TestUtil.getAccount("ID-456", new BigDecimal("10")));
+    this.mockMvc.perform(post("/v1/accounts/ID-123/transfer")
+        .contentType(MediaType.APPLICATION_JSON)
+        .content("{\"toAccountId\":\"ID-456\",\"amount\":11}"))
+        .andExpect(status().isBadRequest());
+
+    this.mockMvc.perform(get("/v1/metrics"))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.transfers.latency.count").isNumber())
+        .andExpect(jsonPath("$.transfers.failures.InsufficientBalanceException").isNumber())
+        .andExpect(jsonPath("$.repository.createAccount.count").isNumber())
+        .andExpect(jsonPath("$.locks.waitTime.count").isNumber())
+        .andExpect(jsonPath("$.admission.limit").isNumber())
+        .andExpect(jsonPath("$.admission.rejectedPerAccount").isNumber())
+        .andExpect(jsonPath("$.notifications.deliveryLatency.p99").isNumber());
+  }
+
+  @Test
+  public void transferMoney_replayedIdempotencyKeyTransfersOnce() throws Exception {
+    this.accountsService.createAccount(TestUtil.getAccount("ID-123", new BigDecimal("100")));
+    this.accountsService.createAccount(TestUtil.getAccount("ID-456", new BigDecimal("100")));
+    for (int i = 0; i < 2; i++) {
+      this.mockMvc.perform(post("/v1/accounts/ID-123/transfer")
+          .header("Idempotency-Key", "transfer-ID-123-1")
+          .contentType(MediaType.APPLICATION_JSON)
+          .content("{\"toAccountId\":\"ID-456\",\"amount\":30}"))
+          .andExpect(status().isOk());
+    }
+    this.mockMvc.perform(post("/v1/accounts/ID-123/transfer")
+        .header("Idempotency-Key", "transfer-ID-123-1")
+        .contentType(MediaType.APPLICATION_JSON)
+        .content("{\"toAccountId\":\"ID-456\",\"amount\":30.00}"))
+        .andExpect(status().isOk());
+    this.mockMvc.perform(post("/v1/accounts/ID-123/transfer")
+        .header("Idempotency-Key", "transfer-ID-123-1")
+        .contentType(MediaType.APPLICATION_JSON)
+        .content("{\"toAccountId\":\"ID-456\",\"amount\":40}"))
+        .andExpect(status().isUnprocessableEntity());
+
+    assertThat(accountsService.getAccount("ID-123").getBalance()).isEqualByComparingTo("70");
+    assertThat(accountsService.getAccount("ID-456").getBalance()).isEqualByComparingTo("130");
+  }
+
+  @Test
+  public void getAccount_returnsVersionAsEtag() throws Exception {
+    this.accountsService.createAccount(TestUtil.getAccount("ID-123", new BigDecimal("100")));
+    this.accountsService.createAccount(TestUtil.getAccount("ID-456", new BigDecimal("100")));
+    String etag = this.mockMvc.perform(get("/v1/accounts/ID-123"))
+        .andExpect(status().isOk())
+        .andExpect(header().string("ETag", endsWith(".0\"")))
+        .andReturn().getResponse().getHeader("ETag");
+    this.mockMvc.perform(get("/v1/accounts/ID-123").header("If-None-Match", etag))
+        .andExpect(status().isNotModified());
+
+    this.accountsService.transferAmount("ID-123", "ID-456", new BigDecimal("30"));
+
+    this.mockMvc.perform(get("/v1/accounts/ID-123").header("If-None-Match", etag))
+        .andExpect(status().isOk())
+        .andExpect(header().string("ETag", etag.replace(".0\"", ".1\"")))
+        .andExpect(content().string("{\"accountId\":\"ID-123\",\"balance\":70}"));
+  }
+
+  @Test
+  public void getAccount_etagChangesWhenAccountIsCreatedAgain() throws Exception {
+    this.accountsService.createAccount(TestUtil.getAccount("ID-123", new BigDecimal("100")));
+    String etag = this.mockMvc.perform(get("/v1/accounts/ID-123"))
+        .andReturn().getResponse().getHeader("ETag");
+
+    this.accountsService.getAccountsRepository().clearAccounts();
+    this.accountsService.createAccount(TestUtil.getAccount("ID-123", new BigDecimal("5")));
+
+    this.mockMvc.perform(get("/v1/accounts/ID-123").header("If-None-Match", etag))
+        .andExpect(status().isOk())
+        .andExpect(content().string("{\"accountId\":\"ID-123\",\"balance\":5}"));
+  }
+
+  @Test
+  public void importAccounts_ndjsonReportsInvalidAndDuplicateLines() throws Exception {
+    this.accountsService.createAccount(TestUtil.getAccount("Id-2", new BigDecimal("5")));
+    this.mockMvc.perform(post("/v1/accounts/bulk").contentType("application/x-ndjson")
+        .content("{\"accountId\":\"Id-1\",\"balance\":100}\n"
+            + "{\"accountId\":\"Id-2\",\"balance\":200}\n"
+            + "\n"
+            + "{\"accountId\":\"Id-3\",\"balance\":-1}\n"
+            + "not json\n"
+            + "{\"accountId\":\"Id-4\",\"balance\":300.50}\n"))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.imported").value(2))
+        .andExpect(jsonPath("$.rejected").value(3))
+        .andExpect(jsonPath("$.errors[0].line").value(2))
+        .andExpect(jsonPath("$.errors[0].message").value("Account id Id-2 already exists!"))
+        .andExpect(jsonPath("$.errors[1].line").value(4))
+        .andExpect(jsonPath("$.errors[2].line").value(5));
+
+    assertThat(accountsService.getAccount("Id-2").getBalance()).isEqualByComparingTo("5");
+    assertThat(accountsService.getAccount("Id-4").getBalance()).isEqualByComparingTo("300.50");
+    assertThat(accountsService.totalBalance()).isEqualByComparingTo("405.50");
+  }
+
+  @Test
+  public void importAccounts_csvWithHeader() throws Exception {
+    this.mockMvc.perform(post("/v1/accounts/bulk").contentType("text/csv")
+        .content("accountId,balance\nId-1,100\nId-2, 200\n"))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.imported").value(2))
+        .andExpect(jsonPath("$.rejected").value(0));
+
+    assertThat(accountsService.getAccount("Id-2").getBalance()).isEqualByComparingTo("200");
+  }
+
+  @Test
+  public void exportAccounts_streamsEveryAccount() throws Exception {
+    this.accountsService.createAccount(TestUtil.getAccount("Id-1", new BigDecimal("100")));
+    this.accountsService.createAccount(TestUtil.getAccount("Id,2", new BigDecimal("20.50")));
+
+    MvcResult export = this.mockMvc.perform(get("/v1/accounts/export").param("format", "CSV")
+        .param("consistent", "true")).andExpect(request().asyncStarted()).andReturn();
+    export.getAsyncResult();
+    this.mockMvc.perform(asyncDispatch(export)).andExpect(status().isOk());
+    String csv = export.getResponse().getContentAsString();
+    assertThat(csv.split("\n")).containsExactlyInAnyOrder("accountId,balance", "Id-1,100",
+        "\"Id,2\",20.50");
+
+    export = this.mockMvc.perform(get("/v1/accounts/export"))
+        .andExpect(request().asyncStarted()).andReturn();
+    export.getAsyncResult();
+    String ndjson = export.getResponse().getContentAsString();
+    assertThat(ndjson.split("\n")).containsExactlyInAnyOrder(
+        "{\"accountId\":\"Id-1\",\"balance\":100}",
+        "{\"accountId\":\"Id,2\",\"balance\":20.50}");
+  }
+
+  @Test
+  public void importAccounts_readsIdsQuotedByExport() throws Exception {
+    this.accountsService.createAccount(TestUtil.getAccount("Id,1", new BigDecimal("10")));
+    this.accountsService.createAccount(TestUtil.getAccount("Id \"2\"", new BigDecimal("20")));
+    this.accountsService.createAccount(TestUtil.getAccount("Id\n3", new BigDecimal("30")));
+
+    MvcResult export = this.mockMvc.perform(get("/v1/accounts/export").param("format", "CSV")
+        .param("consistent", "true")).andExpect(request().asyncStarted()).andReturn();
+    export.getAsyncResult();
+    String csv = export.getResponse().getContentAsString();
+    this.accountsService.getAccountsRepository().clearAccounts();
+
+    this.mockMvc.perform(post("/v1/accounts/bulk").contentType("text/csv")
+        .content(csv + "Id-4,40\n\"Id-5,50\n"))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.imported").value(4))
+        .andExpect(jsonPath("$.rejected").value(1))
+        .andExpect(jsonPath("$.errors[0].line").value(7));
+
+    assertThat(accountsService.getAccount("Id,1").getBalance()).isEqualByComparingTo("10");
+    assertThat(accountsService.getAccount("Id \"2\"").getBalance()).isEqualByComparingTo("20");
+    assertThat(accountsService.getAccount("Id\n3").getBalance()).isEqualByComparingTo("30");
+    assertThat(accountsService.getAccount("Id-4").getBalance()).isEqualByComparingTo("40");
+  }
 }
@@ -0,0 +1,90 @@
+package com.db.awmd.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.MinorUnits;
+import com.db.awmd.challenge.exception.InsufficientBalanceException;
+import com.db.awmd.challenge.exception.InvalidAmountException;
+import com.db.awmd.challenge.repository.AccountsRepositoryFixedPoint;
+import java.math.BigDecimal;
+import org.junit.Test;
+
+public class AccountsRepositoryFixedPointTest {
+
+  private final AccountsRepositoryFixedPoint repository =
+      new AccountsRepositoryFixedPoint(MinorUnits.forCurrency("EUR"));
+
+  @Test
+  public void creditsAndDebitsAreExact() throws Exception {
+    repository.createAccount(new Account("Id-123", new BigDecimal("100.10")));
+    repository.addAmount("Id-123", new BigDecimal("0.20"));
+    repository.withdrawAmount("Id-123", new BigDecimal("50.3"));
+
+    assertThat(repository.getAccount("Id-123").getBalance()).isEqualTo(new BigDecimal("50.00"));
+    assertThat(repository.sumBalances()).isEqualTo(new BigDecimal("50.00"));
+  }
+
+  @Test
+  public void runningTotalMatchesSumWhenDebitsAndCreditsArePaired() throws Exception {
+    repository.createAccount(new Account("Id-123", new BigDecimal("100.10")));
+    repository.createAccount(new Account("Id-456", new BigDecimal("0.90")));
+    repository.withdrawAmount("Id-123", new BigDecimal("50.3"));
+    repository.addAmount("Id-456", new BigDecimal("50.3"));
+
+    assertThat(repository.sumBalances()).isEqualTo(new BigDecimal("101.00"));
+    assertThat(repository.totalBalance()).isEqualTo(repository.sumBalances());
+  }
+
+  @Test
+  public void rejectsAmountsFinerThanScale() throws Exception {
+    repository.createAccount(new Account("Id-123", new BigDecimal("100")));
+    assertThat(repository.isRepresentable(new BigDecimal("0.010"))).isTrue();
+    assertThat(repository.isRepresentable(new BigDecimal("0.001"))).isFalse();
+    try {
+      repository.addAmount("Id-123", new BigDecimal("0.001"));
+      fail("Should have rejected an amount that needs rounding");
+    } catch (InvalidAmountException ex) {
+      assertThat(ex.getMessage()).isEqualTo("Amount 0.001 can not be represented with scale 2.");
+    }
+    assertThat(repository.getAccount("Id-123").getBalance()).isEqualTo(new BigDecimal("100.00"));
+  }
+
+  @Test
+  public void rejectsOverflow() throws Exception {
+    repository.createAccount(new Account("Id-123", MinorUnits.forCurrency("EUR")
+        .toDecimal(Long.MAX_VALUE)));
+    try {
+      repository.addAmount("Id-123", new BigDecimal("0.01"));
+      fail("Should have failed on overflow");
+    } catch (InvalidAmountException ex) {
+      assertThat(ex.getMessage()).isEqualTo("Balance overflow.");
+    }
+  }
+
+  @Test
+  public void createFailsWithoutAddingAccountWhenTotalOverflows() throws Exception {
+    repository.createAccount(new Account("Id-123", MinorUnits.forCurrency("EUR")
+        .toDecimal(Long.MAX_VALUE)));
+    try {
+      repository.createAccount(new Account("Id-456", new BigDecimal("0.01")));
+      fail("Should have failed on overflow");
+    } catch (InvalidAmountException ex) {
+      assertThat(ex.getMessage()).isEqualTo("Balance overflow.");
+    }
+    assertThat(repository.findAccountSnapshot("Id-456")).isNull();
+    assertThat(repository.totalBalance()).isEqualTo(repository.sumBalances());
+  }
+
+  @Test
+  public void withdrawFailsOnInsufficientBalance() throws Exception {
+    repository.createAccount(new Account("Id-123", new BigDecimal("1.00")));
+    try {
+      repository.withdrawAmount("Id-123", new BigDecimal("1.01"));
+      fail("Should have failed on insufficient balance");
+    } catch (InsufficientBalanceException ex) {
+      assertThat(ex.getMessage()).isEqualTo("Insufficient Balance in account:Id-123");
+    }
+  }
+}
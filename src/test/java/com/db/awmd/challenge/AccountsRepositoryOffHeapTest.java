@@ -0,0 +1,92 @@
+package com.db.awmd.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.MinorUnits;
+import com.db.awmd.challenge.exception.DuplicateAccountIdException;
+import com.db.awmd.challenge.exception.InvalidAmountException;
+import com.db.awmd.challenge.repository.AccountsRepositoryOffHeap;
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.Map;
+import javax.security.auth.login.AccountNotFoundException;
+import org.junit.Test;
+
+public class AccountsRepositoryOffHeapTest {
+
+  private final AccountsRepositoryOffHeap repository =
+      new AccountsRepositoryOffHeap(MinorUnits.forCurrency("EUR"), 1000, 4, 2);
+
+  @Test
+  public void createFailsWithoutAddingAccountWhenTotalOverflows() throws Exception {
+    repository.createAccount(new Account("Id-123", MinorUnits.forCurrency("EUR")
+        .toDecimal(Long.MAX_VALUE)));
+    try {
+      repository.createAccount(new Account("Id-456", new BigDecimal("0.01")));
+      fail("Should have failed on overflow");
+    } catch (InvalidAmountException ex) {
+      assertThat(ex.getMessage()).isEqualTo("Balance overflow.");
+    }
+    assertThat(repository.findAccountSnapshot("Id-456")).isNull();
+    try {
+      repository.createAccount(new Account("Id-123", BigDecimal.ZERO));
+      fail("Should have failed on duplicate id");
+    } catch (DuplicateAccountIdException ex) {
+      assertThat(repository.totalBalance()).isEqualTo(repository.sumBalances());
+    }
+  }
+
+  @Test
+  public void storesAndUpdatesManyAccounts() throws Exception {
+    for (int i = 0; i < 1000; i++) {
+      repository.createAccount(new Account("account-" + i, new BigDecimal("10.50")));
+    }
+    repository.withdrawAmount("account-7", new BigDecimal("0.50"));
+    repository.addAmount("account-999", new BigDecimal("0.50"));
+
+    assertThat(repository.getAccount("account-7").getBalance())
+        .isEqualTo(new BigDecimal("10.00"));
+    assertThat(repository.getAccount("account-999").getBalance())
+        .isEqualTo(new BigDecimal("11.00"));
+    assertThat(repository.totalBalance()).isEqualTo(new BigDecimal("10500.00"));
+  }
+
+  @Test
+  public void rejectsDuplicateAccount() {
+    repository.createAccount(new Account("Id-123", BigDecimal.ONE));
+    try {
+      repository.createAccount(new Account("Id-123", BigDecimal.ONE));
+      fail("Should have failed when adding duplicate account");
+    } catch (DuplicateAccountIdException ex) {
+      assertThat(ex.getMessage()).isEqualTo("Account id Id-123 already exists!");
+    }
+  }
+
+  @Test
+  public void clearRemovesAllAccounts() throws Exception {
+    repository.createAccount(new Account("Id-123", BigDecimal.ONE));
+    repository.clearAccounts();
+    try {
+      repository.getAccount("Id-123");
+      fail("Should have failed with AccountNotFoundException");
+    } catch (AccountNotFoundException ex) {
+      assertThat(ex.getMessage()).isEqualTo("Account Id-123 does not exist.");
+    }
+    repository.createAccount(new Account("Id-123", BigDecimal.TEN));
+    assertThat(repository.totalBalance()).isEqualTo(new BigDecimal("10.00"));
+  }
+
+  @Test
+  public void forEachAccountVisitsEveryAccount() {
+    for (int i = 0; i < 100; i++) {
+      repository.createAccount(new Account("account-" + i, new BigDecimal(i + ".25")));
+    }
+    Map<String, BigDecimal> visited = new HashMap<>();
+    repository.forEachAccount(visited::put);
+
+    assertThat(visited).hasSize(100);
+    assertThat(visited.get("account-42")).isEqualTo(new BigDecimal("42.25"));
+  }
+}
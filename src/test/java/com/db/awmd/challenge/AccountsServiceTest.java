@@ -4,15 +4,24 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.Assert.fail;
 
 import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.BatchMode;
+import com.db.awmd.challenge.domain.BatchTransferResult;
+import com.db.awmd.challenge.domain.TransferInstruction;
+import com.db.awmd.challenge.domain.TransferOutcome;
+import com.db.awmd.challenge.domain.TransferResult.Status;
 import com.db.awmd.challenge.exception.DuplicateAccountIdException;
 import com.db.awmd.challenge.exception.InsufficientBalanceException;
 import com.db.awmd.challenge.repository.AccountsRepository;
 import com.db.awmd.challenge.service.AccountsService;
 import com.db.awmd.challenge.service.NotificationService;
+import com.sun.management.ThreadMXBean;
+import java.lang.management.ManagementFactory;
 import java.math.BigDecimal;
+import java.util.Arrays;
 import javax.security.auth.login.AccountNotFoundException;
 import org.junit.After;
 import org.junit.Assert;
+import org.junit.Assume;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -80,7 +89,7 @@ public class AccountsServiceTest {
       Assert.assertEquals(toAccountResult.getBalance()
           .compareTo(new BigDecimal(340)),0);
 
-      Mockito.verify(notificationService, Mockito.times(2))
+      Mockito.verify(notificationService, Mockito.timeout(1000).times(2))
           .notifyAboutTransfer(Mockito.any(Account.class),Mockito.anyString());
     } catch (AccountNotFoundException e) {
       fail("It should have transferred the money from one account to another.");
@@ -104,7 +113,7 @@ public class AccountsServiceTest {
       Assert.assertEquals(result.getBalance()
           .compareTo(BigDecimal.ZERO),0);
 
-      Mockito.verify(notificationService, Mockito.times(2))
+      Mockito.verify(notificationService, Mockito.timeout(1000).times(2))
           .notifyAboutTransfer(Mockito.any(Account.class),Mockito.anyString());
 
     } catch (AccountNotFoundException e) {
@@ -156,6 +165,75 @@ public class AccountsServiceTest {
     }
   }
 
+  @Test
+  public void rejectedTransfers_allocateNothing() throws Exception {
+    ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+    Assume.assumeTrue(threads.isThreadAllocatedMemorySupported());
+    this.accountsService.createAccount(new Account("Id-From", new BigDecimal("10")));
+    this.accountsService.createAccount(new Account("Id-To", new BigDecimal("10")));
+    BigDecimal tooMuch = new BigDecimal("11");
+    int iterations = 20000;
+    rejectAll(iterations, tooMuch);
+
+    long threadId = Thread.currentThread().getId();
+    long before = threads.getThreadAllocatedBytes(threadId);
+    int unexpected = rejectAll(iterations, tooMuch);
+    long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+
+    assertThat(unexpected).isZero();
+    // the smallest object takes 16 bytes, so less than a byte per transfer means none at all
+    assertThat(allocated).isLessThan(iterations * 4L);
+    assertThat(this.accountsService.getAccount("Id-From").getBalance())
+        .isEqualByComparingTo("10");
+  }
+
+  @Test
+  public void transferBatch_selfTransferDoesNotFundLaterTransfers() throws Exception {
+    accountsService.createAccount(new Account("Id-A", new BigDecimal("100")));
+    accountsService.createAccount(new Account("Id-B", BigDecimal.ZERO));
+
+    BatchTransferResult result = accountsService.transferBatch(Arrays.asList(
+        new TransferInstruction("Id-A", "Id-A", new BigDecimal("50")),
+        new TransferInstruction("Id-A", "Id-B", new BigDecimal("140"))),
+        BatchMode.ALL_OR_NOTHING);
+
+    assertThat(result.getApplied()).isZero();
+    assertThat(result.getResults().get(1).getStatus()).isEqualTo(Status.REJECTED);
+    assertThat(accountsService.getAccount("Id-A").getBalance()).isEqualByComparingTo("100");
+    assertThat(accountsService.getAccount("Id-B").getBalance()).isEqualByComparingTo("0");
+
+    result = accountsService.transferBatch(Arrays.asList(
+        new TransferInstruction("Id-A", "Id-A", new BigDecimal("50")),
+        new TransferInstruction("Id-A", "Id-B", new BigDecimal("60"))),
+        BatchMode.ALL_OR_NOTHING);
+
+    assertThat(result.getApplied()).isEqualTo(2);
+    assertThat(accountsService.getAccount("Id-A").getBalance()).isEqualByComparingTo("40");
+    assertThat(accountsService.getAccount("Id-B").getBalance()).isEqualByComparingTo("60");
+  }
+
+  private int rejectAll(int iterations, BigDecimal tooMuch) throws AccountNotFoundException {
+    int unexpected = 0;
+    for (int i = 0; i < iterations; i++) {
+      if (accountsService.tryTransfer("Id-From", "Id-To", tooMuch)
+          != TransferOutcome.INSUFFICIENT_BALANCE) {
+        unexpected++;
+      }
+      if (accountsService.tryTransfer("Id-None", "Id-To", BigDecimal.ONE)
+          != TransferOutcome.FROM_ACCOUNT_NOT_FOUND) {
+        unexpected++;
+      }
+      if (accountsService.tryTransfer("Id-From", "Id-None", BigDecimal.ONE)
+          != TransferOutcome.TO_ACCOUNT_NOT_FOUND) {
+        unexpected++;
+      }
+      if (accountsService.tryTransfer("Id-From", "Id-To", BigDecimal.ZERO)
+          != TransferOutcome.INVALID_AMOUNT) {
+        unexpected++;
+      }
+    }
+    return unexpected;
+  }
 
   @Before
   public void clearAll(){
@@ -0,0 +1,211 @@
+package com.db.awmd.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+import com.db.awmd.challenge.cluster.ClusterRouter;
+import com.db.awmd.challenge.cluster.ConsistentHashRing;
+import com.db.awmd.challenge.cluster.TwoPhaseTransferService;
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.exception.InvalidAmountException;
+import com.db.awmd.challenge.service.AccountsService;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import javax.security.auth.login.AccountNotFoundException;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.web.client.DefaultResponseErrorHandler;
+import org.springframework.web.client.RestTemplate;
+
+/**
+ * Runs three partitioned nodes on localhost ports.
+ */
+public class ClusterTest {
+
+  private static final int NODES = 3;
+
+  private static final List<String> urls = new ArrayList<>();
+
+  private static final List<ConfigurableApplicationContext> contexts = new ArrayList<>();
+
+  private static final RestTemplate client = new RestTemplate();
+
+  @BeforeClass
+  public static void startNodes() throws IOException {
+    for (int i = 0; i < NODES; i++) {
+      try (ServerSocket socket = new ServerSocket(0)) {
+        urls.add("http://localhost:" + socket.getLocalPort());
+      }
+    }
+    for (String url : urls) {
+      contexts.add(SpringApplication.run(DevChallengeApplication.class,
+          "--server.port=" + url.substring(url.lastIndexOf(':') + 1),
+          "--spring.jmx.enabled=false",
+          "--accounts.cluster.enabled=true",
+          "--accounts.cluster.self=" + url,
+          "--accounts.cluster.nodes=" + String.join(",", urls),
+          "--accounts.cluster.in-doubt-timeout-ms=200",
+          "--accounts.cluster.recovery-interval-ms=100"));
+    }
+    client.setErrorHandler(new DefaultResponseErrorHandler() {
+      @Override
+      public boolean hasError(ClientHttpResponse response) {
+        return false;
+      }
+    });
+  }
+
+  @AfterClass
+  public static void stopNodes() {
+    contexts.forEach(ConfigurableApplicationContext::close);
+  }
+
+  @Test
+  public void ring_movesFewKeysWhenANodeJoins() {
+    ConsistentHashRing three = new ConsistentHashRing(Arrays.asList("a", "b", "c"), 128);
+    ConsistentHashRing four = new ConsistentHashRing(Arrays.asList("a", "b", "c", "d"), 128);
+    int moved = 0;
+    int onD = 0;
+    for (int i = 0; i < 10000; i++) {
+      String key = "Id-" + i;
+      String owner = four.nodeFor(key);
+      if (!owner.equals(three.nodeFor(key))) {
+        moved++;
+        assertThat(owner).isEqualTo("d");
+      }
+      if (owner.equals("d")) {
+        onD++;
+      }
+    }
+    assertThat(moved).isEqualTo(onD).isBetween(1500, 3500);
+  }
+
+  @Test
+  public void accountsAreOwnedByOneNodeAndReadableFromAny() throws Exception {
+    for (int i = 0; i < 30; i++) {
+      String accountId = "Read-" + i;
+      assertThat(createAccount(0, accountId, "100").getStatusCode())
+          .isEqualTo(HttpStatus.CREATED);
+
+      ResponseEntity<Account> account = client.getForEntity(
+          urls.get(1) + "/v1/accounts/" + accountId, Account.class);
+      assertThat(account.getStatusCode()).isEqualTo(HttpStatus.OK);
+      assertThat(account.getBody().getAccountId()).isEqualTo(accountId);
+      assertThat(account.getHeaders().getETag()).isNotNull();
+
+      int holders = 0;
+      for (ConfigurableApplicationContext context : contexts) {
+        try {
+          context.getBean(AccountsService.class).getAccount(accountId);
+          holders++;
+        } catch (AccountNotFoundException ex) {
+          // held elsewhere
+        }
+      }
+      assertThat(holders).isEqualTo(1);
+    }
+    assertThat(createAccount(2, "Read-0", "1").getStatusCode())
+        .isEqualTo(HttpStatus.BAD_REQUEST);
+  }
+
+  @Test
+  public void crossPartitionTransfer_commitsOrRefunds() throws Exception {
+    String from = "Cross-From";
+    String to = idOwnedElsewhere(from, "Cross-To-");
+    String unknown = idOwnedElsewhere(from, "Cross-Unknown-");
+    createAccount(0, from, "100");
+    createAccount(1, to, "10");
+
+    assertThat(transfer(2, from, to, "30").getStatusCode()).isEqualTo(HttpStatus.OK);
+    assertThat(balanceOf(from)).isEqualByComparingTo("70");
+    assertThat(balanceOf(to)).isEqualByComparingTo("40");
+
+    assertThat(transfer(0, from, to, "71").getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+    assertThat(transfer(1, from, unknown, "5").getStatusCode())
+        .isEqualTo(HttpStatus.BAD_REQUEST);
+    assertThat(balanceOf(from)).isEqualByComparingTo("70");
+    assertThat(balanceOf(to)).isEqualByComparingTo("40");
+
+    TwoPhaseTransferService coordinator = contexts.get(urls.indexOf(ownerOf(from)))
+        .getBean(TwoPhaseTransferService.class);
+    try {
+      coordinator.transfer(from, to, new BigDecimal("-5"));
+      fail("Expected a negative amount to be rejected");
+    } catch (InvalidAmountException expected) {
+      assertThat(balanceOf(from)).isEqualByComparingTo("70");
+    }
+    assertThat(coordinator.getCommitted()).isGreaterThanOrEqualTo(1);
+    assertThat(coordinator.getUnacknowledged()).isZero();
+  }
+
+  @Test
+  public void inDoubtTransfer_unknownToCoordinatorIsPresumedAborted() throws Exception {
+    String to = "InDoubt-To";
+    createAccount(0, to, "10");
+    String participant = ownerOf(to);
+    String coordinator = urls.get((urls.indexOf(participant) + 1) % NODES);
+    HttpHeaders headers = new HttpHeaders();
+    headers.setContentType(MediaType.APPLICATION_JSON);
+
+    ResponseEntity<String> prepared = client.postForEntity(
+        participant + "/internal/transfers/lost-1/prepare?coordinator=" + coordinator,
+        new HttpEntity<>("{\"fromAccountId\":\"Elsewhere\",\"toAccountId\":\"" + to
+            + "\",\"amount\":5}", headers), String.class);
+    assertThat(prepared.getStatusCode()).isEqualTo(HttpStatus.OK);
+
+    TwoPhaseTransferService service = contexts.get(urls.indexOf(participant))
+        .getBean(TwoPhaseTransferService.class);
+    long deadline = System.currentTimeMillis() + 10000;
+    while (service.getInDoubt() > 0 && System.currentTimeMillis() < deadline) {
+      Thread.sleep(50);
+    }
+    assertThat(service.getInDoubt()).isZero();
+    assertThat(balanceOf(to)).isEqualByComparingTo("10");
+  }
+
+  private ResponseEntity<String> createAccount(int node, String accountId, String balance) {
+    HttpHeaders headers = new HttpHeaders();
+    headers.setContentType(MediaType.APPLICATION_JSON);
+    return client.postForEntity(urls.get(node) + "/v1/accounts", new HttpEntity<>(
+        "{\"accountId\":\"" + accountId + "\",\"balance\":" + balance + "}", headers),
+        String.class);
+  }
+
+  private ResponseEntity<String> transfer(int node, String from, String to, String amount) {
+    HttpHeaders headers = new HttpHeaders();
+    headers.setContentType(MediaType.APPLICATION_JSON);
+    return client.postForEntity(urls.get(node) + "/v1/accounts/" + from + "/transfer",
+        new HttpEntity<>("{\"toAccountId\":\"" + to + "\",\"amount\":" + amount + "}", headers),
+        String.class);
+  }
+
+  private BigDecimal balanceOf(String accountId) {
+    return client.getForObject(urls.get(0) + "/v1/accounts/" + accountId, Account.class)
+        .getBalance();
+  }
+
+  private String ownerOf(String accountId) {
+    return contexts.get(0).getBean(ClusterRouter.class).ownerOf(accountId);
+  }
+
+  private String idOwnedElsewhere(String accountId, String prefix) {
+    for (int i = 0; ; i++) {
+      if (!ownerOf(prefix + i).equals(ownerOf(accountId))) {
+        return prefix + i;
+      }
+    }
+  }
+}
@@ -0,0 +1,84 @@
+package com.db.awmd.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.AccountFormat;
+import com.db.awmd.challenge.domain.BatchMode;
+import com.db.awmd.challenge.domain.BatchTransferResult;
+import com.db.awmd.challenge.domain.BulkImportResult;
+import com.db.awmd.challenge.domain.ImportError;
+import com.db.awmd.challenge.domain.TransferInstruction;
+import com.db.awmd.challenge.domain.TransferResult.Status;
+import com.db.awmd.challenge.repository.AccountsRepository;
+import com.db.awmd.challenge.repository.AccountsRepositoryFixedPoint;
+import com.db.awmd.challenge.service.AccountImportService;
+import com.db.awmd.challenge.service.AccountsService;
+import com.db.awmd.challenge.service.NotificationService;
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.util.Arrays;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.junit4.SpringRunner;
+
+/**
+ * Runs the service against {@link AccountsRepositoryFixedPoint}, which holds two decimals for
+ * EUR.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = "accounts.repository.type=fixed-point")
+public class FixedPointAccountsServiceTest {
+
+  @Autowired
+  private AccountsService accountsService;
+
+  @Autowired
+  private AccountsRepository accountsRepository;
+
+  @Autowired
+  private AccountImportService accountImportService;
+
+  @MockBean
+  private NotificationService notificationService;
+
+  @Before
+  public void clearAccounts() {
+    accountsRepository.clearAccounts();
+  }
+
+  @Test
+  public void transferBatch_rejectsAmountFinerThanStoreBeforeApplyingAny() throws Exception {
+    accountsService.createAccount(new Account("Id-A", new BigDecimal("10.00")));
+    accountsService.createAccount(new Account("Id-B", BigDecimal.ZERO));
+
+    BatchTransferResult result = accountsService.transferBatch(Arrays.asList(
+        new TransferInstruction("Id-A", "Id-B", new BigDecimal("1.00")),
+        new TransferInstruction("Id-A", "Id-B", new BigDecimal("0.001"))),
+        BatchMode.ALL_OR_NOTHING);
+
+    assertThat(result.getApplied()).isZero();
+    assertThat(result.getResults().get(0).getStatus()).isEqualTo(Status.NOT_APPLIED);
+    assertThat(result.getResults().get(1).getStatus()).isEqualTo(Status.REJECTED);
+    assertThat(result.getResults().get(1).getMessage())
+        .isEqualTo("Transfer amount 0.001 can not be represented by the account store.");
+    assertThat(accountsService.getAccount("Id-A").getBalance()).isEqualByComparingTo("10");
+    assertThat(accountsService.getAccount("Id-B").getBalance()).isEqualByComparingTo("0");
+  }
+
+  @Test
+  public void importAccounts_rejectsOnlyBalancesFinerThanStore() throws Exception {
+    BulkImportResult result = accountImportService.importAccounts(new BufferedReader(
+        new StringReader("Id-A,1.00\nId-B,1.005\nId-C,2\n")), AccountFormat.CSV);
+
+    assertThat(result.getImported()).isEqualTo(2);
+    assertThat(result.getRejected()).isEqualTo(1);
+    assertThat(result.getErrors()).extracting(ImportError::getLine).containsExactly(2L);
+    assertThat(accountsService.getAccount("Id-C").getBalance()).isEqualByComparingTo("2");
+  }
+}
@@ -0,0 +1,107 @@
+package com.db.awmd.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.db.awmd.challenge.web.IdempotencyCache;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+public class IdempotencyCacheTest {
+
+  private final IdempotencyCache cache = new IdempotencyCache(2, 60000);
+
+  @Test
+  public void concurrentRequestsWithSameKeyRunOnce() throws Exception {
+    AtomicInteger runs = new AtomicInteger();
+    CountDownLatch start = new CountDownLatch(1);
+    ExecutorService executorService = Executors.newFixedThreadPool(8);
+    List<Future<ResponseEntity<Object>>> responses = new ArrayList<>();
+    for (int i = 0; i < 8; i++) {
+      responses.add(executorService.submit(() -> {
+        start.await();
+        return cache.execute("key-1", "fingerprint", () -> {
+          runs.incrementAndGet();
+          return new ResponseEntity<>(HttpStatus.OK);
+        });
+      }));
+    }
+    start.countDown();
+    for (Future<ResponseEntity<Object>> response : responses) {
+      assertThat(response.get().getStatusCode()).isEqualTo(HttpStatus.OK);
+    }
+    executorService.shutdown();
+
+    assertThat(runs.get()).isEqualTo(1);
+    assertThat(cache.getMisses()).isEqualTo(1);
+    assertThat(cache.getHits()).isEqualTo(7);
+  }
+
+  @Test
+  public void rejectsKeyReusedForDifferentRequest() {
+    cache.execute("key-1", "first", () -> new ResponseEntity<>(HttpStatus.OK));
+    ResponseEntity<Object> response = cache.execute("key-1", "second",
+        () -> new ResponseEntity<>(HttpStatus.OK));
+    assertThat(response.getStatusCode()).isEqualTo(HttpStatus.UNPROCESSABLE_ENTITY);
+  }
+
+  @Test
+  public void errorsAreNotRememberedAndReleaseTheKey() {
+    try {
+      cache.execute("key-1", "fingerprint", () -> {
+        throw new StackOverflowError();
+      });
+      Assert.fail("Expected the error to be rethrown");
+    } catch (StackOverflowError expected) {
+      assertThat(cache.size()).isZero();
+    }
+    ResponseEntity<Object> retry = cache.execute("key-1", "fingerprint",
+        () -> new ResponseEntity<>(HttpStatus.OK));
+    assertThat(retry.getStatusCode()).isEqualTo(HttpStatus.OK);
+  }
+
+  @Test
+  public void serverErrorsAreNotRemembered() {
+    cache.execute("key-1", "fingerprint",
+        () -> new ResponseEntity<>(HttpStatus.SERVICE_UNAVAILABLE));
+    ResponseEntity<Object> retry = cache.execute("key-1", "fingerprint",
+        () -> new ResponseEntity<>(HttpStatus.OK));
+    assertThat(retry.getStatusCode()).isEqualTo(HttpStatus.OK);
+  }
+
+  @Test
+  public void failedRequestsLeaveNothingToEvict() {
+    for (int i = 0; i < 100; i++) {
+      cache.execute("key-" + i, "fingerprint",
+          () -> new ResponseEntity<>(HttpStatus.SERVICE_UNAVAILABLE));
+      try {
+        cache.execute("error-" + i, "fingerprint", () -> {
+          throw new IllegalStateException("failed");
+        });
+        Assert.fail("Expected the exception to be rethrown");
+      } catch (IllegalStateException expected) {
+        // not remembered
+      }
+    }
+    cache.execute("key-ok", "fingerprint", () -> new ResponseEntity<>(HttpStatus.OK));
+    assertThat(cache.size()).isEqualTo(1);
+    assertThat(cache.evictionBacklog()).isEqualTo(1);
+  }
+
+  @Test
+  public void evictsOldestEntriesBeyondMaxSize() {
+    for (int i = 0; i < 5; i++) {
+      cache.execute("key-" + i, "fingerprint", () -> new ResponseEntity<>(HttpStatus.OK));
+    }
+    assertThat(cache.size()).isEqualTo(2);
+    assertThat(cache.getEvictions()).isEqualTo(3);
+  }
+}
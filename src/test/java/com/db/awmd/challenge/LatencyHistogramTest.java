@@ -0,0 +1,33 @@
+package com.db.awmd.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.db.awmd.challenge.metrics.LatencyHistogram;
+import com.db.awmd.challenge.metrics.LatencySnapshot;
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+
+  @Test
+  public void percentilesAreWithinBucketError() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    for (long micros = 1; micros <= 1000; micros++) {
+      histogram.record(micros * 1000);
+    }
+
+    LatencySnapshot snapshot = histogram.snapshot();
+
+    assertThat(snapshot.getCount()).isEqualTo(1000);
+    assertThat(snapshot.getMean()).isEqualTo(500.5);
+    assertThat(snapshot.getMax()).isEqualTo(1000.0);
+    assertThat(snapshot.getP50()).isBetween(500.0, 500 * 1.25);
+    assertThat(snapshot.getP99()).isBetween(990.0, 990 * 1.25);
+  }
+
+  @Test
+  public void emptyHistogramReportsZero() {
+    LatencySnapshot snapshot = new LatencyHistogram().snapshot();
+    assertThat(snapshot.getCount()).isZero();
+    assertThat(snapshot.getP999()).isZero();
+  }
+}
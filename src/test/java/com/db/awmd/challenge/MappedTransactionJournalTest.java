@@ -0,0 +1,115 @@
+package com.db.awmd.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.db.awmd.challenge.journal.JournalRecovery;
+import com.db.awmd.challenge.journal.MappedTransactionJournal;
+import com.db.awmd.challenge.journal.SnapshotManager;
+import com.db.awmd.challenge.repository.AccountsRepositoryInMemory;
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.math.BigDecimal;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class MappedTransactionJournalTest {
+
+  private static final int SEGMENT_SIZE = 4096;
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void replaysConcurrentAppendsAcrossSegments() throws Exception {
+    MappedTransactionJournal journal = open();
+    journal.awaitDurable(journal.appendAccountCreated("ID-123", new BigDecimal("1000")));
+    journal.awaitDurable(journal.appendAccountCreated("ID-456", new BigDecimal("0.50")));
+
+    ExecutorService executorService = Executors.newFixedThreadPool(8);
+    for (int t = 0; t < 8; t++) {
+      executorService.execute(() -> {
+        for (int i = 0; i < 100; i++) {
+          journal.awaitDurable(journal.appendTransfer("ID-123", "ID-456", new BigDecimal("0.25")));
+        }
+      });
+    }
+    executorService.shutdown();
+    executorService.awaitTermination(50, TimeUnit.SECONDS);
+    journal.close();
+
+    assertThat(folder.getRoot().list().length).isGreaterThan(1);
+    AccountsRepositoryInMemory repository = recover();
+    assertThat(repository.getAccount("ID-123").getBalance()).isEqualByComparingTo("800");
+    assertThat(repository.getAccount("ID-456").getBalance()).isEqualByComparingTo("200.50");
+  }
+
+  @Test
+  public void ignoresTornRecordAndAppendsAfterLastIntactOne() throws Exception {
+    MappedTransactionJournal journal = open();
+    journal.appendAccountCreated("ID-123", new BigDecimal("100"));
+    long intact = journal.appendTransfer("ID-123", "ID-123", new BigDecimal("1"));
+    long torn = journal.appendAccountCreated("ID-456", new BigDecimal("5"));
+    journal.close();
+
+    try (RandomAccessFile file = new RandomAccessFile(
+        new File(folder.getRoot(), "journal-00000000000000000000.log"), "rw")) {
+      file.seek(torn - 1);
+      file.write(0x7f);
+    }
+
+    MappedTransactionJournal reopened = open();
+    assertThat(reopened.getWrittenPosition()).isEqualTo(intact);
+    reopened.appendAccountCreated("ID-789", new BigDecimal("7"));
+    reopened.close();
+
+    AccountsRepositoryInMemory repository = recover();
+    assertThat(repository.totalBalance()).isEqualByComparingTo("107");
+  }
+
+  @Test
+  public void recoversFromSnapshotsAndCompactsJournal() throws Exception {
+    MappedTransactionJournal journal = open();
+    SnapshotManager snapshots = new SnapshotManager(journal,
+        folder.newFolder("snapshots").getPath(), 0, 2);
+    for (int i = 0; i < 5; i++) {
+      journal.appendAccountCreated("ID-" + i, new BigDecimal("10"));
+    }
+    snapshots.snapshot();
+    journal.appendTransfer("ID-0", "ID-1", new BigDecimal("2.5"));
+    snapshots.snapshot();
+    journal.appendTransfer("ID-1", "ID-2", new BigDecimal("1"));
+    snapshots.snapshot();
+    journal.appendTransfer("ID-2", "ID-3", new BigDecimal("3"));
+    journal.close();
+
+    assertThat(snapshots.getLastAccountCount()).isEqualTo(5);
+    assertThat(folder.getRoot().list((dir, name) -> name.startsWith("journal-"))).hasSize(2);
+
+    MappedTransactionJournal reopened = open();
+    AccountsRepositoryInMemory repository = new AccountsRepositoryInMemory();
+    new JournalRecovery(reopened, repository, Optional.of(snapshots)).recover();
+    reopened.close();
+    assertThat(repository.getAccount("ID-0").getBalance()).isEqualByComparingTo("7.5");
+    assertThat(repository.getAccount("ID-1").getBalance()).isEqualByComparingTo("11.5");
+    assertThat(repository.getAccount("ID-2").getBalance()).isEqualByComparingTo("8");
+    assertThat(repository.getAccount("ID-3").getBalance()).isEqualByComparingTo("13");
+    assertThat(repository.totalBalance()).isEqualByComparingTo("50");
+  }
+
+  private MappedTransactionJournal open() {
+    return new MappedTransactionJournal(folder.getRoot().getPath(), SEGMENT_SIZE, 1, 1024);
+  }
+
+  private AccountsRepositoryInMemory recover() {
+    MappedTransactionJournal journal = open();
+    AccountsRepositoryInMemory repository = new AccountsRepositoryInMemory();
+    new JournalRecovery(journal, repository, Optional.empty()).recover();
+    journal.close();
+    return repository;
+  }
+}
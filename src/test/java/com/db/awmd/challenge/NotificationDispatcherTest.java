@@ -0,0 +1,66 @@
+package com.db.awmd.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.repository.AccountsRepositoryInMemory;
+import com.db.awmd.challenge.service.NotificationDispatcher;
+import com.db.awmd.challenge.service.NotificationService;
+import java.math.BigDecimal;
+import java.util.concurrent.CountDownLatch;
+import org.junit.After;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+public class NotificationDispatcherTest {
+
+  private final AccountsRepositoryInMemory repository = new AccountsRepositoryInMemory();
+
+  private final CountDownLatch firstDelivery = new CountDownLatch(1);
+
+  private final CountDownLatch release = new CountDownLatch(1);
+
+  private final NotificationService notificationService = Mockito.mock(NotificationService.class);
+
+  private final NotificationDispatcher dispatcher =
+      new NotificationDispatcher(notificationService, repository, 4, 1, 100, 0);
+
+  @After
+  public void shutdown() {
+    dispatcher.shutdown();
+  }
+
+  @Test
+  public void coalescesQueuedNoticesAndDropsOverflow() throws Exception {
+    Mockito.doAnswer(invocation -> {
+      firstDelivery.countDown();
+      release.await();
+      return null;
+    }).when(notificationService)
+        .notifyAboutTransfer(Mockito.any(Account.class), Mockito.anyString());
+    repository.createAccount(new Account("ID-123", BigDecimal.TEN));
+    repository.createAccount(new Account("ID-456", BigDecimal.TEN));
+
+    dispatcher.transferCompleted("ID-123", "ID-456", BigDecimal.ONE);
+    firstDelivery.await();
+    // The worker is now blocked inside the first delivery; fill the queue past its capacity.
+    for (int i = 0; i < 3; i++) {
+      dispatcher.transferCompleted("ID-123", "ID-456", BigDecimal.ONE);
+    }
+    release.countDown();
+
+    Mockito.verify(notificationService, Mockito.timeout(1000).atLeast(3))
+        .notifyAboutTransfer(Mockito.any(Account.class), Mockito.anyString());
+    Mockito.verify(notificationService, Mockito.timeout(1000).atLeastOnce())
+        .notifyAboutTransfer(Mockito.any(Account.class),
+            Mockito.eq("Amount 1 credited to Account ID-456\nAmount 1 credited to Account ID-456"));
+    for (int i = 0; i < 100 && dispatcher.getDelivered() + dispatcher.getCoalesced()
+        + dispatcher.getDropped() < 8; i++) {
+      Thread.sleep(10);
+    }
+    assertThat(dispatcher.getSubmitted()).isEqualTo(8);
+    assertThat(dispatcher.getDropped()).isGreaterThanOrEqualTo(2);
+    assertThat(dispatcher.getDelivered() + dispatcher.getCoalesced() + dispatcher.getDropped())
+        .isEqualTo(8);
+  }
+}
@@ -0,0 +1,122 @@
+package com.db.awmd.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.TransferOutcome;
+import com.db.awmd.challenge.exception.InsufficientBalanceException;
+import com.db.awmd.challenge.repository.AccountsRepositoryInMemory;
+import com.db.awmd.challenge.service.AccountLockRegistry;
+import com.db.awmd.challenge.service.OptimisticTransferEngine;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import javax.security.auth.login.AccountNotFoundException;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class OptimisticTransferEngineTest {
+
+  private static final int NUM_ACCOUNTS = 4;
+
+  private final AccountsRepositoryInMemory repository = new AccountsRepositoryInMemory();
+
+  private final AccountLockRegistry lockRegistry = new AccountLockRegistry(16, 5000);
+
+  private final OptimisticTransferEngine engine =
+      new OptimisticTransferEngine(repository, lockRegistry, 2, 1000);
+
+  @Test
+  public void recordsTransferBeforeApplyingIt() throws Exception {
+    repository.createAccount(new Account("Id-A", new BigDecimal(10)));
+    repository.createAccount(new Account("Id-B", new BigDecimal(10)));
+    List<BigDecimal> recorded = new ArrayList<>();
+    TransferOutcome outcome = engine.transfer("Id-A", "Id-B", new BigDecimal(4),
+        (fromId, toId, amount) -> {
+          try {
+            recorded.add(repository.getAccount(toId).getBalance());
+          } catch (AccountNotFoundException ex) {
+            throw new IllegalStateException(ex);
+          }
+        });
+    assertThat(outcome).isEqualTo(TransferOutcome.COMPLETED);
+    assertThat(recorded).containsExactly(new BigDecimal(10));
+
+    try {
+      engine.transfer("Id-A", "Id-B", BigDecimal.ONE, (fromId, toId, amount) -> {
+        throw new IllegalStateException("journal closed");
+      });
+      Assert.fail("Expected the recorder failure");
+    } catch (IllegalStateException expected) {
+      assertThat(repository.getAccount("Id-A").getBalance()).isEqualByComparingTo("6");
+      assertThat(repository.getAccount("Id-B").getBalance()).isEqualByComparingTo("14");
+    }
+  }
+
+  @Test
+  public void totalBalanceRemainsSameUnderConflicts() throws Exception {
+    for (int i = 0; i < NUM_ACCOUNTS; i++) {
+      repository.createAccount(new Account(String.valueOf(i), new BigDecimal(100)));
+    }
+    Random random = new Random();
+    ExecutorService executorService = Executors.newFixedThreadPool(16);
+    for (int t = 0; t < 16; t++) {
+      executorService.execute(() -> {
+        for (int i = 0; i < 500; i++) {
+          try {
+            engine.transfer(String.valueOf(random.nextInt(NUM_ACCOUNTS)),
+                String.valueOf(random.nextInt(NUM_ACCOUNTS)),
+                new BigDecimal(1 + random.nextInt(20)));
+          } catch (AccountNotFoundException | InsufficientBalanceException e) {
+            // expected for some random transfers
+          }
+        }
+      });
+    }
+    executorService.shutdown();
+    executorService.awaitTermination(50, TimeUnit.SECONDS);
+
+    assertThat(repository.sumBalances()).isEqualTo(new BigDecimal(NUM_ACCOUNTS * 100));
+    assertThat(engine.getCommits() + engine.getFallbacks()).isPositive();
+  }
+
+  @Test
+  public void conflictsFallBackToLocking() throws Exception {
+    repository.createAccount(new Account("ID-123", new BigDecimal("10")));
+    repository.createAccount(new Account("ID-456", new BigDecimal("10")));
+    lockRegistry.lock("ID-123", "ID-123");
+    Thread holder = new Thread(() -> {
+      try {
+        engine.transfer("ID-123", "ID-456", new BigDecimal("4"));
+      } catch (AccountNotFoundException e) {
+        throw new IllegalStateException(e);
+      }
+    });
+    holder.start();
+    while (engine.getConflicts() < 2) {
+      Thread.sleep(1);
+    }
+    lockRegistry.unlock("ID-123", "ID-123");
+    holder.join(5000);
+
+    assertThat(engine.getFallbacks()).isEqualTo(1);
+    assertThat(repository.getAccount("ID-123").getBalance()).isEqualTo(new BigDecimal("6"));
+    assertThat(repository.getAccount("ID-456").getBalance()).isEqualTo(new BigDecimal("14"));
+  }
+
+  @Test
+  public void insufficientBalanceIsRejectedWithoutChanges() throws Exception {
+    repository.createAccount(new Account("ID-123", new BigDecimal("10")));
+    repository.createAccount(new Account("ID-456", new BigDecimal("10")));
+    assertThat(engine.transfer("ID-123", "ID-456", new BigDecimal("11")))
+        .isEqualTo(TransferOutcome.INSUFFICIENT_BALANCE);
+    assertThat(engine.transfer("ID-123", "ID-789", new BigDecimal("1")))
+        .isEqualTo(TransferOutcome.TO_ACCOUNT_NOT_FOUND);
+    assertThat(repository.getAccountSnapshot("ID-123").getVersion()).isZero();
+    assertThat(repository.getAccount("ID-456").getBalance()).isEqualTo(new BigDecimal("10"));
+  }
+}
@@ -0,0 +1,158 @@
+package com.db.awmd.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.BalanceChange;
+import com.db.awmd.challenge.exception.ReplicationLogTruncatedException;
+import com.db.awmd.challenge.replication.FollowerWebConfig;
+import com.db.awmd.challenge.replication.ReplicationFollower;
+import com.db.awmd.challenge.replication.ReplicationLog;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.ServerSocket;
+import java.util.List;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.web.client.DefaultResponseErrorHandler;
+import org.springframework.web.client.RestTemplate;
+
+/**
+ * Runs a primary and a follower on localhost ports.
+ */
+public class ReplicationTest {
+
+  private static final RestTemplate client = new RestTemplate();
+
+  private static String primaryUrl;
+
+  private static String followerUrl;
+
+  private static ConfigurableApplicationContext primary;
+
+  private static ConfigurableApplicationContext follower;
+
+  @BeforeClass
+  public static void startNodes() throws IOException {
+    int primaryPort = freePort();
+    int followerPort = freePort();
+    primaryUrl = "http://localhost:" + primaryPort;
+    followerUrl = "http://localhost:" + followerPort;
+    primary = SpringApplication.run(DevChallengeApplication.class,
+        "--server.port=" + primaryPort, "--spring.jmx.enabled=false",
+        "--accounts.replication.enabled=true", "--accounts.replication.log-capacity=1024");
+    createAccount(primaryUrl, "Before-Follower", "25");
+    follower = SpringApplication.run(DevChallengeApplication.class,
+        "--server.port=" + followerPort, "--spring.jmx.enabled=false",
+        "--accounts.replication.enabled=true", "--accounts.replication.role=follower",
+        "--accounts.replication.primary=" + primaryUrl,
+        "--accounts.replication.poll-wait-ms=200");
+    client.setErrorHandler(new DefaultResponseErrorHandler() {
+      @Override
+      public boolean hasError(ClientHttpResponse response) {
+        return false;
+      }
+    });
+  }
+
+  @AfterClass
+  public static void stopNodes() {
+    follower.close();
+    primary.close();
+  }
+
+  @Test
+  public void log_reportsChangesItNoLongerHolds() {
+    ReplicationLog log = new ReplicationLog(4);
+    for (int i = 1; i <= 6; i++) {
+      log.append("Id-" + i, BigDecimal.valueOf(i));
+    }
+    List<BalanceChange> changes = log.readAfter(2, 10);
+    assertThat(changes).extracting(BalanceChange::getSequence).containsExactly(3L, 4L, 5L, 6L);
+    try {
+      log.readAfter(1, 10);
+      fail("Expected the log to be truncated");
+    } catch (ReplicationLogTruncatedException expected) {
+      assertThat(log.readAfter(6, 10)).isEmpty();
+    }
+  }
+
+  @Test
+  public void follower_tailsPrimaryAndIsWritableOncePromoted() throws Exception {
+    createAccount(primaryUrl, "Repl-A", "100");
+    createAccount(primaryUrl, "Repl-B", "50");
+    assertThat(transfer(primaryUrl, "Repl-A", "Repl-B", "30").getStatusCode())
+        .isEqualTo(HttpStatus.OK);
+
+    awaitBalance(followerUrl, "Repl-B", "80");
+    awaitBalance(followerUrl, "Repl-A", "70");
+    awaitBalance(followerUrl, "Before-Follower", "25");
+    ResponseEntity<Account> read = client.getForEntity(followerUrl + "/v1/accounts/Repl-A",
+        Account.class);
+    assertThat(Long.parseLong(read.getHeaders().getFirst(FollowerWebConfig.LAG_HEADER)))
+        .isBetween(0L, 10000L);
+    assertThat(follower.getBean(ReplicationFollower.class).getResyncs()).isEqualTo(1);
+
+    assertThat(createAccount(followerUrl, "Repl-C", "1").getStatusCode())
+        .isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+    assertThat(client.postForEntity(followerUrl + "/internal/replication/promote", null,
+        String.class).getStatusCode()).isEqualTo(HttpStatus.OK);
+    assertThat(createAccount(followerUrl, "Repl-C", "1").getStatusCode())
+        .isEqualTo(HttpStatus.CREATED);
+    assertThat(transfer(followerUrl, "Repl-A", "Repl-C", "5").getStatusCode())
+        .isEqualTo(HttpStatus.OK);
+    assertThat(balanceOf(followerUrl, "Repl-C")).isEqualByComparingTo("6");
+  }
+
+  private static int freePort() throws IOException {
+    try (ServerSocket socket = new ServerSocket(0)) {
+      return socket.getLocalPort();
+    }
+  }
+
+  private static ResponseEntity<String> createAccount(String node, String accountId,
+      String balance) {
+    HttpHeaders headers = new HttpHeaders();
+    headers.setContentType(MediaType.APPLICATION_JSON);
+    return client.postForEntity(node + "/v1/accounts", new HttpEntity<>(
+        "{\"accountId\":\"" + accountId + "\",\"balance\":" + balance + "}", headers),
+        String.class);
+  }
+
+  private static ResponseEntity<String> transfer(String node, String from, String to,
+      String amount) {
+    HttpHeaders headers = new HttpHeaders();
+    headers.setContentType(MediaType.APPLICATION_JSON);
+    return client.postForEntity(node + "/v1/accounts/" + from + "/transfer",
+        new HttpEntity<>("{\"toAccountId\":\"" + to + "\",\"amount\":" + amount + "}", headers),
+        String.class);
+  }
+
+  private static BigDecimal balanceOf(String node, String accountId) {
+    ResponseEntity<Account> account = client.getForEntity(node + "/v1/accounts/" + accountId,
+        Account.class);
+    return account.getStatusCode() == HttpStatus.OK ? account.getBody().getBalance() : null;
+  }
+
+  private static void awaitBalance(String node, String accountId, String expected)
+      throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 10000;
+    BigDecimal balance = balanceOf(node, accountId);
+    while ((balance == null || balance.compareTo(new BigDecimal(expected)) != 0)
+        && System.currentTimeMillis() < deadline) {
+      Thread.sleep(50);
+      balance = balanceOf(node, accountId);
+    }
+    assertThat(balance).isEqualByComparingTo(expected);
+  }
+}
@@ -0,0 +1,213 @@
+package com.db.awmd.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.TransferOutcome;
+import com.db.awmd.challenge.exception.InsufficientBalanceException;
+import com.db.awmd.challenge.exception.LockTimeoutException;
+import com.db.awmd.challenge.repository.AccountsRepositoryInMemory;
+import com.db.awmd.challenge.service.ShardedTransferEngine;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import javax.security.auth.login.AccountNotFoundException;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ShardedTransferEngineTest {
+
+  private static final int NUM_ACCOUNTS = 100;
+
+  private final AccountsRepositoryInMemory repository = new AccountsRepositoryInMemory();
+
+  private final ShardedTransferEngine engine = new ShardedTransferEngine(repository, 4, 16, 5000);
+
+  @After
+  public void shutdown() {
+    engine.shutdown();
+  }
+
+  @Test
+  public void recordsTransferBeforeApplyingIt() throws Exception {
+    repository.createAccount(new Account("Id-A", new BigDecimal(10)));
+    repository.createAccount(new Account("Id-B", new BigDecimal(10)));
+    List<BigDecimal> recorded = new ArrayList<>();
+    TransferOutcome outcome = engine.transfer("Id-A", "Id-B", new BigDecimal(4),
+        (fromId, toId, amount) -> {
+          try {
+            recorded.add(repository.getAccount(toId).getBalance());
+          } catch (AccountNotFoundException ex) {
+            throw new IllegalStateException(ex);
+          }
+        });
+    assertThat(outcome).isEqualTo(TransferOutcome.COMPLETED);
+    assertThat(recorded).containsExactly(new BigDecimal(10));
+
+    try {
+      engine.transfer("Id-A", "Id-B", BigDecimal.ONE, (fromId, toId, amount) -> {
+        throw new IllegalStateException("journal closed");
+      });
+      Assert.fail("Expected the recorder failure");
+    } catch (IllegalStateException expected) {
+      assertThat(repository.getAccount("Id-A").getBalance()).isEqualByComparingTo("6");
+      assertThat(repository.getAccount("Id-B").getBalance()).isEqualByComparingTo("14");
+    }
+  }
+
+  @Test
+  public void transferTimesOutWhenShardsAreStopped() throws Exception {
+    ShardedTransferEngine stopped = new ShardedTransferEngine(repository, 1, 16, 100);
+    repository.createAccount(new Account("Id-A", new BigDecimal(10)));
+    repository.createAccount(new Account("Id-B", new BigDecimal(10)));
+    stopped.shutdown();
+    Thread.sleep(50);
+    try {
+      stopped.transfer("Id-A", "Id-B", BigDecimal.ONE);
+      Assert.fail("Expected the transfer to time out");
+    } catch (LockTimeoutException ex) {
+      assertThat(ex.getMessage()).isEqualTo("Timed out waiting for transfer shard.");
+    }
+  }
+
+  @Test
+  public void transferCancelledOnTimeoutIsNeverApplied() throws Exception {
+    ShardedTransferEngine busy = new ShardedTransferEngine(repository, 1, 16, 100);
+    repository.createAccount(new Account("Id-A", new BigDecimal(10)));
+    repository.createAccount(new Account("Id-B", new BigDecimal(10)));
+    ExecutorService executorService = Executors.newSingleThreadExecutor();
+    try {
+      CountDownLatch holding = new CountDownLatch(1);
+      Future<?> exclusive = executorService.submit(() ->
+          busy.callExclusively(Arrays.asList("Id-A", "Id-B"), () -> {
+            holding.countDown();
+            sleep(300);
+            return null;
+          }));
+      holding.await();
+      try {
+        busy.transfer("Id-A", "Id-B", BigDecimal.ONE);
+        Assert.fail("Expected the transfer to time out");
+      } catch (LockTimeoutException expected) {
+        // cancelled before it started
+      }
+      exclusive.get();
+      assertThat(busy.transfer("Id-A", "Id-B", new BigDecimal(2)))
+          .isEqualTo(TransferOutcome.COMPLETED);
+      assertThat(repository.getAccount("Id-A").getBalance()).isEqualByComparingTo("8");
+      assertThat(repository.getAccount("Id-B").getBalance()).isEqualByComparingTo("12");
+    } finally {
+      executorService.shutdown();
+      busy.shutdown();
+    }
+  }
+
+  @Test
+  public void startedTransferIsWaitedForPastTimeout() throws Exception {
+    ShardedTransferEngine slow = new ShardedTransferEngine(repository, 1, 16, 50);
+    repository.createAccount(new Account("Id-A", new BigDecimal(10)));
+    repository.createAccount(new Account("Id-B", new BigDecimal(10)));
+    try {
+      TransferOutcome outcome = slow.transfer("Id-A", "Id-B", BigDecimal.ONE,
+          (fromId, toId, amount) -> sleep(200));
+      assertThat(outcome).isEqualTo(TransferOutcome.COMPLETED);
+      assertThat(repository.getAccount("Id-B").getBalance()).isEqualByComparingTo("11");
+    } finally {
+      slow.shutdown();
+    }
+  }
+
+  @Test
+  public void totalBalanceRemainsSameAcrossShards() throws Exception {
+    for (int i = 0; i < NUM_ACCOUNTS; i++) {
+      repository.createAccount(new Account(String.valueOf(i), new BigDecimal(100)));
+    }
+    Random random = new Random();
+    ExecutorService executorService = Executors.newFixedThreadPool(20);
+    for (int t = 0; t < 20; t++) {
+      executorService.execute(() -> {
+        for (int i = 0; i < 200; i++) {
+          try {
+            engine.transfer(String.valueOf(random.nextInt(NUM_ACCOUNTS)),
+                String.valueOf(random.nextInt(NUM_ACCOUNTS)),
+                new BigDecimal(1 + random.nextInt(100)));
+          } catch (AccountNotFoundException | InsufficientBalanceException e) {
+            // expected for some random transfers
+          }
+        }
+      });
+    }
+    executorService.shutdown();
+    executorService.awaitTermination(50, TimeUnit.SECONDS);
+
+    assertThat(repository.sumBalances()).isEqualTo(new BigDecimal(NUM_ACCOUNTS * 100));
+  }
+
+  @Test
+  public void failedReserveLeavesBothAccountsUnchanged() throws Exception {
+    repository.createAccount(new Account("ID-123", new BigDecimal("10")));
+    repository.createAccount(new Account("ID-456", new BigDecimal("10")));
+    assertThat(engine.transfer("ID-123", "ID-456", new BigDecimal("11")))
+        .isEqualTo(TransferOutcome.INSUFFICIENT_BALANCE);
+    assertThat(repository.getAccount("ID-123").getBalance()).isEqualTo(new BigDecimal("10"));
+    assertThat(repository.getAccount("ID-456").getBalance()).isEqualTo(new BigDecimal("10"));
+  }
+
+  @Test
+  public void exclusiveSectionSeesNoConcurrentTransfers() throws Exception {
+    repository.createAccount(new Account("ID-123", new BigDecimal("10")));
+    repository.createAccount(new Account("ID-456", new BigDecimal("10")));
+    BigDecimal total = engine.callExclusively(Arrays.asList("ID-123", "ID-456"), () -> {
+      try {
+        return repository.getAccount("ID-123").getBalance()
+            .add(repository.getAccount("ID-456").getBalance());
+      } catch (AccountNotFoundException e) {
+        throw new IllegalStateException(e);
+      }
+    });
+    assertThat(total).isEqualTo(new BigDecimal("20"));
+  }
+
+  @Test
+  public void auditSeesNoTransferInFlight() throws Exception {
+    for (int i = 0; i < NUM_ACCOUNTS; i++) {
+      repository.createAccount(new Account(String.valueOf(i), new BigDecimal(100)));
+    }
+    Random random = new Random();
+    ExecutorService executorService = Executors.newFixedThreadPool(8);
+    for (int t = 0; t < 8; t++) {
+      executorService.execute(() -> {
+        for (int i = 0; i < 500; i++) {
+          try {
+            engine.transfer(String.valueOf(random.nextInt(NUM_ACCOUNTS)),
+                String.valueOf(random.nextInt(NUM_ACCOUNTS)),
+                new BigDecimal(1 + random.nextInt(100)));
+          } catch (AccountNotFoundException | InsufficientBalanceException e) {
+            // expected for some random transfers
+          }
+        }
+      });
+    }
+    executorService.shutdown();
+    while (!executorService.isTerminated()) {
+      assertThat(engine.callExclusivelyOnAll(repository::sumBalances))
+          .isEqualTo(new BigDecimal(NUM_ACCOUNTS * 100));
+    }
+  }
+
+  private static void sleep(long millis) {
+    try {
+      Thread.sleep(millis);
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
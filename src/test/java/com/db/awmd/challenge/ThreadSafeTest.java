@@ -1,14 +1,19 @@
 package com.db.awmd.challenge;
 
 import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.BalanceMode;
 import com.db.awmd.challenge.repository.AccountsRepository;
 import com.db.awmd.challenge.service.AccountsService;
 import com.db.awmd.challenge.service.NotificationService;
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Random;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import javax.security.auth.login.AccountNotFoundException;
 import org.junit.Assert;
 import org.junit.Before;
@@ -73,6 +78,170 @@ public class ThreadSafeTest {
 
     executorService.shutdown();
     executorService.awaitTermination(50, TimeUnit.SECONDS);
-    Assert.assertEquals(this.accountsService.totalBalance(),new BigDecimal(10000));
+    Assert.assertEquals(this.accountsService.totalBalance(BalanceMode.AUDIT),new BigDecimal(10000));
+  }
+
+  @Test
+  public void totalBalanceShouldRemainSame_withDistinctIdInstances() throws InterruptedException {
+
+    final Random random = new Random();
+
+    for (int i = 0; i < NUM_ACCOUNTS; i++) {
+      accountsService.createAccount(new Account(String.valueOf(i), new BigDecimal(100)));
+    }
+
+    ExecutorService executorService = Executors.newFixedThreadPool(NUM_THREADS);
+    for (int t = 0; t < NUM_THREADS; t++) {
+      executorService.execute(() -> {
+        for (int i = 0; i < NUM_ITERATIONS; i++) {
+          // Fresh String instances, as they would arrive from the HTTP layer.
+          String fromId = new String(String.valueOf(random.nextInt(NUM_ACCOUNTS)));
+          String toId = new String(String.valueOf(random.nextInt(NUM_ACCOUNTS)));
+          BigDecimal amount = new BigDecimal(random.nextInt(100));
+          try {
+            accountsService.transferAmount(fromId, toId, amount);
+          } catch (AccountNotFoundException e) {
+            e.printStackTrace();
+          } catch (RuntimeException e) {
+            // insufficient balance and zero amounts are expected here
+          }
+        }
+      });
+    }
+
+    executorService.shutdown();
+    executorService.awaitTermination(50, TimeUnit.SECONDS);
+    Assert.assertEquals(this.accountsService.totalBalance(BalanceMode.AUDIT), new BigDecimal(10000));
+  }
+
+  @Test
+  public void concurrentCreditsAndDebits_onSingleAccountAreNotLost() throws Exception {
+    AccountsRepository repository = this.accountsService.getAccountsRepository();
+    repository.createAccount(new Account("hot", new BigDecimal(NUM_THREADS * NUM_ITERATIONS)));
+
+    ExecutorService executorService = Executors.newFixedThreadPool(NUM_THREADS);
+    for (int t = 0; t < NUM_THREADS; t++) {
+      final boolean credit = t % 2 == 0;
+      executorService.execute(() -> {
+        for (int i = 0; i < NUM_ITERATIONS; i++) {
+          try {
+            if (credit) {
+              repository.addAmount("hot", new BigDecimal("2"));
+            } else {
+              repository.withdrawAmount("hot", BigDecimal.ONE);
+            }
+          } catch (AccountNotFoundException e) {
+            e.printStackTrace();
+          }
+        }
+      });
+    }
+
+    executorService.shutdown();
+    executorService.awaitTermination(50, TimeUnit.SECONDS);
+    Assert.assertEquals(new BigDecimal(NUM_THREADS * NUM_ITERATIONS * 3 / 2),
+        repository.getAccount("hot").getBalance());
+  }
+
+  @Test
+  public void hotAccount_fanInCreditsAndDebitsKeepTotal() throws Exception {
+    for (int i = 0; i < NUM_ACCOUNTS; i++) {
+      accountsService.createAccount(new Account(String.valueOf(i), new BigDecimal(100)));
+    }
+    accountsService.createAccount(new Account("merchant", BigDecimal.ZERO));
+    Assert.assertTrue(accountsService.markHot("merchant"));
+
+    final Random random = new Random();
+    ExecutorService executorService = Executors.newFixedThreadPool(NUM_THREADS);
+    for (int t = 0; t < NUM_THREADS; t++) {
+      final boolean payout = t == 0;
+      executorService.execute(() -> {
+        for (int i = 0; i < NUM_ITERATIONS; i++) {
+          try {
+            if (payout) {
+              accountsService.transferAmount("merchant",
+                  String.valueOf(random.nextInt(NUM_ACCOUNTS)), new BigDecimal(3));
+            } else {
+              accountsService.transferAmount(String.valueOf(random.nextInt(NUM_ACCOUNTS)),
+                  "merchant", BigDecimal.ONE);
+            }
+          } catch (AccountNotFoundException e) {
+            e.printStackTrace();
+          } catch (RuntimeException e) {
+            // insufficient balance is expected while the merchant account is still empty
+          }
+        }
+      });
+    }
+
+    executorService.shutdown();
+    executorService.awaitTermination(50, TimeUnit.SECONDS);
+    Assert.assertEquals(new BigDecimal(10000),
+        this.accountsService.totalBalance(BalanceMode.AUDIT));
+    Assert.assertTrue(accountsService.getAccount("merchant").getBalance().signum() >= 0);
+  }
+
+  @Test
+  public void hotAccount_readsDoNotMissCreditsBeingFolded() throws Exception {
+    AccountsRepository repository = this.accountsService.getAccountsRepository();
+    repository.createAccount(new Account("hot", BigDecimal.ZERO));
+    Assert.assertTrue(repository.markHot("hot"));
+    AtomicBoolean running = new AtomicBoolean(true);
+
+    ExecutorService executorService = Executors.newFixedThreadPool(NUM_THREADS);
+    for (int t = 0; t < NUM_THREADS / 2; t++) {
+      final boolean fold = t % 4 == 0;
+      executorService.execute(() -> {
+        while (running.get()) {
+          try {
+            if (fold) {
+              // folds the pending credits without changing the balance
+              repository.withdrawAmount("hot", BigDecimal.ZERO);
+            } else {
+              repository.addAmount("hot", BigDecimal.ONE);
+            }
+          } catch (AccountNotFoundException e) {
+            e.printStackTrace();
+          }
+        }
+      });
+    }
+    List<Future<Integer>> readers = new ArrayList<>();
+    for (int t = 0; t < NUM_THREADS / 2; t++) {
+      final boolean snapshot = t % 2 == 0;
+      readers.add(executorService.submit(() -> {
+        // credits only ever raise the balance, so no read may be lower than the one before
+        int decreases = 0;
+        BigDecimal last = BigDecimal.ZERO;
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+        while (System.nanoTime() - deadline < 0) {
+          BigDecimal[] read = new BigDecimal[1];
+          if (snapshot) {
+            read[0] = repository.getAccountSnapshot("hot").getBalance();
+          } else {
+            repository.forEachAccount((accountId, balance) -> {
+              if (accountId.equals("hot")) {
+                read[0] = balance;
+              }
+            });
+          }
+          if (read[0].compareTo(last) < 0) {
+            decreases++;
+          }
+          last = read[0];
+        }
+        return decreases;
+      }));
+    }
+
+    try {
+      for (Future<Integer> reader : readers) {
+        Assert.assertEquals(0, reader.get(50, TimeUnit.SECONDS).intValue());
+      }
+    } finally {
+      running.set(false);
+      executorService.shutdown();
+      executorService.awaitTermination(50, TimeUnit.SECONDS);
+    }
   }
 }
@@ -0,0 +1,91 @@
+package com.db.awmd.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.db.awmd.challenge.domain.TransactionPage;
+import com.db.awmd.challenge.domain.TransactionRecord;
+import com.db.awmd.challenge.repository.TransactionHistoryRepository;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TransactionHistoryRepositoryTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private TransactionHistoryRepository repository;
+
+  @Before
+  public void open() {
+    repository = new TransactionHistoryRepository(folder.getRoot().getPath(), 8, 2);
+  }
+
+  @After
+  public void close() throws Exception {
+    repository.close();
+  }
+
+  @Test
+  public void pagesThroughSpilledHistoryNewestFirst() {
+    for (int i = 1; i <= 100; i++) {
+      repository.recordTransfer("ID-123", "ID-456", new BigDecimal(i).movePointLeft(2));
+    }
+
+    List<TransactionRecord> all = new ArrayList<>();
+    Long cursor = null;
+    do {
+      TransactionPage page = repository.getTransactions("ID-123", cursor, null, null, 30);
+      all.addAll(page.getTransactions());
+      cursor = page.getNextCursor();
+    } while (cursor != null);
+
+    assertThat(all).hasSize(100);
+    for (int i = 0; i < 100; i++) {
+      TransactionRecord record = all.get(i);
+      assertThat(record.getSequence()).isEqualTo(99 - i);
+      assertThat(record.getAmount()).isEqualTo(new BigDecimal(-(100 - i)).movePointLeft(2));
+      assertThat(record.getCounterpartyAccountId()).isEqualTo("ID-456");
+    }
+    TransactionRecord credit = repository.getTransactions("ID-456", null, null, null, 1)
+        .getTransactions().get(0);
+    assertThat(credit.getAmount()).isEqualTo(new BigDecimal("1.00"));
+    assertThat(credit.getCounterpartyAccountId()).isEqualTo("ID-123");
+  }
+
+  @Test
+  public void filtersByTimeRange() throws Exception {
+    for (int i = 0; i < 40; i++) {
+      repository.recordTransfer("ID-123", "ID-456", BigDecimal.ONE);
+      if (i % 10 == 9) {
+        Thread.sleep(5);
+      }
+    }
+    List<TransactionRecord> all = repository.getTransactions("ID-123", null, null, null, 100)
+        .getTransactions();
+    long from = all.get(30).getTimestamp();
+    long to = all.get(10).getTimestamp();
+
+    List<TransactionRecord> range = repository.getTransactions("ID-123", null, from, to, 100)
+        .getTransactions();
+
+    assertThat(range).isNotEmpty();
+    for (TransactionRecord record : range) {
+      assertThat(record.getTimestamp()).isBetween(from, to);
+    }
+    assertThat(range).hasSize((int) all.stream().filter(record -> record.getTimestamp() >= from
+        && record.getTimestamp() <= to).count());
+  }
+
+  @Test
+  public void unknownAccountHasEmptyHistory() {
+    TransactionPage page = repository.getTransactions("ID-789", null, null, null, 10);
+    assertThat(page.getTransactions()).isEmpty();
+    assertThat(page.getNextCursor()).isNull();
+  }
+}
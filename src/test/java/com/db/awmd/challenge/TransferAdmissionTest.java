@@ -0,0 +1,102 @@
+package com.db.awmd.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.metrics.AdmissionStripe;
+import com.db.awmd.challenge.repository.AccountsRepositoryInMemory;
+import com.db.awmd.challenge.service.AccountLockRegistry;
+import com.db.awmd.challenge.web.TransferAdmission;
+import java.math.BigDecimal;
+import java.util.List;
+import org.junit.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+public class TransferAdmissionTest {
+
+  private final AccountLockRegistry registry = new AccountLockRegistry(1024, 5000);
+
+  private final AccountsRepositoryInMemory repository = new AccountsRepositoryInMemory();
+
+  @Test
+  public void rejectsTransfersOverAccountLimitWithRetryAfter() {
+    TransferAdmission admission = admission(1, 60000);
+    assertThat(registry.stripeFor("Id-C")).isNotEqualTo(registry.stripeFor("Id-A"));
+
+    ResponseEntity<Object> sameAccount = admission.execute("Id-A", "Id-B",
+        () -> admission.execute("Id-C", "Id-A", TransferAdmissionTest::ok));
+    ResponseEntity<Object> otherAccounts = admission.execute("Id-A", "Id-B",
+        () -> admission.execute("Id-C", "Id-D", TransferAdmissionTest::ok));
+
+    assertThat(sameAccount.getStatusCode()).isEqualTo(HttpStatus.TOO_MANY_REQUESTS);
+    assertThat(sameAccount.getHeaders().getFirst(HttpHeaders.RETRY_AFTER)).isEqualTo("1");
+    assertThat(otherAccounts.getStatusCode()).isEqualTo(HttpStatus.OK);
+    assertThat(admission.getAdmitted()).isEqualTo(3);
+    assertThat(admission.getRejectedPerAccount()).isEqualTo(1);
+    assertThat(admission.getGlobalInFlight()).isZero();
+    List<AdmissionStripe> rejecting = admission.mostRejected(10);
+    assertThat(rejecting).hasSize(1);
+    assertThat(rejecting.get(0).getLastAccountId()).isEqualTo("Id-A");
+  }
+
+  @Test
+  public void creditsToHotAccountAreNotLimitedByItsStripe() throws Exception {
+    repository.createAccount(new Account("Id-H", BigDecimal.ZERO));
+    repository.markHot("Id-H");
+    TransferAdmission admission = admission(1, 60000);
+    assertThat(registry.stripeFor("Id-C")).isNotEqualTo(registry.stripeFor("Id-A"));
+    assertThat(registry.stripeFor("Id-H")).isNotIn(registry.stripeFor("Id-A"),
+        registry.stripeFor("Id-C"));
+
+    ResponseEntity<Object> nested = admission.execute("Id-A", "Id-H",
+        () -> admission.execute("Id-C", "Id-H", TransferAdmissionTest::ok));
+
+    assertThat(nested.getStatusCode()).isEqualTo(HttpStatus.OK);
+    assertThat(admission.getAdmitted()).isEqualTo(2);
+    assertThat(admission.getRejectedPerAccount()).isZero();
+    assertThat(admission.limitFor("Id-H")).isEqualTo(1.0);
+  }
+
+  @Test
+  public void limitsShrinkWhenTransfersFailForOverload() {
+    TransferAdmission admission = admission(8, 60000);
+    for (int i = 0; i < 4; i++) {
+      admission.execute("Id-A", "Id-B",
+          () -> new ResponseEntity<>(HttpStatus.SERVICE_UNAVAILABLE));
+    }
+    assertThat(admission.limitFor("Id-A")).isEqualTo(1.0);
+    assertThat(admission.getGlobalLimit()).isEqualTo(100 * 0.5 * 0.5 * 0.5 * 0.5);
+  }
+
+  @Test
+  public void limitsShrinkWhenSlowAndGrowWhenFast() {
+    TransferAdmission slow = admission(8, 0);
+    slow.execute("Id-A", "Id-B", () -> {
+      try {
+        Thread.sleep(2);
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+      }
+      return ok();
+    });
+    assertThat(slow.limitFor("Id-A")).isEqualTo(4.0);
+
+    TransferAdmission fast = admission(1, 60000);
+    fast.execute("Id-A", "Id-B", TransferAdmissionTest::ok);
+    assertThat(fast.limitFor("Id-A")).isEqualTo(2.0);
+    ResponseEntity<Object> nested = fast.execute("Id-A", "Id-B",
+        () -> fast.execute("Id-A", "Id-C", TransferAdmissionTest::ok));
+    assertThat(nested.getStatusCode()).isEqualTo(HttpStatus.OK);
+  }
+
+  private TransferAdmission admission(int accountLimit, long targetLatencyMillis) {
+    return new TransferAdmission(registry, repository, 100, 1, 1000, accountLimit, 1, 64,
+        targetLatencyMillis, 0.5, 1);
+  }
+
+  private static ResponseEntity<Object> ok() {
+    return new ResponseEntity<>(HttpStatus.OK);
+  }
+}
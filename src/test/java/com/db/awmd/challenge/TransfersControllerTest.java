@@ -0,0 +1,118 @@
+package com.db.awmd.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.startsWith;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static org.springframework.test.web.servlet.setup.MockMvcBuilders.webAppContextSetup;
+
+import com.db.awmd.challenge.service.AccountsService;
+import com.db.awmd.challenge.service.NotificationService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.math.BigDecimal;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.context.web.WebAppConfiguration;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.web.context.WebApplicationContext;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@WebAppConfiguration
+public class TransfersControllerTest {
+
+  private MockMvc mockMvc;
+
+  @MockBean
+  private NotificationService notificationService;
+
+  @Autowired
+  private ObjectMapper objectMapper;
+
+  @Autowired
+  private AccountsService accountsService;
+
+  @Autowired
+  private WebApplicationContext webApplicationContext;
+
+  @Before
+  public void prepareMockMvc() {
+    this.mockMvc = webAppContextSetup(this.webApplicationContext).build();
+
+    accountsService.getAccountsRepository().clearAccounts();
+  }
+
+  @Test
+  public void submitTransfer_acceptedAndCompletedOnLongPoll() throws Exception {
+    this.accountsService.createAccount(TestUtil.getAccount("ID-123", new BigDecimal("100")));
+    this.accountsService.createAccount(TestUtil.getAccount("ID-456", new BigDecimal("100")));
+
+    String transferId = submit("{\"fromAccountId\":\"ID-123\",\"toAccountId\":\"ID-456\","
+        + "\"amount\":30}");
+
+    MvcResult poll = this.mockMvc.perform(get("/v1/transfers/" + transferId)
+        .param("wait-ms", "5000"))
+        .andExpect(request().asyncStarted())
+        .andReturn();
+    this.mockMvc.perform(asyncDispatch(poll))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.transferId").value(transferId))
+        .andExpect(jsonPath("$.state").value("COMPLETED"));
+
+    assertThat(accountsService.getAccount("ID-123").getBalance()).isEqualByComparingTo("70");
+    assertThat(accountsService.getAccount("ID-456").getBalance()).isEqualByComparingTo("130");
+  }
+
+  @Test
+  public void submitTransfer_insufficientBalanceIsRejected() throws Exception {
+    this.accountsService.createAccount(TestUtil.getAccount("ID-123", new BigDecimal("10")));
+    this.accountsService.createAccount(TestUtil.getAccount("ID-456", new BigDecimal("10")));
+
+    String transferId = submit("{\"fromAccountId\":\"ID-123\",\"toAccountId\":\"ID-456\","
+        + "\"amount\":11}");
+
+    MvcResult poll = this.mockMvc.perform(get("/v1/transfers/" + transferId)
+        .param("wait-ms", "5000"))
+        .andReturn();
+    this.mockMvc.perform(asyncDispatch(poll))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.state").value("REJECTED"))
+        .andExpect(jsonPath("$.message").value("Insufficient Balance in account:ID-123"));
+  }
+
+  @Test
+  public void submitTransfer_missingAccount() throws Exception {
+    this.mockMvc.perform(post("/v1/transfers").contentType(MediaType.APPLICATION_JSON)
+        .content("{\"toAccountId\":\"ID-456\",\"amount\":11}"))
+        .andExpect(status().isBadRequest());
+  }
+
+  @Test
+  public void getTransfer_unknownId() throws Exception {
+    MvcResult poll = this.mockMvc.perform(get("/v1/transfers/no-such-transfer")).andReturn();
+    this.mockMvc.perform(asyncDispatch(poll)).andExpect(status().isNotFound());
+  }
+
+  private String submit(String body) throws Exception {
+    MvcResult result = this.mockMvc.perform(post("/v1/transfers")
+        .contentType(MediaType.APPLICATION_JSON).content(body))
+        .andExpect(status().isAccepted())
+        .andExpect(header().string("Location", startsWith("/v1/transfers/")))
+        .andExpect(jsonPath("$.state").value("PENDING"))
+        .andReturn();
+    return objectMapper.readTree(result.getResponse().getContentAsString())
+        .get("transferId").asText();
+  }
+}